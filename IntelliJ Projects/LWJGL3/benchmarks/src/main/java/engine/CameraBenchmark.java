@@ -0,0 +1,60 @@
+package engine;
+
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+///The camera's per frame work. update() is what processInputs() does while
+///the player moves and looks around, the cached getters are the frames in
+///between when nothing changed.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraBenchmark
+{
+    private final Camera camera = new Camera();
+    private final Vector3f move = new Vector3f();
+    private float yaw, pitch;
+
+    @Setup
+    public void setup()
+    {
+        camera.setPerspective(45.0f, 16.0f / 9.0f, 0.1f, 100.0f);
+    }
+
+    ///Move forward, turn, and rebuild the matrices the draws need
+    @Benchmark
+    public Matrix4fc update()
+    {
+        camera.move(camera.getFront(move).mul(0.05f));
+        yaw = (yaw + 0.5f) % 360.0f;
+        pitch = (float)Math.sin(yaw * 0.01f) * 30.0f;
+        camera.setRotation(pitch, yaw);
+        return camera.getViewProjection();
+    }
+
+    @Benchmark
+    public Matrix4fc setRotation()
+    {
+        yaw = (yaw + 0.5f) % 360.0f;
+        camera.setRotation(pitch, yaw);
+        return camera.getView();
+    }
+
+    @Benchmark
+    public Matrix4fc getViewCached()
+    {
+        return camera.getView();
+    }
+
+    @Benchmark
+    public Matrix4fc getViewProjectionCached()
+    {
+        return camera.getViewProjection();
+    }
+}
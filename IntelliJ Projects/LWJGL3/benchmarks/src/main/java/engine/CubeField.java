@@ -0,0 +1,58 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.Random;
+
+///The scene and camera the engine starts with, cubes scattered through a
+///box that grows with their count and a camera looking into it
+final class CubeField
+{
+    private static final Vector3f AXIS = new Vector3f(1.0f, 0.3f, 0.5f);
+    private static final float RADIUS = (float)Math.sqrt(3.0);
+
+    private CubeField() {}
+
+    static Scene build(int count)
+    {
+        Scene scene = new Scene(count);
+        Random rng = new Random(42);
+        float extent = (float)Math.cbrt(count) * 2.0f;
+        Vector3f pos = new Vector3f();
+        for(int i = 0; i < count; i++)
+        {
+            pos.set(
+                    (rng.nextFloat() * 2.0f - 1.0f) * extent,
+                    (rng.nextFloat() * 2.0f - 1.0f) * extent,
+                    -rng.nextFloat() * extent * 2.0f
+            ).mul(2.5f);
+            scene.add(pos, 20.0f * i, AXIS, RADIUS);
+        }
+        scene.updateTransforms(null);
+        return scene;
+    }
+
+    ///Camera at the origin looking down -z with a far plane at the back of
+    ///the field and a view wide enough to see about half of it
+    static Matrix4f viewProjection(int count)
+    {
+        return camera(count, 60.0f);
+    }
+
+    ///The same camera zoomed in to see about 5% of the field, a large
+    ///world of which the view only takes in a sliver
+    static Matrix4f narrowViewProjection(int count)
+    {
+        return camera(count, 16.0f);
+    }
+
+    private static Matrix4f camera(int count, float fov)
+    {
+        //The field is twice as deep as it is wide
+        float depth = (float)Math.cbrt(count) * 2.0f * 2.5f * 2.0f;
+        return new Matrix4f()
+                .perspective((float)Math.toRadians(fov), 16.0f / 9.0f, 0.1f, Math.max(depth, 10.0f))
+                .lookAt(0.0f, 0.0f, 6.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+    }
+}
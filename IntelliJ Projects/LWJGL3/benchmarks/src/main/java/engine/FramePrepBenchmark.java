@@ -0,0 +1,68 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Culling and writing instance matrices for a frame, over the worker
+///counts the engine can be started with. Workers of 1 is the single
+///threaded path the instanced draw used before FramePrep.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramePrepBenchmark
+{
+    @Param({ "10000", "100000" })
+    public int objects;
+
+    @Param({ "1", "2", "4", "8" })
+    public int workers;
+
+    @Param({ "false", "true" })
+    public boolean lod;
+
+    private Scene scene;
+    private Matrix4f viewProj;
+    private final Vector3f eye = new Vector3f(0.0f, 0.0f, 6.0f);
+    private FramePrep prep;
+    private FloatBuffer instances;
+
+    @Setup
+    public void setup()
+    {
+        scene = CubeField.build(objects);
+        viewProj = CubeField.viewProjection(objects);
+        prep = new FramePrep(workers);
+        if(lod)
+        {
+            LodSelector selector = new LodSelector(1.0f, LodSelector.DEFAULT_HYSTERESIS);
+            selector.setLevels(0, new float[]{ 0.0f, 0.005f, 0.02f, 0.08f });
+            selector.setView(45.0f, 1080);
+            selector.ensureCapacity(scene.getIdLimit());
+            prep.setLodSelector(selector);
+        }
+        instances = memAllocFloat(objects * 16);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        prep.cleanup();
+        scene.cleanup();
+        memFree(instances);
+    }
+
+    @Benchmark
+    public int prepare()
+    {
+        return prep.prepare(scene, viewProj, eye, instances, 0);
+    }
+}
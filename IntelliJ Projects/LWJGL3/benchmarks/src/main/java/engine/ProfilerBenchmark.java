@@ -0,0 +1,50 @@
+package engine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+///What a CPU zone costs with the profiler off, which every frame pays,
+///and with it recording.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfilerBenchmark
+{
+    @Param({ "false", "true" })
+    public boolean enabled;
+
+    @Setup
+    public void setup()
+    {
+        Profiler.setEnabled(enabled);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        Profiler.setEnabled(false);
+    }
+
+    @Benchmark
+    public void zone()
+    {
+        try(Profiler.Zone z = Profiler.zone("benchmark"))
+        {
+        }
+    }
+
+    @Benchmark
+    public void nestedZones()
+    {
+        try(Profiler.Zone outer = Profiler.zone("outer"))
+        {
+            try(Profiler.Zone inner = Profiler.zone("inner"))
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package engine;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+///Per object work on the render thread, copying out every cached model
+///matrix the way the draw loop does and culling through the AABB tree
+///against a test of every object's box.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneBenchmark
+{
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int objects;
+
+    ///half sees about half of the field, narrow about 5% of it
+    @Param({ "half", "narrow" })
+    public String view;
+
+    private Scene scene;
+    private Matrix4f viewProj;
+    private final float[] models = new float[16];
+    private final IntList visible = new IntList();
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Vector3f pos = new Vector3f();
+
+    @Setup
+    public void setup()
+    {
+        scene = CubeField.build(objects);
+        viewProj = view.equals("narrow") ? CubeField.narrowViewProjection(objects) : CubeField.viewProjection(objects);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        scene.cleanup();
+    }
+
+    @Benchmark
+    public float modelMatrices()
+    {
+        float sum = 0.0f;
+        for(int id = 0; id < objects; id++)
+        {
+            scene.getModel(id, models, 0);
+            sum += models[12];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int cullTree()
+    {
+        scene.cull(viewProj, visible);
+        return visible.size();
+    }
+
+    ///The same result without the index, one box test per object
+    @Benchmark
+    public int cullLinear()
+    {
+        frustum.set(viewProj, false);
+        int count = 0;
+        for(int id = 0; id < objects; id++)
+        {
+            scene.getPosition(id, pos);
+            float r = scene.getRadius(id);
+            if(frustum.testAab(pos.x - r, pos.y - r, pos.z - r, pos.x + r, pos.y + r, pos.z + r))
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,176 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Uniform lookup and the marshalling in front of every upload. The shader
+///has no program behind it, every value set matches the shadow copy so
+///nothing reaches the GL and what's left is the CPU cost of deciding not
+///to upload, the common case for per frame uniforms that rarely change.
+///
+///The changed path is timed on UniformInfo directly, next to the staging
+///a uniform block does for the same matrix.
+///
+///The legacy benchmarks repeat what the setters did before handles and
+///the shadow cache: a stream over the uniform list on every call and a
+///fresh array per matrix, up to the point the GL call would be made.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShaderBenchmark
+{
+    private Shader shader;
+    private int lightPos, model;
+    private final Matrix4f matrix = new Matrix4f().translation(1.0f, 2.0f, 3.0f).rotateY(0.5f);
+    private final float[] columns = new float[16];
+
+    //Flips between two matrices so every update counts as a change
+    private UniformInfo changing;
+    private final Matrix4f[] alternate = {
+            new Matrix4f().translation(1.0f, 0.0f, 0.0f),
+            new Matrix4f().translation(0.0f, 1.0f, 0.0f)
+    };
+    private int flip;
+
+    private ByteBuffer block;
+
+    //The same uniforms in the list the old setters searched
+    private final ArrayList<UniformInfo> uniforms = new ArrayList<UniformInfo>();
+
+    @Setup
+    public void setup()
+    {
+        shader = Shader.detached();
+        lightPos = shader.addUniform(primed(new UniformInfo("lightPos", -1, 3, 0), 1.0f, 2.0f, 3.0f));
+        matrix.get(columns);
+        model = shader.addUniform(primed(new UniformInfo("model", -1, 16, 1), columns));
+        shader.addUniform(new UniformInfo("texture1", -1, 1, 2));
+        shader.addUniform(new UniformInfo("view", -1, 16, 3));
+        shader.addUniform(new UniformInfo("projection", -1, 16, 4));
+
+        uniforms.add(new UniformInfo("lightPos", -1, 3, 0));
+        uniforms.add(new UniformInfo("model", -1, 16, 1));
+        uniforms.add(new UniformInfo("texture1", -1, 1, 2));
+        uniforms.add(new UniformInfo("view", -1, 16, 3));
+        uniforms.add(new UniformInfo("projection", -1, 16, 4));
+
+        changing = new UniformInfo("model", -1, 16, 0);
+        block = memAlloc(64);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        memFree(block);
+    }
+
+    //Leaves info holding values as if they had been uploaded
+    private static UniformInfo primed(UniformInfo info, float... values)
+    {
+        for(int c = 0; c < values.length; c++)
+            info.update(c, Float.floatToRawIntBits(values[c]));
+        return info;
+    }
+
+    @Benchmark
+    public int lookupByName()
+    {
+        return shader.getUniform("projection");
+    }
+
+    @Benchmark
+    public int legacyLookupByName()
+    {
+        return legacyFind("projection").getLocation();
+    }
+
+    @Benchmark
+    public void setVec3ByHandle()
+    {
+        shader.setUniformFloat(lightPos, 1.0f, 2.0f, 3.0f);
+    }
+
+    @Benchmark
+    public void setVec3ByName()
+    {
+        shader.setUniformFloat("lightPos", 1.0f, 2.0f, 3.0f);
+    }
+
+    ///Varargs array, lookup and parameter check, everything short of glUniform3f
+    @Benchmark
+    public int legacySetVec3ByName()
+    {
+        return legacySetFloat("lightPos", 1.0f, 2.0f, 3.0f);
+    }
+
+    @Benchmark
+    public void setMatrixByHandle()
+    {
+        shader.setUniformMatrix4f(model, matrix);
+    }
+
+    @Benchmark
+    public void setMatrixByName()
+    {
+        shader.setUniformMatrix4f("model", matrix);
+    }
+
+    ///A new float[16] per upload, then the lookup, everything short of glUniformMatrix4fv
+    @Benchmark
+    public float[] legacySetMatrixByName()
+    {
+        float[] array = new float[16];
+        array = matrix.get(array);
+        UniformInfo info = legacyFind("model");
+        if(info.getParamCount() != array.length)
+            throw new RuntimeException("Uniform model expects " + info.getParamCount() + " args");
+        return array;
+    }
+
+    private int legacySetFloat(String name, float... f)
+    {
+        UniformInfo info = legacyFind(name);
+        if(info.getParamCount() != f.length)
+            throw new RuntimeException("Uniform " + name + " expects " + info.getParamCount() + " args");
+        return info.getLocation() + f.length;
+    }
+
+    private UniformInfo legacyFind(String name)
+    {
+        Optional<UniformInfo> found = uniforms.stream().filter(c -> c.getName().equals(name)).findAny();
+        if(found.isEmpty())
+            throw new RuntimeException("No uniform named: " + name);
+        return found.get();
+    }
+
+    ///Shadow comparison of a matrix that did change, what a per object
+    ///glUniformMatrix4fv pays before the call itself
+    @Benchmark
+    public boolean matrixShadowChanged()
+    {
+        Matrix4f m = alternate[flip ^= 1];
+        m.get(columns);
+        boolean changed = false;
+        for(int c = 0; c < 16; c++)
+            changed |= changing.update(c, Float.floatToRawIntBits(columns[c]));
+        return changed;
+    }
+
+    ///Staging the same matrix into uniform block memory, which skips the
+    ///comparison and uploads the whole block once
+    @Benchmark
+    public ByteBuffer matrixBlockStaging()
+    {
+        return alternate[flip ^= 1].get(0, block);
+    }
+}
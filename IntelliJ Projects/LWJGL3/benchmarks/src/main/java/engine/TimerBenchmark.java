@@ -0,0 +1,44 @@
+package engine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+///Frame timing, one getElapsedTime() per frame plus the statistics the
+///title bar reads whenever a window finishes. The short window makes the
+///percentile pass over the histogram show up in the average.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark
+{
+    @Param({ "1.0", "0.001" })
+    public double windowSeconds;
+
+    private Timer timer;
+
+    @Setup
+    public void setup()
+    {
+        timer = new Timer(windowSeconds, 1000.0 / 30.0);
+    }
+
+    @Benchmark
+    public double getElapsedTime()
+    {
+        return timer.getElapsedTime();
+    }
+
+    ///The frame loop's use, statistics read only when a window completes
+    @Benchmark
+    public double frame()
+    {
+        double dt = timer.getElapsedTime();
+        if(timer.windowCompleted())
+            return timer.getFps() + timer.getP99();
+        return dt;
+    }
+}
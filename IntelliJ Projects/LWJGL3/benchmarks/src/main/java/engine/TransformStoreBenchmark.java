@@ -0,0 +1,70 @@
+package engine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+///Rebuilding world matrices after every root of a forest of chains has
+///turned, so every entity is rebuilt, level by level. Workers of 1 runs
+///each level on the calling thread.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformStoreBenchmark
+{
+    @Param({ "10000", "100000" })
+    public int entities;
+
+    @Param({ "1", "16" })
+    public int depth;
+
+    @Param({ "1", "4" })
+    public int workers;
+
+    private TransformStore store;
+    private int[] roots;
+    private ForkJoinPool pool;
+    private float angle = 0.0f;
+
+    @Setup
+    public void setup()
+    {
+        store = new TransformStore(entities);
+        roots = new int[(entities + depth - 1) / depth];
+        int made = 0;
+        for(int chain = 0; chain < roots.length; chain++)
+        {
+            int parent = TransformStore.NONE;
+            for(int link = 0; link < depth && made < entities; link++, made++)
+            {
+                parent = store.create(parent);
+                store.setPosition(parent, link == 0 ? chain : 0.0f, link == 0 ? 0.0f : 2.5f, 0.0f);
+                if(link == 0)
+                    roots[chain] = parent;
+            }
+        }
+        store.update(null);
+        pool = workers > 1 ? new ForkJoinPool(workers) : null;
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        store.cleanup();
+        if(pool != null)
+            pool.shutdown();
+    }
+
+    @Benchmark
+    public int update()
+    {
+        angle += 0.01f;
+        for(int root : roots)
+            store.setRotation(root, angle, 0.0f, 0.0f, 1.0f);
+        return store.update(pool);
+    }
+}
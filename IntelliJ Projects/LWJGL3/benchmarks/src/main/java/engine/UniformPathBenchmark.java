@@ -0,0 +1,147 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+///A whole frame of per-object draws, split evenly over a number of
+///programs, through both ways of getting matrices to the shaders:
+///
+///    perProgram  every program gets view and projection set on it, every
+///                draw its own model matrix, as the shaders did before
+///                the uniform blocks
+///    blocks      one FrameData upload for the frame, ObjectData uploads
+///                of up to 256 model matrices and an int drawId per draw,
+///                batched the way Engine draws without instancing
+///
+///Shaders and blocks are detached, the setters shadow compare and count
+///but stop short of the GL, so the times are the CPU side only. At the end
+///of each run the calls GLState counted in a frame are printed, each one a
+///glUniform* or a block upload a real frame would make. Every frame makes
+///the same calls.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniformPathBenchmark
+{
+    @Param({ "1", "8", "32" })
+    public int programs;
+
+    @Param({ "1000", "10000" })
+    public int draws;
+
+    //GLState's counts of the last frame
+    private int uniforms, blocks;
+
+    private final Camera camera = new Camera();
+    private float yaw;
+    private FloatBuffer models;
+    private final Matrix4f model = new Matrix4f();
+
+    private Shader[] legacy;
+    private int viewLoc, projectionLoc, modelLoc;
+
+    private Shader[] shaders;
+    private int drawIdLoc;
+    private FrameData frameData;
+    private ObjectData objectData;
+
+    @Setup
+    public void setup()
+    {
+        camera.setPerspective(45.0f, 16.0f / 9.0f, 0.1f, 100.0f);
+
+        models = memAllocFloat(draws * 16);
+        for(int i = 0; i < draws; i++)
+            model.translation(i % 100, i / 100 % 100, -i / 10000).rotateY(i).get(i * 16, models);
+
+        legacy = new Shader[programs];
+        shaders = new Shader[programs];
+        for(int p = 0; p < programs; p++)
+        {
+            legacy[p] = Shader.detached();
+            viewLoc = legacy[p].addUniform(new UniformInfo("view", -1, 16, 0));
+            projectionLoc = legacy[p].addUniform(new UniformInfo("projection", -1, 16, 1));
+            modelLoc = legacy[p].addUniform(new UniformInfo("model", -1, 16, 2));
+
+            shaders[p] = Shader.detached();
+            drawIdLoc = shaders[p].addUniform(new UniformInfo("drawId", -1, 1, 0));
+        }
+        frameData = FrameData.detached();
+        objectData = ObjectData.detached();
+    }
+
+    @TearDown
+    public void tearDown(BenchmarkParams params)
+    {
+        System.out.printf("%n%s, %d programs, %d draws: %d uniform calls and %d block uploads per frame%n",
+                params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1), programs, draws, uniforms, blocks);
+        memFree(models);
+        frameData.cleanup();
+        objectData.cleanup();
+    }
+
+    private void count()
+    {
+        GLState.beginFrame();
+        uniforms = GLState.getUniformUploads();
+        blocks = GLState.getBlockUploads();
+    }
+
+    //The camera turns a little every frame, so its matrices always change
+    private void turn()
+    {
+        yaw = (yaw + 0.5f) % 360.0f;
+        camera.setRotation(0.0f, yaw);
+    }
+
+    @Benchmark
+    public void perProgram()
+    {
+        turn();
+        int perProgram = (draws + programs - 1) / programs;
+        for(int p = 0; p < programs; p++)
+        {
+            Shader shader = legacy[p];
+            shader.setUniformMatrix4f(viewLoc, camera.getView());
+            shader.setUniformMatrix4f(projectionLoc, camera.getProjection());
+
+            for(int i = p * perProgram; i < Math.min(draws, (p + 1) * perProgram); i++)
+                shader.setUniformMatrix4f(modelLoc, model.set(i * 16, models));
+        }
+        count();
+    }
+
+    @Benchmark
+    public void blocks()
+    {
+        turn();
+        frameData.update(camera, yaw);
+
+        int perProgram = (draws + programs - 1) / programs;
+        for(int p = 0; p < programs; p++)
+        {
+            Shader shader = shaders[p];
+            int start = p * perProgram, end = Math.min(draws, (p + 1) * perProgram);
+            for(int first = start; first < end; first += ObjectData.MAX_OBJECTS)
+            {
+                int n = Math.min(ObjectData.MAX_OBJECTS, end - first);
+                for(int k = 0; k < n; k++)
+                    objectData.add(models, first + k);
+                objectData.flush();
+
+                for(int k = 0; k < n; k++)
+                    shader.setUniformInt(drawIdLoc, k);
+            }
+        }
+        count();
+    }
+}
@@ -0,0 +1,46 @@
+#version 430 core
+
+layout (location = 0) in vec3 pos;
+layout (location = 1) in vec2 tex;
+layout (location = 8) in uvec2 instance;    //Object and mesh, written by cull.comp
+
+out vec2 texCoord;
+flat out int material;
+
+layout (std140) uniform FrameData
+{
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec4 camPos;
+    float time;
+};
+
+struct Object
+{
+    mat4 model;
+    vec4 sphere;
+    uint shape;
+    uint material;
+    uint pad0, pad1;
+};
+
+struct MeshEntry
+{
+    uint command;
+    uint pad0, pad1, pad2;
+    vec4 positionScale;     //Undoes the position quantization of the mesh, see VertexLayout
+    vec4 positionOffset;
+    vec4 texCoordScaleOffset;   //Same for texture coordinates, scale in xy, offset in zw
+};
+
+layout (std430, binding = 0) readonly buffer Objects { Object objects[]; };
+layout (std430, binding = 2) readonly buffer Meshes { MeshEntry meshes[]; };
+
+void main()
+{
+    MeshEntry mesh = meshes[instance.y];
+    gl_Position = viewProjection * objects[instance.x].model * vec4(pos * mesh.positionScale.xyz + mesh.positionOffset.xyz, 1.0);
+    texCoord = tex * mesh.texCoordScaleOffset.xy + mesh.texCoordScaleOffset.zw;
+    material = int(objects[instance.x].material);
+}
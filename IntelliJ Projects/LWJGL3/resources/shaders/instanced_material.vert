@@ -0,0 +1,31 @@
+#version 330 core
+
+layout (location = 0) in vec3 pos;
+layout (location = 1) in vec2 tex;
+layout (location = 2) in mat4 instanceModel;    //Takes locations 2-5, advanced once per instance
+layout (location = 6) in int instanceMaterial;  //Row of the material table
+
+out vec2 texCoord;
+flat out int material;
+
+layout (std140) uniform FrameData
+{
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec4 camPos;
+    float time;
+};
+
+//Undoes the position and texture coordinate quantization of the mesh, see VertexLayout
+uniform vec3 positionScale = vec3(1.0);
+uniform vec3 positionOffset = vec3(0.0);
+uniform vec2 texCoordScale = vec2(1.0);
+uniform vec2 texCoordOffset = vec2(0.0);
+
+void main()
+{
+    gl_Position = viewProjection * instanceModel * vec4(pos * positionScale + positionOffset, 1.0);
+    texCoord = tex * texCoordScale + texCoordOffset;
+    material = instanceMaterial;
+}
\ No newline at end of file
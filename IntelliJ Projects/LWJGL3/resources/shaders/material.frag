@@ -0,0 +1,19 @@
+#version 330 core
+
+out vec4 fragColor;
+
+in vec2 texCoord;
+flat in int material;
+
+uniform sampler2DArray materials;
+uniform samplerBuffer materialTable;   //Two texels per material, see MaterialAtlas
+
+void main()
+{
+    vec4 rect = texelFetch(materialTable, material * 2);
+    float layer = texelFetch(materialTable, material * 2 + 1).x;
+
+    //Clamped so atlas entries never sample their neighbours
+    vec2 uv = rect.zw + clamp(texCoord, 0.0, 1.0) * rect.xy;
+    fragColor = texture(materials, vec3(uv, layer));
+}
\ No newline at end of file
@@ -5,12 +5,30 @@ layout (location = 1) in vec2 tex;
 
 out vec2 texCoord;
 
-uniform mat4 model;
-uniform mat4 view;
-uniform mat4 projection;
+layout (std140) uniform FrameData
+{
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec4 camPos;
+    float time;
+};
+
+layout (std140) uniform ObjectData
+{
+    mat4 models[256];   //ObjectData.MAX_OBJECTS
+};
+
+uniform int drawId;     //Slot of this draw in models
+
+//Undoes the position and texture coordinate quantization of the mesh, see VertexLayout
+uniform vec3 positionScale = vec3(1.0);
+uniform vec3 positionOffset = vec3(0.0);
+uniform vec2 texCoordScale = vec2(1.0);
+uniform vec2 texCoordOffset = vec2(0.0);
 
 void main()
 {
-    gl_Position = projection * view * model * vec4(pos, 1.0);
-    texCoord = tex;
+    gl_Position = viewProjection * models[drawId] * vec4(pos * positionScale + positionOffset, 1.0);
+    texCoord = tex * texCoordScale + texCoordOffset;
 }
\ No newline at end of file
@@ -1,10 +0,0 @@
-public class Main
-{
-
-    public static void main(String[] args)
-    {
-        Engine engine = new Engine();
-        engine.run();
-        engine.cleanup();
-    }
-}
\ No newline at end of file
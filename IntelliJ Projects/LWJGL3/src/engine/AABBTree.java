@@ -0,0 +1,433 @@
+package engine;
+
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+
+///Dynamic bounding volume hierarchy over axis aligned boxes, kept balanced
+///with tree rotations as leaves come and go. Nodes live in parallel
+///primitive arrays indexed by node id so walking the tree never chases
+///object pointers. Leaves store a fattened box, small moves that stay
+///inside it don't touch the tree at all.
+public class AABBTree
+{
+    private static final int NULL = -1;
+
+    private final float margin;
+
+    //Node storage, bounds holds minX, minY, minZ, maxX, maxY, maxZ per node
+    private float[] bounds;
+    private int[] parent;       //Doubles as the next link while a node is free
+    private int[] left;
+    private int[] right;
+    private int[] height;       //0 for leaves, -1 for free nodes
+    private int[] item;         //User id stored in a leaf
+
+    private int root = NULL;
+    private int freeList = NULL;
+    private int leafCount = 0;
+
+    //Traversal stacks reused by the single threaded query
+    private final IntList stack = new IntList(64);
+    private final IntList collectStack = new IntList(64);
+
+    public AABBTree()
+    {
+        this(0.1f);
+    }
+
+    ///margin is how far each leaf box is grown on every side
+    public AABBTree(float margin)
+    {
+        this.margin = margin;
+        allocate(16);
+    }
+
+    private void allocate(int capacity)
+    {
+        int old = parent == null ? 0 : parent.length;
+
+        bounds = bounds == null ? new float[capacity * 6] : Arrays.copyOf(bounds, capacity * 6);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        left   = left   == null ? new int[capacity] : Arrays.copyOf(left, capacity);
+        right  = right  == null ? new int[capacity] : Arrays.copyOf(right, capacity);
+        height = height == null ? new int[capacity] : Arrays.copyOf(height, capacity);
+        item   = item   == null ? new int[capacity] : Arrays.copyOf(item, capacity);
+
+        //Chain the new nodes onto the free list
+        for(int i = capacity - 1; i >= old; i--)
+        {
+            parent[i] = freeList;
+            height[i] = -1;
+            freeList = i;
+        }
+    }
+
+    private int allocateNode()
+    {
+        if(freeList == NULL)
+            allocate(parent.length * 2);
+
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        left[node] = NULL;
+        right[node] = NULL;
+        height[node] = 0;
+        item[node] = NULL;
+        return node;
+    }
+
+    private void freeNode(int node)
+    {
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+    }
+
+    ///Adds a box for id and returns the proxy needed to move or remove it
+    public int insert(int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        int leaf = allocateNode();
+        setBounds(leaf, minX - margin, minY - margin, minZ - margin, maxX + margin, maxY + margin, maxZ + margin);
+        item[leaf] = id;
+
+        insertLeaf(leaf);
+        leafCount++;
+        return leaf;
+    }
+
+    public void remove(int proxy)
+    {
+        removeLeaf(proxy);
+        freeNode(proxy);
+        leafCount--;
+    }
+
+    ///Updates the box of a proxy, returns true if the tree had to be modified
+    public boolean move(int proxy, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        int b = proxy * 6;
+        if(bounds[b]     <= minX && bounds[b + 1] <= minY && bounds[b + 2] <= minZ &&
+           bounds[b + 3] >= maxX && bounds[b + 4] >= maxY && bounds[b + 5] >= maxZ)
+            return false;
+
+        removeLeaf(proxy);
+        setBounds(proxy, minX - margin, minY - margin, minZ - margin, maxX + margin, maxY + margin, maxZ + margin);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    public int getItem(int proxy)
+    {
+        return item[proxy];
+    }
+
+    public int size()
+    {
+        return leafCount;
+    }
+
+    public int getHeight()
+    {
+        return root == NULL ? 0 : height[root];
+    }
+
+    ///Appends the ids of every leaf whose box touches the frustum to out.
+    ///Subtrees entirely inside the frustum are taken whole without testing
+    ///their children.
+    public void query(FrustumIntersection frustum, IntList out)
+    {
+        if(root != NULL)
+            query(frustum, root, out, stack, collectStack);
+    }
+
+    ///Same as query but limited to the subtree under node and using caller
+    ///owned stacks, so several threads can walk disjoint subtrees at once
+    ///as long as nobody modifies the tree meanwhile.
+    public void query(FrustumIntersection frustum, int node, IntList out, IntList stack, IntList collect)
+    {
+        stack.clear();
+        stack.add(node);
+        while(stack.size() > 0)
+        {
+            node = stack.removeLast();
+            int b = node * 6;
+            int result = frustum.intersectAab(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+
+            if(result == FrustumIntersection.INSIDE)
+                collectLeaves(node, out, collect);
+            else if(result == FrustumIntersection.INTERSECT)
+            {
+                if(height[node] == 0)
+                    out.add(item[node]);
+                else
+                {
+                    stack.add(left[node]);
+                    stack.add(right[node]);
+                }
+            }
+        }
+    }
+
+    ///Splits the tree into at least count disjoint subtrees (fewer if it
+    ///runs out of internal nodes) and stores their roots in dest. Together
+    ///they cover every leaf exactly once.
+    public void getSubtrees(int count, IntList dest, IntList scratch)
+    {
+        dest.clear();
+        if(root == NULL)
+            return;
+
+        dest.add(root);
+        boolean split = true;
+        while(dest.size() < count && split)
+        {
+            //Open up the tallest subtrees first, they hold the most leaves
+            int tallest = 0;
+            for(int i = 0; i < dest.size(); i++)
+                tallest = Math.max(tallest, height[dest.get(i)]);
+
+            split = tallest > 0;
+            scratch.clear();
+            for(int i = 0; i < dest.size(); i++)
+            {
+                int node = dest.get(i);
+                if(height[node] == tallest && tallest > 0)
+                {
+                    scratch.add(left[node]);
+                    scratch.add(right[node]);
+                }
+                else
+                    scratch.add(node);
+            }
+
+            dest.clear();
+            for(int i = 0; i < scratch.size(); i++)
+                dest.add(scratch.get(i));
+        }
+    }
+
+    //Appends every leaf below start without any further tests
+    private void collectLeaves(int start, IntList out, IntList collect)
+    {
+        collect.clear();
+        collect.add(start);
+        while(collect.size() > 0)
+        {
+            int node = collect.removeLast();
+            if(height[node] == 0)
+                out.add(item[node]);
+            else
+            {
+                collect.add(left[node]);
+                collect.add(right[node]);
+            }
+        }
+    }
+
+    private void setBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        int b = node * 6;
+        bounds[b]     = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+    }
+
+    //Sets node's box to the union of a and b
+    private void union(int node, int a, int b)
+    {
+        int n = node * 6, i = a * 6, j = b * 6;
+        bounds[n]     = Math.min(bounds[i],     bounds[j]);
+        bounds[n + 1] = Math.min(bounds[i + 1], bounds[j + 1]);
+        bounds[n + 2] = Math.min(bounds[i + 2], bounds[j + 2]);
+        bounds[n + 3] = Math.max(bounds[i + 3], bounds[j + 3]);
+        bounds[n + 4] = Math.max(bounds[i + 4], bounds[j + 4]);
+        bounds[n + 5] = Math.max(bounds[i + 5], bounds[j + 5]);
+    }
+
+    //Surface area heuristic works just as well with half the area
+    private float area(int node)
+    {
+        int b = node * 6;
+        float dx = bounds[b + 3] - bounds[b];
+        float dy = bounds[b + 4] - bounds[b + 1];
+        float dz = bounds[b + 5] - bounds[b + 2];
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private float unionArea(int a, int b)
+    {
+        int i = a * 6, j = b * 6;
+        float dx = Math.max(bounds[i + 3], bounds[j + 3]) - Math.min(bounds[i],     bounds[j]);
+        float dy = Math.max(bounds[i + 4], bounds[j + 4]) - Math.min(bounds[i + 1], bounds[j + 1]);
+        float dz = Math.max(bounds[i + 5], bounds[j + 5]) - Math.min(bounds[i + 2], bounds[j + 2]);
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private void insertLeaf(int leaf)
+    {
+        if(root == NULL)
+        {
+            root = leaf;
+            parent[root] = NULL;
+            return;
+        }
+
+        //Walk down picking whichever side grows the least
+        int index = root;
+        while(height[index] != 0)
+        {
+            int l = left[index];
+            int r = right[index];
+
+            float area = area(index);
+            float combined = unionArea(index, leaf);
+
+            //Cost of making a new parent for this node and the leaf
+            float cost = 2.0f * combined;
+            //Minimum cost of pushing the leaf further down
+            float inheritance = 2.0f * (combined - area);
+
+            float costLeft = descendCost(l, leaf) + inheritance;
+            float costRight = descendCost(r, leaf) + inheritance;
+
+            if(cost < costLeft && cost < costRight)
+                break;
+
+            index = costLeft < costRight ? l : r;
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        union(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+
+        if(oldParent != NULL)
+        {
+            if(left[oldParent] == sibling) left[oldParent] = newParent;
+            else                          right[oldParent] = newParent;
+        }
+        else
+            root = newParent;
+
+        left[newParent] = sibling;
+        right[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refit(parent[leaf]);
+    }
+
+    private float descendCost(int child, int leaf)
+    {
+        if(height[child] == 0)
+            return unionArea(child, leaf);
+        return unionArea(child, leaf) - area(child);
+    }
+
+    private void removeLeaf(int leaf)
+    {
+        if(leaf == root)
+        {
+            root = NULL;
+            return;
+        }
+
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = left[p] == leaf ? right[p] : left[p];
+
+        if(grandParent != NULL)
+        {
+            //Replace the parent with the sibling
+            if(left[grandParent] == p) left[grandParent] = sibling;
+            else                      right[grandParent] = sibling;
+            parent[sibling] = grandParent;
+            freeNode(p);
+
+            refit(grandParent);
+        }
+        else
+        {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+    }
+
+    //Walks up from node rebalancing and fixing up boxes and heights
+    private void refit(int node)
+    {
+        while(node != NULL)
+        {
+            node = balance(node);
+
+            int l = left[node];
+            int r = right[node];
+            height[node] = 1 + Math.max(height[l], height[r]);
+            union(node, l, r);
+
+            node = parent[node];
+        }
+    }
+
+    //Performs a left or right rotation if node a is imbalanced,
+    //returns the new root of the subtree
+    private int balance(int a)
+    {
+        if(height[a] < 2)
+            return a;
+
+        int b = left[a];
+        int c = right[a];
+        int diff = height[c] - height[b];
+
+        if(diff > 1)
+            return rotate(a, c, b);
+        if(diff < -1)
+            return rotate(a, b, c);
+        return a;
+    }
+
+    //Promotes heavy, the taller child of a, to take a's place
+    private int rotate(int a, int heavy, int light)
+    {
+        int f = left[heavy];
+        int g = right[heavy];
+
+        //Swap a and heavy
+        left[heavy] = a;
+        parent[heavy] = parent[a];
+        parent[a] = heavy;
+
+        if(parent[heavy] != NULL)
+        {
+            if(left[parent[heavy]] == a) left[parent[heavy]] = heavy;
+            else                        right[parent[heavy]] = heavy;
+        }
+        else
+            root = heavy;
+
+        //Keep the taller grandchild under heavy, hand the other to a
+        int keep = height[f] > height[g] ? f : g;
+        int give = keep == f ? g : f;
+
+        right[heavy] = keep;
+        if(left[a] == heavy) left[a] = give;
+        else                right[a] = give;
+        parent[give] = a;
+
+        union(a, left[a], right[a]);
+        union(heavy, a, keep);
+        height[a] = 1 + Math.max(height[light], height[give]);
+        height[heavy] = 1 + Math.max(height[a], height[keep]);
+
+        return heavy;
+    }
+}
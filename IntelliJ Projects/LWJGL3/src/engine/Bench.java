@@ -0,0 +1,145 @@
+package engine;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+///Runs stress sweeps unattended, one headless engine run per scene layout,
+///object count, rendering mode and, for runs with models, level of detail
+///setting. Each replays the same camera path and appends its row to the
+///same report, where the mode, shape and lod columns tell them apart.
+///Every run gets a JVM of its own so one that runs out of memory at a
+///million objects doesn't take the rest down.
+public class Bench
+{
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        //--counts <a,b,...> object counts to sweep, 1000 to 1000000 by tens,
+        //--scenes <grid,city,hierarchy> layouts to sweep, all three by default,
+        //--modes <instanced,per-object,gpu-driven> how to draw, the first two by default,
+        //--model <path> fills every run with the model instead of cubes, repeatable,
+        //--lod <on,off> whether the models get levels of detail, on by default,
+        //--seed <n>, --camera-path <file> and --report <file> go to every run,
+        //--windowed shows each run instead of rendering headless,
+        //anything after -- is passed to every run as is, see Main
+        int[] counts = { 1_000, 10_000, 100_000, 1_000_000 };
+        String[] scenes = { "grid", "city", "hierarchy" };
+        String[] modes = { "instanced", "per-object" };
+        String[] lods = { "on" };
+        List<String> models = new ArrayList<String>();
+        String seed = "42";
+        String path = "resources/paths/flythrough.txt";
+        String report = "stress_report.csv";
+        boolean windowed = false;
+        List<String> passed = new ArrayList<String>();
+
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i]) {
+                case "--counts"      -> counts = ints(value(args, ++i));
+                case "--scenes"      -> scenes = value(args, ++i).split(",");
+                case "--modes"       -> modes = value(args, ++i).split(",");
+                case "--model"       -> models.add(value(args, ++i));
+                case "--lod"         -> lods = value(args, ++i).split(",");
+                case "--seed"        -> seed = value(args, ++i);
+                case "--camera-path" -> path = value(args, ++i);
+                case "--report"      -> report = value(args, ++i);
+                case "--windowed"    -> windowed = true;
+                case "--"            -> {
+                    passed.addAll(List.of(args).subList(i + 1, args.length));
+                    i = args.length;
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        for(String scene : scenes)
+            StressScene.Layout.parse(scene);
+        for(String mode : modes)
+            modeFlag(mode);
+        for(String lod : lods)
+        {
+            if(!lod.equals("on") && !lod.equals("off"))
+                throw new IllegalArgumentException("Unknown lod setting: " + lod + ", expected on or off");
+        }
+
+        //Children run on the same java with the same heap settings and classpath
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        String classpath = System.getProperty("java.class.path");
+
+        ArrayList<String> failed = new ArrayList<String>();
+        for(String scene : scenes)
+        {
+            for(int count : counts)
+            {
+                for(String mode : modes)
+                {
+                    for(String lod : lods)
+                    {
+                        String run = scene + " " + count + " " + mode + (models.isEmpty() ? "" : " lod " + lod);
+                        ArrayList<String> command = new ArrayList<String>();
+                        command.add(java);
+                        command.addAll(jvmArgs);
+                        command.addAll(List.of("-cp", classpath, Main.class.getName(),
+                                "--scene", scene, "--cubes", Integer.toString(count), "--seed", seed,
+                                "--camera-path", path, "--report", report));
+                        String flag = modeFlag(mode);
+                        if(flag != null)
+                            command.add(flag);
+                        for(String model : models)
+                            command.addAll(List.of("--model", model));
+                        if(lod.equals("off"))
+                            command.add("--no-lod");
+                        if(!windowed)
+                            command.add("--headless");
+                        command.addAll(passed);
+
+                        System.out.println("=== " + run + " ===");
+                        long start = System.nanoTime();
+                        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+                        System.out.printf("=== %s finished in %.1f s with exit code %d ===%n", run, (System.nanoTime() - start) / 1.0e9, exit);
+                        if(exit != 0)
+                            failed.add(run);
+                    }
+                }
+            }
+        }
+
+        System.out.println("Sweep written to " + report);
+        if(!failed.isEmpty())
+        {
+            System.err.println("Failed runs: " + String.join(", ", failed));
+            System.exit(1);
+        }
+    }
+
+    //What tells Main to draw in mode, null for the default. A machine without
+    //GL 4.3 runs gpu-driven instanced, its rows say so in the mode column.
+    private static String modeFlag(String mode)
+    {
+        return switch(mode) {
+            case "instanced"  -> null;
+            case "per-object" -> "--per-object";
+            case "gpu-driven" -> "--gpu-driven";
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode + ", expected instanced, per-object or gpu-driven");
+        };
+    }
+
+    //Comma separated list
+    private static int[] ints(String value)
+    {
+        String[] parts = value.split(",");
+        int[] result = new int[parts.length];
+        for(int i = 0; i < parts.length; i++)
+            result[i] = Integer.parseInt(parts[i].trim());
+        return result;
+    }
+
+    private static String value(String[] args, int i)
+    {
+        if(i >= args.length)
+            throw new IllegalArgumentException(args[i - 1] + " expects a value");
+        return args[i];
+    }
+}
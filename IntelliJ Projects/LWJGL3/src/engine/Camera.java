@@ -0,0 +1,325 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+
+///Everything derived from the position, target and lens settings is
+///cached and only rebuilt when one of those actually changes. Nothing
+///here allocates after construction, accessors either copy into a
+///caller supplied destination or hand out a read-only view.
+public class Camera
+{
+    //Bits of dirty, each one marks a cached value that needs rebuilding
+    private static final int BASIS         = 1;
+    private static final int VIEW          = 1 << 1;
+    private static final int PROJ          = 1 << 2;
+    private static final int VIEW_PROJ     = 1 << 3;
+    private static final int INV_VIEW      = 1 << 4;
+    private static final int INV_PROJ      = 1 << 5;
+    private static final int INV_VIEW_PROJ = 1 << 6;
+
+    private static final int VIEW_CHANGED = BASIS | VIEW | VIEW_PROJ | INV_VIEW | INV_VIEW_PROJ;
+    private static final int PROJ_CHANGED = PROJ | VIEW_PROJ | INV_PROJ | INV_VIEW_PROJ;
+
+    private final Vector3f pos = new Vector3f();   //Camera position
+    private final Vector3f tgt = new Vector3f();
+    private final Vector3f wup = new Vector3f();   //Up in world coordinates
+    private final Vector3f cup = new Vector3f();   //Up in camera coordinates
+    private final Vector3f rht = new Vector3f();   //Camera right
+    private final Vector3f dir = new Vector3f();   //What way camera is pointing
+
+    private float fov = 45.0f;  //Vertical, in degrees
+    private float aspect = 1.0f;
+    private float near = 0.1f;
+    private float far = 100.0f;
+
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f proj = new Matrix4f();
+    private final Matrix4f viewProj = new Matrix4f();
+    private final Matrix4f invView = new Matrix4f();
+    private final Matrix4f invProj = new Matrix4f();
+    private final Matrix4f invViewProj = new Matrix4f();
+
+    private int dirty = VIEW_CHANGED | PROJ_CHANGED;
+
+    private boolean logging = false;
+
+    public Camera()
+    {
+        this(new Vector3f(0.0f, 0.0f, 6.0f),
+             new Vector3f(0.0f, 0.0f, 0.0f),
+             new Vector3f(0.0f, 1.0f, 0.0f)
+        );
+    }
+
+    public Camera(Vector3fc pos)
+    {
+        this(pos,
+             new Vector3f(0.0f, 0.0f, 0.0f),
+             new Vector3f(0.0f, 1.0f, 0.0f)
+        );
+    }
+
+    public Camera(Vector3fc pos, Vector3fc tgt)
+    {
+        this(pos,
+             tgt,
+             new Vector3f(0.0f, 1.0f, 0.0f)
+        );
+    }
+
+    public Camera(Vector3fc pos, Vector3fc tgt, Vector3fc up)
+    {
+        this.pos.set(pos);
+        this.wup.set(up);
+        this.tgt.set(tgt);
+    }
+
+    private void updateBasis()
+    {
+        if((dirty & BASIS) == 0)
+            return;
+
+        pos.sub(tgt, dir).normalize();
+        wup.cross(dir, rht).normalize();
+        dir.cross(rht, cup);
+        dirty &= ~BASIS;
+
+        if(logging)
+            System.out.println(
+                    "\nPos: " + pos +
+                    "\nTgt: " + tgt +
+                    "\nDir: " + dir +
+                    "\nRht: " + rht +
+                    "\n Up: " + cup
+            );
+    }
+
+    ///Prints the camera basis to stdout whenever it is rebuilt
+    public void setLogging(boolean logging)
+    {
+        this.logging = logging;
+    }
+
+    public void move(Vector3fc dist)
+    {
+        move(dist.x(), dist.y(), dist.z());
+    }
+
+    public void move(float x, float y, float z)
+    {
+        if(x == 0.0f && y == 0.0f && z == 0.0f)
+            return;
+
+        pos.add(x, y, z);
+        tgt.add(x, y, z);
+        dirty |= VIEW_CHANGED;
+    }
+
+    public Vector3f getPos()
+    {
+        return new Vector3f(pos);
+    }
+
+    public Vector3f getPos(Vector3f dest)
+    {
+        return dest.set(pos);
+    }
+
+    public void setPos(Vector3fc pos)
+    {
+        if(this.pos.equals(pos))
+            return;
+
+        this.pos.set(pos);
+        dirty |= VIEW_CHANGED;
+    }
+
+    public void setTgt(Vector3fc tgt)
+    {
+        if(this.tgt.equals(tgt))
+            return;
+
+        this.tgt.set(tgt);
+        dirty |= VIEW_CHANGED;
+    }
+
+    public void setRotation(float pitch, float yaw)
+    {
+        float x = pos.x +  (float)(Math.sin(Math.toRadians(yaw)));
+        float y = pos.y + -(float)(Math.sin(Math.toRadians(pitch)) * Math.cos(Math.toRadians(yaw)));
+        float z = pos.z + -(float)(Math.cos(Math.toRadians(pitch)) * Math.cos(Math.toRadians(yaw)));
+
+        if(tgt.equals(x, y, z))
+            return;
+
+        tgt.set(x, y, z);
+        dirty |= VIEW_CHANGED;
+    }
+
+    ///fov is the vertical field of view in degrees
+    public void setPerspective(float fov, float aspect, float near, float far)
+    {
+        if(this.fov == fov && this.aspect == aspect && this.near == near && this.far == far)
+            return;
+
+        this.fov = fov;
+        this.aspect = aspect;
+        this.near = near;
+        this.far = far;
+        dirty |= PROJ_CHANGED;
+    }
+
+    public void setAspectRatio(float aspect)
+    {
+        setPerspective(fov, aspect, near, far);
+    }
+
+    public float getFov()
+    {
+        return fov;
+    }
+
+    public float getNear()
+    {
+        return near;
+    }
+
+    public float getFar()
+    {
+        return far;
+    }
+
+    public Vector3f getFront()
+    {
+        return getFront(new Vector3f());
+    }
+
+    public Vector3f getFront(Vector3f dest)
+    {
+        updateBasis();
+        return dest.set(dir).negate();
+    }
+
+    public Vector3f getRight()
+    {
+        return getRight(new Vector3f());
+    }
+
+    public Vector3f getRight(Vector3f dest)
+    {
+        updateBasis();
+        return dest.set(rht);
+    }
+
+    public Vector3f getUp()
+    {
+        return getUp(new Vector3f());
+    }
+
+    public Vector3f getUp(Vector3f dest)
+    {
+        updateBasis();
+        return dest.set(cup);
+    }
+
+    public Vector3fc getTarget()
+    {
+        return tgt;
+    }
+
+    //The matrix getters return the cached matrix itself, copy it with the
+    //dest overloads if it needs to outlive the next camera change
+
+    public Matrix4fc getView()
+    {
+        if((dirty & VIEW) != 0)
+        {
+            updateBasis();
+            view.setLookAt(pos, tgt, cup);
+            dirty &= ~VIEW;
+        }
+        return view;
+    }
+
+    public Matrix4fc getProjection()
+    {
+        if((dirty & PROJ) != 0)
+        {
+            proj.setPerspective((float)Math.toRadians(fov), aspect, near, far);
+            dirty &= ~PROJ;
+        }
+        return proj;
+    }
+
+    public Matrix4fc getViewProjection()
+    {
+        if((dirty & VIEW_PROJ) != 0)
+        {
+            getProjection().mul(getView(), viewProj);
+            dirty &= ~VIEW_PROJ;
+        }
+        return viewProj;
+    }
+
+    public Matrix4fc getInverseView()
+    {
+        if((dirty & INV_VIEW) != 0)
+        {
+            getView().invertAffine(invView);
+            dirty &= ~INV_VIEW;
+        }
+        return invView;
+    }
+
+    public Matrix4fc getInverseProjection()
+    {
+        if((dirty & INV_PROJ) != 0)
+        {
+            getProjection().invertPerspective(invProj);
+            dirty &= ~INV_PROJ;
+        }
+        return invProj;
+    }
+
+    public Matrix4fc getInverseViewProjection()
+    {
+        if((dirty & INV_VIEW_PROJ) != 0)
+        {
+            getViewProjection().invert(invViewProj);
+            dirty &= ~INV_VIEW_PROJ;
+        }
+        return invViewProj;
+    }
+
+    public Matrix4f getView(Matrix4f dest)
+    {
+        return dest.set(getView());
+    }
+
+    public Matrix4f getProjection(Matrix4f dest)
+    {
+        return dest.set(getProjection());
+    }
+
+    public Matrix4f getViewProjection(Matrix4f dest)
+    {
+        return dest.set(getViewProjection());
+    }
+
+    public Matrix4f getInverseView(Matrix4f dest)
+    {
+        return dest.set(getInverseView());
+    }
+
+    public Matrix4f getInverseProjection(Matrix4f dest)
+    {
+        return dest.set(getInverseProjection());
+    }
+
+    public Matrix4f getInverseViewProjection(Matrix4f dest)
+    {
+        return dest.set(getInverseViewProjection());
+    }
+}
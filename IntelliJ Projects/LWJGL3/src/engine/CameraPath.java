@@ -0,0 +1,145 @@
+package engine;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+///Camera positions and angles over time, recorded from a flight with the
+///keyboard or written by hand and replayed in place of the input so every
+///run looks at the same things in the same order. Samples in between are
+///interpolated linearly, so a hand written path only needs its turns.
+///
+///The file has one sample per line, blank lines and lines starting with #
+///are skipped:
+///
+///    #seconds x y z pitch yaw
+///    0.0  0.0 0.0 6.0  0.0 0.0
+///    5.0  0.0 0.0 -40.0  10.0 45.0
+public class CameraPath
+{
+    private static final int STRIDE = 6;
+
+    private float[] samples = new float[16 * STRIDE];
+    private int count = 0;
+
+    ///Appends a sample, times have to be increasing
+    public void add(float time, float x, float y, float z, float pitch, float yaw)
+    {
+        if(count > 0 && time < samples[(count - 1) * STRIDE])
+            throw new IllegalArgumentException("Camera path samples have to be in time order, " + time + " follows " + samples[(count - 1) * STRIDE]);
+
+        if((count + 1) * STRIDE > samples.length)
+            samples = Arrays.copyOf(samples, samples.length * 2);
+
+        int s = count * STRIDE;
+        samples[s]     = time;
+        samples[s + 1] = x;
+        samples[s + 2] = y;
+        samples[s + 3] = z;
+        samples[s + 4] = pitch;
+        samples[s + 5] = yaw;
+        count++;
+    }
+
+    public void add(float time, Vector3fc pos, float pitch, float yaw)
+    {
+        add(time, pos.x(), pos.y(), pos.z(), pitch, yaw);
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    ///Time of the last sample, the path holds still after it
+    public float getDuration()
+    {
+        return count > 0 ? samples[(count - 1) * STRIDE] : 0.0f;
+    }
+
+    ///Writes the position at time into pos and returns pitch and yaw in
+    ///angles, in degrees as Camera.setRotation() takes them
+    public void sample(float time, Vector3f pos, float[] angles)
+    {
+        if(count == 0)
+            throw new IllegalStateException("Empty camera path");
+
+        //Last sample at or before time, the first one if there is none
+        int lo = 0, hi = count - 1;
+        while(lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            if(samples[mid * STRIDE] <= time) lo = mid;
+            else                              hi = mid - 1;
+        }
+
+        int a = lo * STRIDE;
+        int b = Math.min(lo + 1, count - 1) * STRIDE;
+        float span = samples[b] - samples[a];
+        float t = span > 0.0f ? Math.min(Math.max((time - samples[a]) / span, 0.0f), 1.0f) : 0.0f;
+
+        pos.set(lerp(samples[a + 1], samples[b + 1], t),
+                lerp(samples[a + 2], samples[b + 2], t),
+                lerp(samples[a + 3], samples[b + 3], t));
+        angles[0] = lerp(samples[a + 4], samples[b + 4], t);
+        angles[1] = lerp(samples[a + 5], samples[b + 5], t);
+    }
+
+    private static float lerp(float a, float b, float t)
+    {
+        return a + (b - a) * t;
+    }
+
+    public static CameraPath load(Path file) throws IOException
+    {
+        CameraPath path = new CameraPath();
+        List<String> lines = Files.readAllLines(file);
+        for(int n = 0; n < lines.size(); n++)
+        {
+            String line = lines.get(n).trim();
+            if(line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            String[] parts = line.split("\\s+");
+            if(parts.length != STRIDE)
+                throw new IOException(String.format("%s:%d: expected %d values, found %d", file, n + 1, STRIDE, parts.length));
+
+            float[] v = new float[STRIDE];
+            try
+            {
+                for(int i = 0; i < STRIDE; i++)
+                    v[i] = Float.parseFloat(parts[i]);
+                path.add(v[0], v[1], v[2], v[3], v[4], v[5]);
+            }
+            catch(IllegalArgumentException e)
+            {
+                throw new IOException(String.format("%s:%d: %s", file, n + 1, e.getMessage()));
+            }
+        }
+
+        if(path.size() == 0)
+            throw new IOException(file + " holds no camera samples");
+        return path;
+    }
+
+    public void save(Path file) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(file)))
+        {
+            out.println("#seconds x y z pitch yaw");
+            for(int i = 0; i < count; i++)
+            {
+                int s = i * STRIDE;
+                out.println(String.format(Locale.ROOT, "%.4f %.4f %.4f %.4f %.3f %.3f",
+                        samples[s], samples[s + 1], samples[s + 2], samples[s + 3], samples[s + 4], samples[s + 5]));
+            }
+        }
+    }
+}
@@ -0,0 +1,1106 @@
+package engine;
+
+import org.lwjgl.*;
+import org.lwjgl.glfw.*;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.Configuration;
+
+import org.joml.*;
+
+import java.lang.Math;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+public class Engine
+{
+    //Cube Unfold
+    //            7---------4
+    //            |         |
+    //            |   Top   |
+    //            |         |
+    //  7---------3---------0---------4---------7
+    //  |         |         |         |         |
+    //  |  Left   |  Front  |  Right  |  Back   |
+    //  |         |         |         |         |
+    //  6---------2---------1---------5---------6
+    //            |         |
+    //            | Bottom  |
+    //            |         |
+    //            6---------5
+    //
+    //Coordinates
+    // 0:  1.0f,  1.0f,  1.0f
+    // 1:  1.0f, -1.0f,  1.0f
+    // 2: -1.0f, -1.0f,  1.0f
+    // 3: -1.0f,  1.0f,  1.0f
+    //
+    // 4:  1.0f,  1.0f, -1.0f
+    // 5:  1.0f, -1.0f, -1.0f
+    // 6: -1.0f, -1.0f, -1.0f
+    // 7: -1.0f,  1.0f, -1.0f
+
+    private final float[] vertices = {
+            //Positions            //Tex Coords
+            //Front
+             1.0f,  1.0f,  1.0f,   1.0f, 1.0f, //00 top right
+             1.0f, -1.0f,  1.0f,   1.0f, 0.0f, //01 bottom right
+            -1.0f, -1.0f,  1.0f,   0.0f, 0.0f, //02 bottom left
+            -1.0f,  1.0f,  1.0f,   0.0f, 1.0f, //03 top left
+
+            //Back
+            -1.0f,  1.0f, -1.0f,   1.0f, 1.0f, //04 top right
+            -1.0f, -1.0f, -1.0f,   1.0f, 0.0f, //05 bottom right
+             1.0f, -1.0f, -1.0f,   0.0f, 0.0f, //06 bottom left
+             1.0f,  1.0f, -1.0f,   0.0f, 1.0f, //07 top left
+
+            //Bottom
+             1.0f, -1.0f,  1.0f,   1.0f, 1.0f, //08 top right
+             1.0f, -1.0f, -1.0f,   1.0f, 0.0f, //09 bottom right
+            -1.0f, -1.0f, -1.0f,   0.0f, 0.0f, //10 bottom left
+            -1.0f, -1.0f,  1.0f,   0.0f, 1.0f, //11 top left
+
+            //Top
+             1.0f,  1.0f, -1.0f,   1.0f, 1.0f, //12 top right
+             1.0f,  1.0f,  1.0f,   1.0f, 0.0f, //13 bottom right
+            -1.0f,  1.0f,  1.0f,   0.0f, 0.0f, //14 bottom left
+            -1.0f,  1.0f, -1.0f,   0.0f, 1.0f, //15 top left
+
+            //Left
+            -1.0f,  1.0f,  1.0f,   1.0f, 1.0f, //16 top right
+            -1.0f, -1.0f,  1.0f,   1.0f, 0.0f, //17 bottom right
+            -1.0f, -1.0f, -1.0f,   0.0f, 0.0f, //18 bottom left
+            -1.0f,  1.0f, -1.0f,   0.0f, 1.0f, //19 top left
+
+            //Right
+            1.0f,  1.0f, -1.0f,   1.0f, 1.0f, //20 top right
+            1.0f, -1.0f, -1.0f,   1.0f, 0.0f, //21 bottom right
+            1.0f, -1.0f,  1.0f,   0.0f, 0.0f, //22 bottom left
+            1.0f,  1.0f,  1.0f,   0.0f, 1.0f, //23 top left
+    };
+
+    private final int[] indices = {
+            //Front
+            0, 1, 3,
+            1, 2, 3,
+
+            //Back
+            4, 5, 7,
+            5, 6, 7,
+
+            //Bottom
+            8,  9, 11,
+            9, 10, 11,
+
+            //Front
+            12, 13, 15,
+            13, 14, 15,
+
+            //Left
+            16, 17, 19,
+            17, 18, 19,
+
+            //Right
+            20, 21, 23,
+            21, 22, 23,
+    };
+
+    private final Vector3f[] defaultCubePositions = {
+            new Vector3f( 0.0f,  0.0f,  0.0f),
+            new Vector3f( 2.0f,  5.0f, -15.0f),
+            new Vector3f(-1.5f, -2.2f, -2.5f),
+            new Vector3f(-3.8f, -2.0f, -12.3f),
+            new Vector3f( 2.4f, -0.4f, -3.5f),
+            new Vector3f(-1.7f,  3.0f, -7.5f),
+            new Vector3f( 1.3f, -2.0f, -2.5f),
+            new Vector3f( 1.5f,  2.0f, -2.5f),
+            new Vector3f( 1.5f,  0.2f, -1.5f),
+            new Vector3f(-1.3f,  1.0f, -1.5f)
+    };
+
+    private final Vector3f cubeRotAxis = new Vector3f(1.0f, 0.3f, 0.5f);
+
+    //Radius of the sphere around a cube, corners are sqrt(3) from the center
+    private static final float CUBE_RADIUS = (float)Math.sqrt(3.0);
+
+    private final Scene scene;
+    private final FramePrep framePrep;
+    //Levels of detail of the imported models, null draws full detail only
+    private final LodSelector lodSelector;
+
+    //Per-object issues one uniform upload and draw call per cube, instanced packs every
+    //model matrix into a vertex buffer and draws all of them with a single call
+    private final boolean instanced;
+
+    private final EngineConfig config;
+
+    private final Window window;
+    private final Camera camera;    //Owned by whichever thread runs processInputs
+    private final Timer timer;
+    private final InputState input = new InputState();
+
+    //Threaded update only, the render thread draws with renderCamera which
+    //follows the snapshots the update thread publishes
+    private final Camera renderCamera = new Camera();
+    private final TripleBuffer<FrameSnapshot> snapshots = new TripleBuffer<FrameSnapshot>(FrameSnapshot::new);
+    private volatile boolean simulating;
+
+    //Set by F12, the render loop writes the frame statistics out
+    private boolean exportStats;
+    //Set by F11, the render loop writes the profiler trace out
+    private boolean exportTrace;
+
+    private double deltaTime;
+
+    //Headless runs, frames that didn't match their golden image
+    private int failedFrames;
+
+    //Bytes of vertex data the draws of the frame read at least once
+    private long vertexFetchBytes;
+    //Triangles submitted this frame and what full detail would have cost
+    private long triangles, fullTriangles;
+    private int drawCalls;
+
+    //Generated scene, null for the cube field
+    private final StressScene stressScene;
+    //Replayed in place of the input, null flies by keyboard
+    private final CameraPath cameraPath;
+    private final float[] pathAngles = new float[2];
+    //Flight being recorded, null when not recording
+    private final CameraPath recording;
+
+    public Engine()
+    {
+        this(new EngineConfig());
+    }
+
+    public Engine(EngineConfig config)
+    {
+        this.config = config;
+        this.instanced = config.instanced;
+        Profiler.setEnabled(config.profile);
+        framePrep = new FramePrep(config.workers);
+        lodSelector = config.lodErrors.length > 0 ? new LodSelector(config.lodPixels, LodSelector.DEFAULT_HYSTERESIS) : null;
+        framePrep.setLodSelector(lodSelector);
+
+        int cubeCount = config.cubeCount;
+
+        scene = new Scene(cubeCount);
+        if(config.scene != null)
+        {
+            long start = System.nanoTime();
+            stressScene = StressScene.populate(scene, config.scene, cubeCount, config.seed, config.hierarchyDepth, config.models.size());
+            for(int id = 0; config.materials > 0 && id < scene.getIdLimit(); id++)
+                scene.setMaterial(id, id % config.materials);
+            System.out.printf("Generated %s scene of %d objects from seed %d in %.1f ms%n",
+                    config.scene.name().toLowerCase(), cubeCount, config.seed, (System.nanoTime() - start) / 1.0e6);
+        }
+        else
+            stressScene = null;
+
+        Random rng = new Random(config.seed);
+        float extent = (float)Math.cbrt(cubeCount) * 2.0f;
+        Vector3f pos = new Vector3f();
+        for(int i = 0; stressScene == null && i < cubeCount; i++)
+        {
+            if(i < defaultCubePositions.length)
+                pos.set(defaultCubePositions[i]);
+            else
+                pos.set(
+                        (rng.nextFloat() * 2.0f - 1.0f) * extent,
+                        (rng.nextFloat() * 2.0f - 1.0f) * extent,
+                        -rng.nextFloat() * extent * 2.0f
+                );
+
+            //Scale the positions since my cubes are larger
+            pos.mul(2.5f);
+
+            //Uncomment to have all cubes rotate about the y axis
+            //scene.setRotation(id, rot, 0, 1, 0) each frame
+
+            float angle = 20.0f * i;
+            int id = scene.add(pos, angle, cubeRotAxis, CUBE_RADIUS);
+            if(config.materials > 0)
+                scene.setMaterial(id, i % config.materials);
+            if(!config.models.isEmpty())
+                scene.setShape(id, i % (config.models.size() + 1));
+        }
+
+        Path path = Paths.get("");
+        Shader.setShaderSourceDirectory(String.format("%s/%s", path.toAbsolutePath().toString(), "/resources/shaders"));
+        Texture.setTextureDirectory(String.format("%s/%s", path.toAbsolutePath().toString(), "/resources/textures"));
+
+        GLFWErrorCallback.createPrint(System.err).set();
+
+        //Headless runs need no display where GLFW has its null platform, the
+        //context then comes from EGL and GL functions have to be loaded through
+        //GLFW instead of libGL. Elsewhere they get a hidden window.
+        if(config.headless && glfwPlatformSupported(GLFW_PLATFORM_NULL))
+        {
+            glfwInitHint(GLFW_PLATFORM, GLFW_PLATFORM_NULL);
+            Configuration.OPENGL_EXPLICIT_INIT.set(true);
+        }
+
+        if(!glfwInit())
+            throw new IllegalStateException("Unable to init GLFW");
+
+        window = new Window(800, 800, "Learn OpenGL", config.glMajor, config.glMinor, config.headless);
+        camera = new Camera();
+        timer = new Timer(1.0, config.hitchMillis);
+
+        //Generated scenes are bigger than the default far plane reaches
+        if(stressScene != null)
+        {
+            float far = StressScene.EXTENT * 4.0f;
+            camera.setPerspective(camera.getFov(), 1.0f, camera.getNear(), far);
+            renderCamera.setPerspective(camera.getFov(), 1.0f, camera.getNear(), far);
+        }
+
+        try
+        {
+            cameraPath = config.cameraPath != null ? CameraPath.load(Paths.get(config.cameraPath)) : null;
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Unable to read camera path " + config.cameraPath, e);
+        }
+        recording = config.recordPath != null ? new CameraPath() : null;
+
+        //Record key state so input can be read off the main thread
+        GLFWKeyCallback previous = glfwSetKeyCallback(window.getHandle(), (handle, key, scancode, action, mods) -> {
+            input.onKey(key, action);
+            if(key == GLFW_KEY_F12 && action == GLFW_PRESS)
+                exportStats = true;
+            if(key == GLFW_KEY_F11 && action == GLFW_PRESS)
+                exportTrace = true;
+            keyCallback(handle, key, scancode, action, mods);
+        });
+        if(previous != null)
+            previous.free();
+    }
+
+    public void run()
+    {
+        System.out.println("LWJGL " + Version.getVersion());
+        if(Configuration.OPENGL_EXPLICIT_INIT.get(false))
+            GL.create(GLFW::glfwGetProcAddress);
+        GL.createCapabilities();
+        System.out.println("OpenGL " + window.getGLMajor() + "." + window.getGLMinor() + ", " + glGetString(GL_RENDERER));
+        loop();
+    }
+
+    private void loop()
+    {
+        GLState.reset();
+        GLState.enable(GL_DEPTH_TEST);
+
+        if(config.profile)
+            Profiler.initGpu();
+
+        GLState.enable(GL_CULL_FACE);
+        //Accidentally input the vertices CW instead of CCW, fix later
+        glFrontFace(GL_CW);
+
+        glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+
+        //Meshes share one pool so switching between them binds nothing, the
+        //instance attributes below go on the pool's VAO as well
+        VertexLayout layout = config.compactVertices ? VertexLayout.COMPACT : VertexLayout.FULL;
+        MeshPool meshPool = new MeshPool(layout, 1 << 20, 1 << 18);
+        Mesh cube = meshPool.add(MeshData.fromInterleaved("cube", vertices, 5, indices).withGeneratedNormals(true));
+        System.out.println("Vertex layout " + layout + ", " + cube.describeMemory());
+        GLState.bindVertexArray(meshPool.getVao());
+
+        //Generated materials either share a texture array picked per instance,
+        //which needs the instance buffer, or are bound one by one
+        boolean materialArrays = config.materials > 0 && config.textureArrays && instanced;
+        if(config.materials > 0 && config.textureArrays && !instanced)
+            System.out.println("Texture arrays need instancing, binding materials separately");
+
+        //Model matrices of everything drawn this frame, the camera target
+        //marker rides along as instance 0
+        int instanceCapacity = scene.getIdLimit() + 1;
+        FloatBuffer instanceData = memAllocFloat(instanceCapacity * 16);
+        //The same matrices gathered in the render queue's order, written
+        //straight into a ring the GPU reads from
+        System.out.println(StreamBuffer.isPersistentSupported() ? "Streaming through persistently mapped buffers"
+                : "Streaming through unsynchronized mapping, no buffer storage");
+        StreamBuffer instanceStream = null;
+
+        if(instanced)
+        {
+            instanceStream = new StreamBuffer(GL_ARRAY_BUFFER, (long)instanceData.capacity() * Float.BYTES);
+            GLState.bindBuffer(GL_ARRAY_BUFFER, instanceStream.getBuffer());
+
+            //Instance model matrix, a mat4 attribute takes up four vec4 locations
+            for(int i = 0; i < 4; i++)
+            {
+                glVertexAttribPointer(2 + i, 4, GL_FLOAT, false, 16*Float.BYTES, (long)i*4*Float.BYTES);
+                glEnableVertexAttribArray(2 + i);
+                glVertexAttribDivisor(2 + i, 1);
+            }
+        }
+
+        //Material index per instance, gathered in sorted order like the matrices
+        int[] payloadMaterials = new int[instanceCapacity];
+        StreamBuffer materialStream = null;
+        if(materialArrays)
+        {
+            materialStream = new StreamBuffer(GL_ARRAY_BUFFER, (long)instanceCapacity * Integer.BYTES);
+            GLState.bindBuffer(GL_ARRAY_BUFFER, materialStream.getBuffer());
+
+            glVertexAttribIPointer(6, 1, GL_INT, Integer.BYTES, 0);
+            glEnableVertexAttribArray(6);
+            glVertexAttribDivisor(6, 1);
+        }
+
+        //Shared uniform blocks, created first so the shaders get bound to them
+        FrameData frameData = new FrameData();
+        ObjectData objectData = instanced ? null : new ObjectData();
+
+        //Cold start compiles and links, warm start loads the cached binaries
+        long shaderStart = System.nanoTime();
+        ProgramCache programCache = config.shaderCache != null ? new ProgramCache(Paths.get(config.shaderCache)) : null;
+        Shader.setProgramCache(programCache);
+
+        Shader shader;
+        if(materialArrays) shader = new Shader("instanced_material", "material");
+        else if(instanced) shader = new Shader("instanced", "simple");
+        else               shader = new Shader("simple");
+
+        if(programCache == null)
+            System.out.printf("Shaders ready in %.1f ms, no program cache%n", (System.nanoTime() - shaderStart) / 1.0e6);
+        else
+            System.out.printf("Shaders ready in %.1f ms, program cache: %d hits, %d misses, %d rejected%s%n",
+                    (System.nanoTime() - shaderStart) / 1.0e6, programCache.getHits(), programCache.getMisses(), programCache.getRejected(),
+                    programCache.isSupported() ? "" : " (unsupported by the driver)");
+
+        //Uniforms, view and projection come from the FrameData block
+        int drawIdLoc = instanced ? -1 : shader.initUniform("drawId", 1);
+        int positionScaleLoc = shader.initUniform("positionScale", 3);
+        int positionOffsetLoc = shader.initUniform("positionOffset", 3);
+        int texCoordScaleLoc = shader.initUniform("texCoordScale", 2);
+        int texCoordOffsetLoc = shader.initUniform("texCoordOffset", 2);
+
+
+        //Textures, decoded off the render thread and uploaded a slice per frame
+        //unless a baked copy exists, those are mapped and uploaded right here
+        long textureStart = System.nanoTime();
+        boolean texturesReady = false;
+        TextureLoader textures = new TextureLoader(Math.max(1, Math.min(2, config.workers)), config.uploadBudget);
+        TextureCache textureCache = new TextureCache(textures, config.textureBudget);
+        Texture tex0 = textureCache.acquire("container.jpg");
+        Texture tex1 = textureCache.acquire("awesomeface.png");
+
+        String sampler0 = materialArrays ? "materials" : "tex0";
+        String sampler1 = materialArrays ? "materialTable" : "tex1";
+        shader.initUniform(sampler0, 1);
+        shader.initUniform(sampler1, 1);
+
+        shader.setUniformInt(sampler0, 0);
+        shader.setUniformInt(sampler1, 1);
+
+        RenderQueue queue = new RenderQueue();
+        int cubeShader = queue.registerShader(shader);
+        int cubeMesh = queue.registerMesh(cube);
+
+        //Imported models, shape 0 is the cube and shape k model k - 1. Their
+        //render queue meshes per level of detail are filled in once they
+        //arrive, the cube stands in until then.
+        ModelLoader modelLoader = new ModelLoader(Math.max(1, Math.min(2, config.workers)), config.lodErrors);
+        ArrayList<Model> models = new ArrayList<Model>();
+        for(String file : config.models)
+            models.add(modelLoader.load(Paths.get(file)));
+
+        IntList[][] shapeMeshes = new IntList[models.size() + 1][];
+        int[][] shapeTriangles = new int[shapeMeshes.length][];
+        shapeMeshes[0] = new IntList[] { new IntList() };
+        shapeMeshes[0][0].add(cubeMesh);
+        shapeTriangles[0] = new int[] { cube.getTriangleCount() };
+        boolean[] shapeReady = new boolean[shapeMeshes.length];
+        shapeReady[0] = true;
+        int cubeTextures;
+
+        MaterialAtlas atlas = null;
+        Texture[] materialTextures = null;
+        int[] materialSets = null;
+        if(config.materials > 0)
+        {
+            ArrayList<TextureDecoder.Image> images = new ArrayList<TextureDecoder.Image>();
+            for(int i = 0; i < config.materials; i++)
+                images.add(generateMaterial(i, MATERIAL_SIZE));
+
+            if(materialArrays)
+            {
+                atlas = new MaterialAtlas(images, MATERIAL_LAYER_SIZE, TextureSampler.DEFAULT);
+                cubeTextures = queue.registerTextureSet(atlas.getArray(), atlas.getTable());
+                System.out.printf("%d materials in %d layers, %d of them atlases%n",
+                        atlas.getMaterialCount(), atlas.getLayerCount(), atlas.getAtlasLayerCount());
+            }
+            else
+            {
+                //Same texture on both units, simple.frag mixes it with itself
+                materialTextures = new Texture[images.size()];
+                materialSets = new int[images.size()];
+                for(int i = 0; i < images.size(); i++)
+                {
+                    materialTextures[i] = new Texture(images.get(i), TextureSampler.DEFAULT);
+                    materialSets[i] = queue.registerTextureSet(materialTextures[i], materialTextures[i]);
+                }
+                cubeTextures = materialSets[0];
+            }
+
+            for(TextureDecoder.Image image : images)
+                image.free();
+        }
+        else
+            cubeTextures = queue.registerTextureSet(tex0, tex1);
+
+        //GPU driven mode culls and draws on the GPU, without GL 4.3 the CPU path stays
+        IndirectRenderer indirect = null;
+        TextureBinding[] indirectTextures = materialArrays ? new TextureBinding[]{ atlas.getArray(), atlas.getTable() }
+                : new TextureBinding[]{ tex0, tex1 };
+        boolean indirectDirty = true;
+        if(config.gpuDriven)
+        {
+            if(IndirectRenderer.isSupported())
+            {
+                indirect = new IndirectRenderer(meshPool, materialArrays ? "material" : "simple");
+                Shader indirectShader = indirect.getShader();
+                indirectShader.setUniformInt(indirectShader.initUniform(sampler0, 1), 0);
+                indirectShader.setUniformInt(indirectShader.initUniform(sampler1, 1), 1);
+                indirect.setShape(0, List.of(cube));
+                System.out.println("GPU driven rendering, " + (indirect.hasDrawCount() ? "draw count from the GPU" : "no indirect parameters"));
+            }
+            else
+                System.out.println("GPU driven rendering needs GL 4.3 with vertex shader storage buffers, using the CPU path");
+        }
+
+        Vector3f camPos = new Vector3f();
+        final StreamBuffer instances = instanceStream;
+        final StreamBuffer materials = materialStream;
+
+        RenderQueue.BatchHandler drawBatch;
+        if(instanced)
+        {
+            //Gather the run's matrices in sorted order behind the previous
+            //runs, point the instance attributes at them and draw them at once
+            drawBatch = (q, mesh, payloads, start, count) -> {
+                useMesh(shader, positionScaleLoc, positionOffsetLoc, texCoordScaleLoc, texCoordOffsetLoc, q.getMesh(mesh), count);
+
+                long src = memAddress(instanceData);
+                long dst = instances.reserve((long)count * 16 * Float.BYTES, 16 * Float.BYTES);
+                for(int k = 0; k < count; k++)
+                    memCopy(src + (long)payloads[start + k] * 16 * Float.BYTES, dst + (long)k * 16 * Float.BYTES, 16 * Float.BYTES);
+
+                long offset = instances.commit();
+                GLState.bindBuffer(GL_ARRAY_BUFFER, instances.getBuffer());
+                for(int i = 0; i < 4; i++)
+                    glVertexAttribPointer(2 + i, 4, GL_FLOAT, false, 16*Float.BYTES, offset + (long)i*4*Float.BYTES);
+
+                if(materialArrays)
+                {
+                    long materialDst = materials.reserve((long)count * Integer.BYTES, Integer.BYTES);
+                    for(int k = 0; k < count; k++)
+                        memPutInt(materialDst + (long)k * Integer.BYTES, payloadMaterials[payloads[start + k]]);
+
+                    long materialOffset = materials.commit();
+                    GLState.bindBuffer(GL_ARRAY_BUFFER, materials.getBuffer());
+                    glVertexAttribIPointer(6, 1, GL_INT, Integer.BYTES, materialOffset);
+                }
+
+                q.getMesh(mesh).drawInstanced(count);
+                drawCalls++;
+            };
+        }
+        else
+        {
+            //Send the run's matrices up as one block, each draw then only
+            //tells the shader which slot is its own
+            drawBatch = (q, mesh, payloads, start, count) -> {
+                useMesh(shader, positionScaleLoc, positionOffsetLoc, texCoordScaleLoc, texCoordOffsetLoc, q.getMesh(mesh), count);
+
+                for(int first = start; first < start + count; first += ObjectData.MAX_OBJECTS)
+                {
+                    int n = Math.min(ObjectData.MAX_OBJECTS, start + count - first);
+                    for(int k = 0; k < n; k++)
+                        objectData.add(instanceData, payloads[first + k]);
+                    objectData.flush();
+
+                    for(int k = 0; k < n; k++)
+                    {
+                        shader.setUniformInt(drawIdLoc, k);
+                        q.drawElements(mesh);
+                    }
+                    drawCalls += n;
+                }
+            };
+        }
+
+        String title = glfwGetWindowTitle(window.getHandle());
+        Matrix4f model = new Matrix4f();
+
+        Camera viewCam = config.threadedUpdate ? renderCamera : camera;
+        Vector3f lerpPos = new Vector3f();
+        Vector3f lerpTgt = new Vector3f();
+
+        Thread simulation = null;
+        if(config.threadedUpdate)
+        {
+            simulating = true;
+            simulation = new Thread(this::simulationLoop, "Simulation");
+            simulation.setDaemon(true);
+            simulation.start();
+        }
+
+        //Headless frames go into a framebuffer of our own, optionally read back
+        //for dumping or comparing once everything has loaded
+        RenderTarget target = null;
+        if(window.isHeadless())
+        {
+            target = new RenderTarget(window.getWidth(), window.getHeight());
+            target.bind();
+        }
+        FrameCapture capture = null;
+        if(config.captureDir != null || config.goldenDir != null)
+        {
+            try
+            {
+                capture = new FrameCapture(window.getWidth(), window.getHeight(),
+                        config.captureDir != null ? Paths.get(config.captureDir) : null,
+                        config.goldenDir != null ? Paths.get(config.goldenDir) : null, config.goldenTolerance);
+            }
+            catch(IOException e)
+            {
+                System.err.println("Frame capture disabled: " + e.getMessage());
+            }
+        }
+        int loadedFrames = 0;
+
+        //Generated scenes and replays are measured from the first frame
+        //everything is loaded, the replay starts there too
+        StressReport report = stressScene != null || cameraPath != null ? new StressReport() : null;
+        GpuTimer gpuTimer = report != null ? new GpuTimer() : null;
+        long pathFrames = 0;
+        int visibleCount = 0;
+
+        long startTime = System.nanoTime();
+        long prepTime = 0, updateTime = 0;
+        long frameCount = 0;
+        while(!window.shouldClose() && (config.frames <= 0 || frameCount < config.frames))
+        {
+            long frameStart = System.nanoTime();
+            frameCount++;
+            deltaTime = timer.getElapsedTime();
+            GLState.beginFrame();
+            Profiler.beginFrame();
+            Profiler.Zone frameZone = Profiler.zone("frame");
+
+            //Only waits when the GPU is a whole ring of frames behind
+            try(Profiler.Zone z = Profiler.zone("stream wait"))
+            {
+                StreamBuffer.beginFrame();
+            }
+
+            try(Profiler.Zone z = Profiler.zone("uploads"))
+            {
+                textures.update();
+                textureCache.update();
+                modelLoader.update(meshPool);
+            }
+
+            for(int k = 1; k < shapeMeshes.length; k++)
+            {
+                Model m = models.get(k - 1);
+                if(shapeReady[k] || !m.isResident())
+                    continue;
+
+                shapeMeshes[k] = new IntList[m.getLevelCount()];
+                shapeTriangles[k] = new int[m.getLevelCount()];
+                for(int level = 0; level < m.getLevelCount(); level++)
+                {
+                    shapeMeshes[k][level] = new IntList();
+                    for(Mesh mesh : m.getMeshes(level))
+                        shapeMeshes[k][level].add(queue.registerMesh(mesh));
+                    shapeTriangles[k][level] = m.getTriangleCount(level);
+                }
+                if(lodSelector != null)
+                    lodSelector.setLevels(k, m.getLevelErrors());
+                for(int id = 0; id < scene.getIdLimit(); id++)
+                {
+                    if(scene.contains(id) && scene.getShape(id) == k)
+                        scene.setRadius(id, m.getRadius());
+                }
+                if(indirect != null)
+                {
+                    indirect.setShape(k, m.getMeshes());
+                    indirectDirty = true;
+                }
+                shapeReady[k] = true;
+            }
+
+            //Startup cost of the textures, to compare baked against decoded
+            if(!texturesReady && textures.getQueueDepth() == 0)
+            {
+                texturesReady = true;
+                System.out.printf("Textures resident after %.1f ms, %.2f MB%n",
+                        (System.nanoTime() - textureStart) / 1.0e6, textureCache.getResidentBytes() / 1048576.0);
+            }
+
+            if(exportStats)
+            {
+                exportStats = false;
+                try
+                {
+                    timer.exportCsv(Paths.get(config.statsFile));
+                    System.out.println("Frame statistics written to " + config.statsFile);
+                }
+                catch(IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+
+            if(exportTrace)
+            {
+                exportTrace = false;
+                try
+                {
+                    Profiler.exportChromeTrace(Paths.get(config.traceFile));
+                    System.out.println("Profiler trace written to " + config.traceFile);
+                }
+                catch(IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+
+            boolean loaded = textures.getQueueDepth() == 0 && modelLoader.getQueueDepth() == 0;
+
+            if(timer.windowCompleted())
+            {
+                String status = String.format("%s | FPS: %.2f | p50 %.2f p99 %.2f max %.2f ms, %d hitches | Prep: %.3f ms on %d threads | Draws: %d | GL binds: %d issued, %d skipped | Uniforms: %d calls, %d blocks | Stream wait: %.3f ms" +
+                        " | Switches: %d program, %d texture, %d VAO in %d batches | Vertex fetch: %.1f KB | Triangles: %d (%d at full detail) | Uploads: %.3f ms, %d queued | Textures: %.1f MB, %d hits, %d misses, %d evictions",
+                        title, timer.getFps(), timer.getP50(), timer.getP99(), timer.getMax(), timer.getHitches(), prepTime / 1.0e6, framePrep.getWorkerCount(), drawCalls, GLState.getIssuedCalls(), GLState.getSkippedCalls(),
+                        GLState.getUniformUploads(), GLState.getBlockUploads(), StreamBuffer.getWaitNanos() / 1.0e6,
+                        queue.getProgramSwitches(), queue.getTextureSwitches(), queue.getVaoSwitches(), queue.getBatches(),
+                        vertexFetchBytes / 1024.0, triangles, fullTriangles,
+                        textures.getUploadNanos() / 1.0e6, textures.getQueueDepth(),
+                        textureCache.getResidentBytes() / 1048576.0, textureCache.getHits(), textureCache.getMisses(), textureCache.getEvictions());
+                glfwSetWindowTitle(window.getHandle(), status);
+                if(window.isHeadless())
+                    System.out.println(status);
+            }
+
+            //The path plays back at a fixed rate per frame so every run sees the
+            //same views, the last frame is the one at its end
+            float pathTime = (float)pathFrames / config.pathRate;
+            if(cameraPath != null)
+            {
+                cameraPath.sample(pathTime, camPos, pathAngles);
+                pitch = pathAngles[0];
+                yaw = pathAngles[1];
+                camera.setPos(camPos);
+                camera.setRotation(pitch, yaw);
+                if(loaded)
+                    pathFrames++;
+                if(pathTime >= cameraPath.getDuration())
+                    glfwSetWindowShouldClose(window.getHandle(), true);
+            }
+
+            if(stressScene != null && stressScene.isAnimated())
+            {
+                long updateStart = System.nanoTime();
+                try(Profiler.Zone z = Profiler.zone("animate"))
+                {
+                    stressScene.update(scene, cameraPath != null ? pathTime : (float)((System.nanoTime() - startTime) / 1.0e9));
+                }
+                updateTime = System.nanoTime() - updateStart;
+            }
+
+            if(gpuTimer != null)
+                gpuTimer.begin();
+            drawCalls = 0;
+
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+            //Pick up the newest simulation state and blend the last two ticks
+            if(config.threadedUpdate)
+            {
+                snapshots.update();
+                FrameSnapshot snapshot = snapshots.getReadSlot();
+                if(snapshot.isValid())
+                    snapshot.apply(renderCamera, snapshot.getAlpha(System.nanoTime()), lerpPos, lerpTgt);
+            }
+
+            //Matricies, only rebuilt by the camera when something changed
+            viewCam.setAspectRatio(window.getAspectRatio());
+
+            frameData.update(viewCam, (float)((System.nanoTime() - startTime) / 1.0e9));
+
+            if(indirect != null)
+            {
+                //Culled and drawn on the GPU, the CPU only hands over the frustum
+                //and whatever moved
+                try(Profiler.Zone z = Profiler.zone("upload"))
+                {
+                    if(indirectDirty)
+                    {
+                        indirect.update(scene);
+                        indirectDirty = false;
+                    }
+                    else
+                        indirect.updateTransforms(scene);
+                }
+                for(int unit = 0; unit < indirectTextures.length; unit++)
+                    indirectTextures[unit].bind(unit);
+                try(Profiler.Zone z = Profiler.zone("execute"); Profiler.Zone g = Profiler.gpuZone("draw"))
+                {
+                    indirect.draw(viewCam.getViewProjection());
+                }
+                drawCalls = indirect.getDrawCalls();
+            }
+            else
+            {
+                //Only cubes that may be on screen reach the draw loop, culling and
+                //building their model matrices is spread over the worker threads
+                long prepStart = System.nanoTime();
+                viewCam.getPos(camPos);
+                if(lodSelector != null)
+                {
+                    lodSelector.setView(viewCam.getFov(), window.getHeight());
+                    lodSelector.ensureCapacity(scene.getIdLimit());
+                }
+                try(Profiler.Zone z = Profiler.zone("prepare"))
+                {
+                    visibleCount = framePrep.prepare(scene, viewCam.getViewProjection(), camPos, instanceData, 16);
+                }
+                prepTime = System.nanoTime() - prepStart;
+
+                //Render a small cube at the position the camera is looking at
+                model.translation(viewCam.getTarget()).scale(0.01f);
+                model.get(0, instanceData);
+
+                //Queue every cube keyed by its state and distance, payload i is
+                //the matrix at instanceData[i * 16]
+                float invFar = 1.0f / viewCam.getFar();
+                try(Profiler.Zone z = Profiler.zone("submit"))
+                {
+                    IntList visibleIds = framePrep.getVisibleIds();
+                    IntList visibleLevels = framePrep.getVisibleLevels();
+                    triangles = 0;
+                    fullTriangles = 0;
+                    for(int i = 0; i <= visibleCount; i++)
+                    {
+                        float dx = instanceData.get(i * 16 + 12) - camPos.x;
+                        float dy = instanceData.get(i * 16 + 13) - camPos.y;
+                        float dz = instanceData.get(i * 16 + 14) - camPos.z;
+                        float depth = (float)Math.sqrt(dx * dx + dy * dy + dz * dz) * invFar;
+
+                        //Payload 0 is the marker, payload i the (i - 1)th visible object
+                        int material = i == 0 ? 0 : scene.getMaterial(visibleIds.get(i - 1));
+                        payloadMaterials[i] = material;
+                        int textureSet = materialSets != null ? materialSets[material] : cubeTextures;
+
+                        //A model draws all meshes of its level with the same matrix
+                        int shape = i == 0 ? 0 : scene.getShape(visibleIds.get(i - 1));
+                        if(shapeMeshes[shape] == null)
+                            shape = 0;
+                        int level = i == 0 ? 0 : Math.min(visibleLevels.get(i - 1), shapeMeshes[shape].length - 1);
+                        triangles += shapeTriangles[shape][level];
+                        fullTriangles += shapeTriangles[shape][0];
+
+                        IntList meshes = shapeMeshes[shape][level];
+                        for(int m = 0; m < meshes.size(); m++)
+                            queue.submit(0, false, cubeShader, textureSet, meshes.get(m), depth, i);
+                    }
+                }
+
+                //Uncomment to render in wireframe
+                //glPolygonMode(GL_FRONT_AND_BACK, GL_LINE);
+
+                vertexFetchBytes = 0;
+
+                try(Profiler.Zone z = Profiler.zone("execute"); Profiler.Zone g = Profiler.gpuZone("draw"))
+                {
+                    queue.execute(drawBatch);
+                }
+            }
+
+            if(gpuTimer != null)
+                gpuTimer.end();
+
+            //Frames before the textures and models are in aren't reproducible
+            if(capture != null && loaded)
+            {
+                if(loadedFrames % config.captureEvery == 0)
+                    capture.capture(loadedFrames);
+                loadedFrames++;
+            }
+            StreamBuffer.endFrame();
+
+            glfwPollEvents();
+            if(!config.threadedUpdate && cameraPath == null)
+                processInputs((float)deltaTime);
+            if(recording != null)
+                recording.add((float)((System.nanoTime() - startTime) / 1.0e9), camera.getPos(camPos), pitch, yaw);
+
+            try(Profiler.Zone z = Profiler.zone("swap"))
+            {
+                window.swapBuffers();
+            }
+            frameZone.close();
+
+            //GPU time is of a frame a few back, close enough across a whole run.
+            //With the GPU culling the CPU never sees what is visible.
+            if(report != null && loaded)
+            {
+                if(indirect != null)
+                    report.add(System.nanoTime() - frameStart, StressReport.NOT_MEASURED, updateTime, gpuTimer.getLastNanos(),
+                            drawCalls, StressReport.NOT_MEASURED, StressReport.NOT_MEASURED);
+                else
+                    report.add(System.nanoTime() - frameStart, prepTime, updateTime, gpuTimer.getLastNanos(),
+                            drawCalls, triangles, visibleCount);
+            }
+        }
+
+        if(report != null)
+        {
+            System.out.println(report.describe());
+            String sceneName = stressScene != null ? stressScene.getLayout().name().toLowerCase() : "cubes";
+            String mode = indirect != null ? "gpu-driven" : instanced ? "instanced" : "per-object";
+            try
+            {
+                StringBuilder shape = new StringBuilder(stressScene != null && stressScene.getShapeCount() > 0 ? "" : "cube");
+                for(String file : config.models)
+                    shape.append(shape.isEmpty() ? "" : "+").append(Paths.get(file).getFileName());
+                report.write(Paths.get(config.reportFile), sceneName, scene.size(), config.seed, mode,
+                        shape.toString(), lodSelector != null, indirect != null ? StressReport.NOT_MEASURED : framePrep.getWorkerCount());
+                System.out.println("Stress report appended to " + config.reportFile);
+            }
+            catch(IOException e)
+            {
+                e.printStackTrace();
+            }
+            gpuTimer.cleanup();
+        }
+        if(recording != null)
+        {
+            try
+            {
+                recording.save(Paths.get(config.recordPath));
+                System.out.printf("Camera path of %.1f s written to %s%n", recording.getDuration(), config.recordPath);
+            }
+            catch(IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        if(simulation != null)
+        {
+            simulating = false;
+            try { simulation.join(); }
+            catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+
+        if(capture != null)
+        {
+            capture.finish();
+            System.out.printf("Captured %d frames, %d dropped, %d compared, %d mismatched%n",
+                    capture.getCaptured(), capture.getDropped(), capture.getCompared(), capture.getMismatched());
+            failedFrames = capture.getMismatched();
+            capture.cleanup();
+        }
+        if(target != null)
+            target.cleanup();
+
+        shader.cleanup();
+        if(indirect != null)
+            indirect.cleanup();
+        meshPool.cleanup();
+        frameData.cleanup();
+        if(objectData != null)
+            objectData.cleanup();
+        if(atlas != null)
+            atlas.cleanup();
+        if(materialTextures != null)
+        {
+            for(Texture t : materialTextures)
+                t.delete();
+        }
+        textureCache.release(tex0);
+        textureCache.release(tex1);
+        textureCache.cleanup();
+        textures.cleanup();
+        modelLoader.cleanup();
+        Profiler.cleanupGpu();
+
+        memFree(instanceData);
+        if(instanceStream != null)
+            instanceStream.cleanup();
+        if(materialStream != null)
+            materialStream.cleanup();
+    }
+
+    //Points the shader at the mesh's dequantization before its draws
+    private void useMesh(Shader shader, int scaleLoc, int offsetLoc, int texScaleLoc, int texOffsetLoc, Mesh mesh, int instances)
+    {
+        Vector3fc scale = mesh.getPositionScale(), offset = mesh.getPositionOffset();
+        shader.setUniformFloat(scaleLoc, scale.x(), scale.y(), scale.z());
+        shader.setUniformFloat(offsetLoc, offset.x(), offset.y(), offset.z());
+        Vector2fc texScale = mesh.getTexCoordScale(), texOffset = mesh.getTexCoordOffset();
+        shader.setUniformFloat(texScaleLoc, texScale.x(), texScale.y());
+        shader.setUniformFloat(texOffsetLoc, texOffset.x(), texOffset.y());
+        vertexFetchBytes += mesh.getVertexBytes() * instances;
+    }
+
+    //Generated materials are small so they land in atlases, a layer holds
+    //dozens of them
+    private static final int MATERIAL_SIZE = 64;
+    private static final int MATERIAL_LAYER_SIZE = 512;
+
+    //A checkerboard in a colour of its own so every material is distinct
+    private static TextureDecoder.Image generateMaterial(int index, int size)
+    {
+        TextureDecoder.Image image = TextureDecoder.Image.allocate("material " + index, size, size, 3);
+        ByteBuffer pixels = image.getPixels();
+
+        float hue = (index * 0.618034f) % 1.0f;
+        Vector3f color = new Vector3f(
+                Math.abs(hue * 6.0f - 3.0f) - 1.0f,
+                2.0f - Math.abs(hue * 6.0f - 2.0f),
+                2.0f - Math.abs(hue * 6.0f - 4.0f));
+        color.set(Math.min(Math.max(color.x, 0.0f), 1.0f), Math.min(Math.max(color.y, 0.0f), 1.0f), Math.min(Math.max(color.z, 0.0f), 1.0f));
+
+        int cell = size / 8;
+        for(int y = 0; y < size; y++)
+        {
+            for(int x = 0; x < size; x++)
+            {
+                float shade = ((x / cell + y / cell) & 1) == 0 ? 1.0f : 0.35f;
+                int p = (y * size + x) * 3;
+                pixels.put(p,     (byte)(color.x * shade * 255.0f));
+                pixels.put(p + 1, (byte)(color.y * shade * 255.0f));
+                pixels.put(p + 2, (byte)(color.z * shade * 255.0f));
+            }
+        }
+        return image;
+    }
+
+    ///Frames of the last run that didn't match their golden image
+    public int getFailedFrames()
+    {
+        return failedFrames;
+    }
+
+    public void cleanup()
+    {
+        framePrep.cleanup();
+        scene.cleanup();
+        window.cleanup();
+
+        //Terminate GLFW and free its callback
+        glfwTerminate();
+        glfwSetErrorCallback(null).free();
+    }
+
+    float yaw = 0.0f;
+    float pitch = 0.0f;
+
+    //Scratch vector for camera movement
+    private final Vector3f camMove = new Vector3f();
+
+    //Runs processInputs at a fixed rate and publishes a snapshot after each
+    //tick, the render thread never waits on it
+    private void simulationLoop()
+    {
+        long tickLength = 1_000_000_000L / config.updateRate;
+        float dt = 1.0f / config.updateRate;
+
+        Vector3f lastPos = camera.getPos(new Vector3f());
+        Vector3f lastTgt = new Vector3f(camera.getTarget());
+
+        long tick = 0;
+        long next = System.nanoTime();
+        while(simulating)
+        {
+            try(Profiler.Zone z = Profiler.zone("tick"))
+            {
+                processInputs(dt);
+            }
+
+            long now = System.nanoTime();
+            snapshots.getWriteSlot().capture(lastPos, lastTgt, camera, tick++, now, tickLength);
+            snapshots.publish();
+            camera.getPos(lastPos);
+            lastTgt.set(camera.getTarget());
+
+            //Fixed rate, if we fall behind skip ahead instead of spiralling
+            next += tickLength;
+            long wait = next - System.nanoTime();
+            if(wait > 0)
+                LockSupport.parkNanos(wait);
+            else
+                next = System.nanoTime();
+        }
+    }
+
+    private void processInputs(float dt)
+    {
+
+        float camMoveSpeed = 2.5f * dt;
+        float camRotSpeed = 100.0f * dt;
+
+        if(input.isDown(GLFW_KEY_W))
+            camera.move(camera.getFront(camMove).mul(camMoveSpeed));
+        if(input.isDown(GLFW_KEY_S))
+            camera.move(camera.getFront(camMove).mul(-camMoveSpeed));
+        if(input.isDown(GLFW_KEY_A))
+            camera.move(camera.getRight(camMove).mul(-camMoveSpeed));
+        if(input.isDown(GLFW_KEY_D))
+            camera.move(camera.getRight(camMove).mul(camMoveSpeed));
+
+        if(input.isDown(GLFW_KEY_LEFT_SHIFT))
+            camera.move(camera.getUp(camMove).mul(-camMoveSpeed));
+        if(input.isDown(GLFW_KEY_SPACE))
+            camera.move(camera.getUp(camMove).mul(camMoveSpeed));
+
+        if(input.isDown(GLFW_KEY_I))
+            pitch -= camRotSpeed;
+        if(input.isDown(GLFW_KEY_K))
+            pitch += camRotSpeed;
+        if(input.isDown(GLFW_KEY_J))
+            yaw -= camRotSpeed;
+        if(input.isDown(GLFW_KEY_L))
+            yaw += camRotSpeed;
+
+        if(pitch >= 89.0f) pitch = 89.0f;
+        else if(pitch <= -89.0f) pitch = -89.0f;
+
+        camera.setRotation(pitch, yaw);
+    }
+
+    //This handles inputs that control the window itself, use processInputs to handle
+    //Inputs to the engine
+    public static void keyCallback(long window, int key, int scancode, int action, int mods)
+    {
+        if(key == GLFW_KEY_ESCAPE && action == GLFW_PRESS)
+            glfwSetWindowShouldClose(window, true);
+    }
+}
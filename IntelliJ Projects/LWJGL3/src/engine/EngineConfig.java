@@ -0,0 +1,183 @@
+package engine;
+
+import java.lang.Runtime;
+import java.util.ArrayList;
+
+///Startup settings for the Engine, filled in from the command line by Main
+public class EngineConfig
+{
+    ///Cubes beyond the hand placed ones are scattered randomly with a fixed
+    ///seed so runs with the same count are comparable
+    public int cubeCount = 10;
+
+    ///Per-object issues one uniform upload and draw call per cube, instanced
+    ///packs every model matrix into a vertex buffer and draws them together
+    public boolean instanced = true;
+
+    ///Cull on the GPU and draw everything with multi-draw indirect, falls
+    ///back to the CPU path where GL 4.3 isn't available. Materials have to
+    ///come from texture arrays, one draw can't switch between bound textures.
+    public boolean gpuDriven = false;
+
+    ///Threads culling and building model matrices each frame
+    public int workers = Runtime.getRuntime().availableProcessors();
+
+    ///Run input and camera updates on their own thread at updateRate ticks
+    ///per second instead of once per rendered frame
+    public boolean threadedUpdate = false;
+    public int updateRate = 120;
+
+    ///Frames slower than this count as hitches in the frame statistics,
+    ///pressing F12 writes the statistics to statsFile
+    public double hitchMillis = 1000.0 / 30.0;
+    public String statsFile = "frame_stats.csv";
+
+    ///Bytes of texture data the loader uploads per frame at most
+    public long uploadBudget = 4L << 20;
+
+    ///Estimated GPU memory of resident textures before the cache evicts the
+    ///ones nobody holds. Held textures count toward it but are never evicted,
+    ///so holding more than this leaves only the held ones resident.
+    public long textureBudget = 256L << 20;
+
+    ///Give the cubes this many distinct generated textures, 0 keeps the two
+    ///stock textures. With texture arrays on they share one array and an
+    ///atlas and are told apart per instance, off binds each one separately.
+    public int materials = 0;
+    public boolean textureArrays = true;
+
+    ///Model files to import, objects cycle through the cube and these
+    public ArrayList<String> models = new ArrayList<String>();
+
+    ///Store vertices quantized, see VertexLayout.COMPACT, instead of as floats
+    public boolean compactVertices = true;
+
+    ///Target errors of the generated levels of detail as fractions of a
+    ///mesh's size, see LodBuilder. Empty turns levels of detail off.
+    public float[] lodErrors = { 0.005f, 0.02f, 0.08f };
+    ///Pixels of error a level may show on screen before a finer one is drawn
+    public float lodPixels = 1.0f;
+
+    ///Newest GL version to ask for, lower it to try the 3.3 fallback paths
+    public int glMajor = 4, glMinor = 6;
+
+    ///Render offscreen without showing a window or waiting for vsync, for
+    ///machines without a display. frames ends the run after that many
+    ///frames, 0 runs until the window closes, headless runs default to 600.
+    public boolean headless = false;
+    public int frames = 0;
+
+    ///Every captureEvery-th frame after loading is read back and written to
+    ///captureDir as a PNG and/or compared against the image of the same name
+    ///in goldenDir, channels may differ by goldenTolerance
+    public String captureDir = null;
+    public String goldenDir = null;
+    public int goldenTolerance = 2;
+    public int captureEvery = 1;
+
+    ///Fill the scene procedurally instead of with the cube field, cubeCount
+    ///objects laid out from seed, see StressScene. hierarchyDepth is the
+    ///length of each chain in the hierarchy layout.
+    public StressScene.Layout scene = null;
+    public long seed = 42;
+    public int hierarchyDepth = 16;
+
+    ///Fly the camera along the path in this file instead of reading the
+    ///keyboard, pathRate frames per second of path time whatever the real
+    ///frame rate, so every run renders the same views. The run ends with
+    ///the path. recordPath writes the flight of a keyboard run out as one.
+    public String cameraPath = null;
+    public int pathRate = 60;
+    public String recordPath = null;
+
+    ///Runs with a generated scene or a camera path append a summary of
+    ///their frames to this file, see StressReport
+    public String reportFile = "stress_report.csv";
+
+    ///Directory linked shader programs are cached in, null compiles every run
+    public String shaderCache = "shader_cache";
+
+    ///Record CPU and GPU zones with the Profiler, pressing F11 writes them
+    ///to traceFile as a Chrome trace
+    public boolean profile = false;
+    public String traceFile = "trace.json";
+
+    ///Parses the flags Main accepts, unknown flags are an error
+    public static EngineConfig fromArgs(String[] args)
+    {
+        EngineConfig config = new EngineConfig();
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i]) {
+                case "--cubes"           -> config.cubeCount = Integer.parseInt(value(args, ++i));
+                case "--per-object"      -> config.instanced = false;
+                case "--gpu-driven"      -> config.gpuDriven = true;
+                case "--workers"         -> config.workers = Integer.parseInt(value(args, ++i));
+                case "--threaded-update" -> config.threadedUpdate = true;
+                case "--update-rate"     -> config.updateRate = Integer.parseInt(value(args, ++i));
+                case "--hitch-ms"        -> config.hitchMillis = Double.parseDouble(value(args, ++i));
+                case "--stats-file"      -> config.statsFile = value(args, ++i);
+                case "--upload-kb"       -> config.uploadBudget = Long.parseLong(value(args, ++i)) << 10;
+                case "--texture-mb"      -> config.textureBudget = Long.parseLong(value(args, ++i)) << 20;
+                case "--materials"       -> config.materials = Integer.parseInt(value(args, ++i));
+                case "--no-texture-arrays" -> config.textureArrays = false;
+                case "--model"           -> config.models.add(value(args, ++i));
+                case "--float-vertices"  -> config.compactVertices = false;
+                case "--lod-errors"      -> config.lodErrors = floats(value(args, ++i));
+                case "--no-lod"          -> config.lodErrors = new float[0];
+                case "--lod-pixels"      -> config.lodPixels = Float.parseFloat(value(args, ++i));
+                case "--gl"              -> {
+                    String[] version = value(args, ++i).split("\\.");
+                    config.glMajor = Integer.parseInt(version[0]);
+                    config.glMinor = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+                }
+                case "--headless"        -> config.headless = true;
+                case "--frames"          -> config.frames = Integer.parseInt(value(args, ++i));
+                case "--capture-dir"     -> config.captureDir = value(args, ++i);
+                case "--golden-dir"      -> config.goldenDir = value(args, ++i);
+                case "--golden-tolerance" -> config.goldenTolerance = Integer.parseInt(value(args, ++i));
+                case "--capture-every"   -> config.captureEvery = Integer.parseInt(value(args, ++i));
+                case "--scene"           -> config.scene = StressScene.Layout.parse(value(args, ++i));
+                case "--seed"            -> config.seed = Long.parseLong(value(args, ++i));
+                case "--depth"           -> config.hierarchyDepth = Integer.parseInt(value(args, ++i));
+                case "--camera-path"     -> config.cameraPath = value(args, ++i);
+                case "--path-rate"       -> config.pathRate = Integer.parseInt(value(args, ++i));
+                case "--record-path"     -> config.recordPath = value(args, ++i);
+                case "--report"          -> config.reportFile = value(args, ++i);
+                case "--shader-cache"    -> config.shaderCache = value(args, ++i);
+                case "--no-shader-cache" -> config.shaderCache = null;
+                case "--profile"         -> config.profile = true;
+                case "--trace-file"      -> config.traceFile = value(args, ++i);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if(config.headless && config.frames == 0 && config.cameraPath == null)
+            config.frames = 600;
+        if((config.cameraPath != null || config.recordPath != null) && config.threadedUpdate)
+            throw new IllegalArgumentException("--camera-path and --record-path drive the camera from the render thread, drop --threaded-update");
+        if(config.pathRate < 1)
+            throw new IllegalArgumentException("--path-rate must be at least 1, given: " + config.pathRate);
+        if(config.gpuDriven && config.materials > 0 && (!config.textureArrays || !config.instanced))
+            throw new IllegalArgumentException("--gpu-driven picks materials per object from texture arrays, drop --no-texture-arrays and --per-object");
+        if(config.captureEvery < 1)
+            throw new IllegalArgumentException("--capture-every must be at least 1, given: " + config.captureEvery);
+        return config;
+    }
+
+    //Comma separated list
+    private static float[] floats(String value)
+    {
+        String[] parts = value.split(",");
+        float[] result = new float[parts.length];
+        for(int i = 0; i < parts.length; i++)
+            result[i] = Float.parseFloat(parts[i].trim());
+        return result;
+    }
+
+    private static String value(String[] args, int i)
+    {
+        if(i >= args.length)
+            throw new IllegalArgumentException(args[i - 1] + " expects a value");
+        return args[i];
+    }
+}
@@ -0,0 +1,276 @@
+package engine;
+
+import org.lwjgl.stb.STBImage;
+import org.lwjgl.stb.STBImageWrite;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.system.MemoryStack.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Reads rendered frames back without stalling the render thread. Each
+///capture starts an asynchronous glReadPixels into one of a ring of pixel
+///buffer objects and fences it, later frames copy out whatever readbacks
+///have completed and hand the pixels to a worker thread. The worker writes
+///them out as PNGs, compares them against golden images, or both.
+///
+///When every buffer is still in flight a capture is dropped rather than
+///waited for. finish() waits for everything outstanding.
+public class FrameCapture
+{
+    private static final int PBO_COUNT = 3;
+
+    private final int width, height;
+    private final int frameBytes;
+    private final Path outputDir;   //null writes nothing
+    private final Path goldenDir;   //null compares nothing
+    private final int tolerance;
+
+    private final int[] pbos = new int[PBO_COUNT];
+    private final long[] fences = new long[PBO_COUNT];
+    private final int[] frames = new int[PBO_COUNT];
+    private int next = 0;
+
+    //Pixel copies the worker hands back once done with them
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final ExecutorService worker;
+
+    private int captured, dropped;
+    private final AtomicInteger compared = new AtomicInteger();
+    private final AtomicInteger mismatched = new AtomicInteger();
+
+    ///tolerance is how far a channel may stray from the golden image
+    ///before the pixel counts as different
+    public FrameCapture(int width, int height, Path outputDir, Path goldenDir, int tolerance) throws IOException
+    {
+        this.width = width;
+        this.height = height;
+        this.outputDir = outputDir;
+        this.goldenDir = goldenDir;
+        this.tolerance = tolerance;
+        frameBytes = width * height * 4;
+
+        if(outputDir != null)
+            Files.createDirectories(outputDir);
+
+        glGenBuffers(pbos);
+        for(int pbo : pbos)
+        {
+            GLState.bindBuffer(GL_PIXEL_PACK_BUFFER, pbo);
+            glBufferData(GL_PIXEL_PACK_BUFFER, frameBytes, GL_STREAM_READ);
+        }
+        GLState.bindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+        for(int i = 0; i < PBO_COUNT; i++)
+            free.add(memAlloc(frameBytes));
+
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Frame capture");
+            t.setDaemon(true);
+            return t;
+        });
+        //Rows come back bottom first, the only thread writing images is the worker
+        worker.execute(() -> STBImageWrite.stbi_flip_vertically_on_write(true));
+    }
+
+    ///Starts reading back the bound read framebuffer as frame, then collects
+    ///finished readbacks without waiting on any
+    public void capture(int frame)
+    {
+        poll(false);
+
+        if(fences[next] != NULL)
+        {
+            dropped++;
+            return;
+        }
+
+        GLState.bindBuffer(GL_PIXEL_PACK_BUFFER, pbos[next]);
+        glPixelStorei(GL_PACK_ALIGNMENT, 4);
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+        GLState.bindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+        fences[next] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        frames[next] = frame;
+        next = (next + 1) % PBO_COUNT;
+        captured++;
+    }
+
+    ///Waits for every readback and every image the worker still has
+    public void finish()
+    {
+        poll(true);
+        worker.shutdown();
+        try
+        {
+            worker.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getCaptured()
+    {
+        return captured;
+    }
+
+    ///Captures skipped because every buffer was still in flight
+    public int getDropped()
+    {
+        return dropped;
+    }
+
+    public int getCompared()
+    {
+        return compared.get();
+    }
+
+    ///Frames that didn't match their golden image or had none
+    public int getMismatched()
+    {
+        return mismatched.get();
+    }
+
+    public void cleanup()
+    {
+        for(int i = 0; i < PBO_COUNT; i++)
+        {
+            if(fences[i] != NULL)
+                glDeleteSync(fences[i]);
+        }
+        glDeleteBuffers(pbos);
+        for(int pbo : pbos)
+            GLState.bufferDeleted(pbo);
+
+        ByteBuffer pixels;
+        while((pixels = free.poll()) != null)
+            memFree(pixels);
+    }
+
+    //Hands every completed readback to the worker, oldest first
+    private void poll(boolean wait)
+    {
+        for(int k = 0; k < PBO_COUNT; k++)
+        {
+            int i = (next + k) % PBO_COUNT;
+            if(fences[i] == NULL)
+                continue;
+
+            int status = glClientWaitSync(fences[i], GL_SYNC_FLUSH_COMMANDS_BIT, wait ? Long.MAX_VALUE : 0);
+            if(status == GL_TIMEOUT_EXPIRED)
+                continue;
+
+            ByteBuffer pixels = free.poll();
+            if(pixels == null)
+            {
+                //The worker is behind, leave it in the buffer for now
+                if(!wait)
+                    continue;
+                pixels = memAlloc(frameBytes);
+            }
+
+            GLState.bindBuffer(GL_PIXEL_PACK_BUFFER, pbos[i]);
+            ByteBuffer mapped = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, frameBytes, GL_MAP_READ_BIT);
+            if(mapped != null)
+                memCopy(memAddress(mapped), memAddress(pixels), frameBytes);
+            glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+            GLState.bindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+            glDeleteSync(fences[i]);
+            fences[i] = NULL;
+
+            int frame = frames[i];
+            ByteBuffer copy = pixels;
+            worker.execute(() -> process(frame, copy));
+        }
+    }
+
+    //Worker thread
+    private void process(int frame, ByteBuffer pixels)
+    {
+        String name = String.format("frame_%05d.png", frame);
+        try
+        {
+            if(outputDir != null)
+            {
+                String path = outputDir.resolve(name).toString();
+                if(!STBImageWrite.stbi_write_png(path, width, height, 4, pixels, width * 4))
+                    System.err.println("Unable to write " + path);
+            }
+            if(goldenDir != null)
+                compare(goldenDir.resolve(name), frame, pixels);
+        }
+        finally
+        {
+            free.add(pixels);
+        }
+    }
+
+    private void compare(Path golden, int frame, ByteBuffer pixels)
+    {
+        compared.incrementAndGet();
+        try(MemoryStack stack = stackPush())
+        {
+            IntBuffer w = stack.mallocInt(1);
+            IntBuffer h = stack.mallocInt(1);
+            IntBuffer n = stack.mallocInt(1);
+
+            //Bottom row first like the readback
+            STBImage.stbi_set_flip_vertically_on_load_thread(1);
+            ByteBuffer expected = STBImage.stbi_load(golden.toString(), w, h, n, 4);
+            if(expected == null)
+            {
+                System.err.println("Frame " + frame + ": no golden image " + golden);
+                mismatched.incrementAndGet();
+                return;
+            }
+
+            try
+            {
+                if(w.get(0) != width || h.get(0) != height)
+                {
+                    System.err.printf("Frame %d: golden image is %dx%d, frame is %dx%d%n", frame, w.get(0), h.get(0), width, height);
+                    mismatched.incrementAndGet();
+                    return;
+                }
+
+                int different = 0, worst = 0;
+                for(int p = 0; p < frameBytes; p += 4)
+                {
+                    int diff = 0;
+                    for(int c = 0; c < 3; c++)
+                        diff = Math.max(diff, Math.abs((pixels.get(p + c) & 0xFF) - (expected.get(p + c) & 0xFF)));
+                    if(diff > tolerance)
+                        different++;
+                    worst = Math.max(worst, diff);
+                }
+                if(different > 0)
+                {
+                    System.err.printf("Frame %d: %d pixels differ from %s, by up to %d%n", frame, different, golden, worst);
+                    mismatched.incrementAndGet();
+                }
+            }
+            finally
+            {
+                STBImage.stbi_image_free(expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package engine;
+
+import org.joml.*;
+
+///Everything shaders need to know about the frame as a whole, written once
+///per frame no matter how many programs read it. Shaders declare:
+///
+///    layout (std140) uniform FrameData
+///    {
+///        mat4 view;
+///        mat4 projection;
+///        mat4 viewProjection;
+///        vec4 camPos;    //w unused
+///        float time;     //Seconds since start
+///    };
+public class FrameData
+{
+    public static final String BLOCK = "FrameData";
+    public static final int BINDING = 0;
+
+    private static final int VIEW = 0;
+    private static final int PROJECTION = 64;
+    private static final int VIEW_PROJECTION = 128;
+    private static final int CAM_POS = 192;
+    private static final int TIME = 208;
+    private static final int SIZE = 224;    //Rounded up to a multiple of 16
+
+    private final UniformBlock block;
+    private final Vector3f camPos = new Vector3f();
+
+    public FrameData()
+    {
+        this(new UniformBlock(BLOCK, BINDING, SIZE));
+    }
+
+    private FrameData(UniformBlock block)
+    {
+        this.block = block;
+    }
+
+    ///Staging and upload counting without a GL context, see UniformBlock.detached()
+    static FrameData detached()
+    {
+        return new FrameData(UniformBlock.detached(BLOCK, SIZE));
+    }
+
+    public void update(Camera camera, float time)
+    {
+        block.putMatrix(VIEW, camera.getView());
+        block.putMatrix(PROJECTION, camera.getProjection());
+        block.putMatrix(VIEW_PROJECTION, camera.getViewProjection());
+
+        camera.getPos(camPos);
+        block.putVec4(CAM_POS, camPos.x, camPos.y, camPos.z, 1.0f);
+        block.putFloat(TIME, time);
+        block.upload();
+    }
+
+    public void cleanup()
+    {
+        block.cleanup();
+    }
+}
@@ -0,0 +1,239 @@
+package engine;
+
+import org.joml.*;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+///Per frame CPU work before submission: bringing the world matrices of
+///moved objects up to date, frustum culling against the scene index and
+///copying out the world matrix of everything that survives. The
+///scene index is split into subtrees that workers of a ForkJoinPool cull
+///independently, each subtree appends to its own DrawList so nothing is
+///shared while the tasks run. The lists are merged into a single buffer
+///afterwards in subtree order, so the same scene and view always give the
+///same order whichever worker ran what, and only that buffer is ever
+///touched by the GL thread. With a
+///LodSelector set the workers also pick each visible object's level of
+///detail from its distance to the eye.
+public class FramePrep
+{
+    ///Draw records produced for one subtree, kept between frames so
+    ///they stop allocating once they have grown large enough.
+    public static class DrawList
+    {
+        private final IntList ids = new IntList(256);
+        private final IntList levels = new IntList(256);
+        private float[] models = new float[256 * 16];
+
+        //Traversal stacks for AABBTree.query
+        private final IntList stack = new IntList(64);
+        private final IntList collect = new IntList(64);
+
+        private final IntList culled = new IntList(256);
+
+        private void clear()
+        {
+            ids.clear();
+            levels.clear();
+        }
+
+        //Copies the object's world matrix in, returns where it landed
+        private int add(Scene scene, int id)
+        {
+            int i = ids.size();
+            if((i + 1) * 16 > models.length)
+                models = Arrays.copyOf(models, models.length * 2);
+            scene.getModel(id, models, i * 16);
+            ids.add(id);
+            levels.add(0);
+            return i * 16;
+        }
+
+        public int size()
+        {
+            return ids.size();
+        }
+    }
+
+    //Subtrees handed out per worker, more than one so uneven subtrees balance out
+    private static final int TASKS_PER_WORKER = 4;
+
+    private final int workers;
+    private final ForkJoinPool pool;
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Vector3f eye = new Vector3f();
+    private LodSelector lod;
+
+    //One per subtree, a task only ever touches the list of its own subtree
+    private final ArrayList<DrawList> lists = new ArrayList<DrawList>();
+    private int used = 0;
+
+    private final IntList subtrees = new IntList();
+    private final IntList scratch = new IntList();
+
+    private final IntList visibleIds = new IntList();
+    private final IntList visibleLevels = new IntList();
+
+    ///workers of 1 runs everything on the calling thread
+    public FramePrep(int workers)
+    {
+        if(workers < 1)
+            throw new IllegalArgumentException("Worker count must be at least 1, given: " + workers);
+
+        this.workers = workers;
+        pool = workers > 1 ? new ForkJoinPool(workers) : null;
+    }
+
+    public int getWorkerCount()
+    {
+        return workers;
+    }
+
+    ///Selects levels of detail during prepare(), null draws everything at level 0
+    public void setLodSelector(LodSelector lod)
+    {
+        this.lod = lod;
+    }
+
+    ///Culls scene against viewProj and writes the model matrix of every
+    ///visible object into dest starting at float index offset. Returns the
+    ///number of matrices written, getVisibleIds() and getVisibleLevels()
+    ///hold their ids and levels of detail in the same order.
+    public int prepare(Scene scene, Matrix4fc viewProj, Vector3fc eye, FloatBuffer dest, int offset)
+    {
+        //Moved objects get their world matrices and index entries first
+        try(Profiler.Zone z = Profiler.zone("transforms"))
+        {
+            scene.updateTransforms(pool);
+        }
+
+        frustum.set(viewProj, false);
+        this.eye.set(eye);
+
+        AABBTree index = scene.getIndex();
+        if(pool == null)
+        {
+            used = reserve(1);
+            cullSubtrees(scene, index, -1, lists.get(0));
+        }
+        else
+        {
+            index.getSubtrees(workers * TASKS_PER_WORKER, subtrees, scratch);
+            used = reserve(subtrees.size());
+            if(used > 0)
+                pool.invoke(new CullTask(scene, index, 0, used));
+        }
+
+        //The workers are done, copy the lists out back to back in subtree order
+        visibleIds.clear();
+        visibleLevels.clear();
+        int written = 0;
+        for(int l = 0; l < used; l++)
+        {
+            DrawList list = lists.get(l);
+            int n = list.size();
+            if(offset + (written + n) * 16 > dest.capacity())
+                throw new IllegalArgumentException("Destination buffer too small for " + (written + n) + " matrices");
+
+            dest.put(offset + written * 16, list.models, 0, n * 16);
+            for(int i = 0; i < n; i++)
+            {
+                visibleIds.add(list.ids.get(i));
+                visibleLevels.add(list.levels.get(i));
+            }
+            written += n;
+        }
+        return written;
+    }
+
+    public IntList getVisibleIds()
+    {
+        return visibleIds;
+    }
+
+    public IntList getVisibleLevels()
+    {
+        return visibleLevels;
+    }
+
+    public void cleanup()
+    {
+        if(pool != null)
+            pool.shutdown();
+    }
+
+    //Clears the first count lists, making more if the index split into
+    //more subtrees than ever before. Runs before the tasks are forked.
+    private int reserve(int count)
+    {
+        while(lists.size() < count)
+            lists.add(new DrawList());
+        for(int l = 0; l < count; l++)
+            lists.get(l).clear();
+        return count;
+    }
+
+    //Culls one subtree, or the whole index when node is -1, into list
+    private void cullSubtrees(Scene scene, AABBTree index, int node, DrawList list)
+    {
+        list.culled.clear();
+
+        try(Profiler.Zone z = Profiler.zone("cull"))
+        {
+            if(node < 0)
+                index.query(frustum, list.culled);
+            else
+                index.query(frustum, node, list.culled, list.stack, list.collect);
+        }
+
+        try(Profiler.Zone z = Profiler.zone("models"))
+        {
+            //The world matrices are already built, this is only a copy
+            for(int i = 0; i < list.culled.size(); i++)
+            {
+                int id = list.culled.get(i);
+                int m = list.add(scene, id);
+
+                if(lod != null)
+                {
+                    float distance = eye.distance(list.models[m + 12], list.models[m + 13], list.models[m + 14]);
+                    list.levels.set(list.size() - 1, lod.select(id, scene.getShape(id), distance));
+                }
+            }
+        }
+    }
+
+    private class CullTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Scene scene;
+        private final AABBTree index;
+        private final int from, to;
+
+        CullTask(Scene scene, AABBTree index, int from, int to)
+        {
+            this.scene = scene;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from == 1)
+            {
+                cullSubtrees(scene, index, subtrees.get(from), lists.get(from));
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new CullTask(scene, index, from, mid), new CullTask(scene, index, mid, to));
+        }
+    }
+}
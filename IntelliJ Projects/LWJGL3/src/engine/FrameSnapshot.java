@@ -0,0 +1,61 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+
+///State the simulation publishes for the renderer each tick. It carries
+///both the previous and the current tick so the renderer can interpolate
+///between them. Once published a snapshot is read only until the triple
+///buffer hands it back to the simulation.
+public class FrameSnapshot
+{
+    private final Vector3f prevPos = new Vector3f();
+    private final Vector3f prevTgt = new Vector3f();
+    private final Vector3f pos = new Vector3f();
+    private final Vector3f tgt = new Vector3f();
+
+    private long tick = -1;
+    private long tickTime;      //System.nanoTime() when the tick was simulated
+    private long tickLength;    //Nanoseconds between ticks
+
+    ///Records camera as the current state next to the state of the tick before
+    public void capture(Vector3fc lastPos, Vector3fc lastTgt, Camera camera, long tick, long tickTime, long tickLength)
+    {
+        prevPos.set(lastPos);
+        prevTgt.set(lastTgt);
+        camera.getPos(pos);
+        tgt.set(camera.getTarget());
+
+        this.tick = tick;
+        this.tickTime = tickTime;
+        this.tickLength = tickLength;
+    }
+
+    public boolean isValid()
+    {
+        return tick >= 0;
+    }
+
+    public long getTick()
+    {
+        return tick;
+    }
+
+    ///How far the renderer is between the previous and current tick at
+    ///time now, from 0 to 1
+    public float getAlpha(long now)
+    {
+        float alpha = (float)(now - tickTime) / (float)tickLength;
+        return Math.min(Math.max(alpha, 0.0f), 1.0f);
+    }
+
+    ///Writes the interpolated camera state into camera
+    public void apply(Camera camera, float alpha, Vector3f scratchPos, Vector3f scratchTgt)
+    {
+        prevPos.lerp(pos, alpha, scratchPos);
+        prevTgt.lerp(tgt, alpha, scratchTgt);
+        camera.setPos(scratchPos);
+        camera.setTgt(scratchTgt);
+    }
+}
@@ -0,0 +1,253 @@
+package engine;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.ARBIndirectParameters.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL21.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL40.*;
+
+///Shadow copy of the GL binding state. Every bind goes through here and
+///is dropped when the requested object is already bound, each dropped
+///call saves a JNI crossing plus the driver's validation.
+///Only valid on the thread that owns the context.
+public final class GLState
+{
+    private static final int MAX_UNITS = 32;
+
+    //Texture targets we track per unit
+    private static final int[] TEXTURE_TARGETS = {
+            GL_TEXTURE_2D,
+            GL_TEXTURE_2D_ARRAY,
+            GL_TEXTURE_CUBE_MAP,
+            GL_TEXTURE_BUFFER,
+    };
+
+    //Buffer targets that aren't part of the VAO state
+    private static final int[] BUFFER_TARGETS = {
+            GL_ARRAY_BUFFER,
+            GL_ELEMENT_ARRAY_BUFFER,
+            GL_PIXEL_PACK_BUFFER,
+            GL_PIXEL_UNPACK_BUFFER,
+            GL_UNIFORM_BUFFER,
+            GL_COPY_READ_BUFFER,
+            GL_COPY_WRITE_BUFFER,
+            GL_TEXTURE_BUFFER,
+            GL_DRAW_INDIRECT_BUFFER,
+            GL_PARAMETER_BUFFER_ARB,
+    };
+
+    private static final int[] CAPABILITIES = {
+            GL_DEPTH_TEST,
+            GL_CULL_FACE,
+            GL_BLEND,
+            GL_SCISSOR_TEST,
+            GL_STENCIL_TEST,
+    };
+
+    private static final int UNKNOWN = -1;
+
+    private static int program;
+    private static int vao;
+    private static int activeUnit;
+    private static final int[][] textures = new int[MAX_UNITS][TEXTURE_TARGETS.length];
+    private static final int[] buffers = new int[BUFFER_TARGETS.length];
+    private static final int[] enabled = new int[CAPABILITIES.length];
+
+    //Counters for the frame in progress and the last completed frame
+    private static int issued, skipped;
+    private static int lastIssued, lastSkipped;
+    private static int uniforms, blocks;
+    private static int lastUniforms, lastBlocks;
+
+    static { reset(); }
+
+    private GLState() {}
+
+    ///Forgets everything we know, call after creating a context or after
+    ///code that binds behind our back.
+    public static void reset()
+    {
+        program = UNKNOWN;
+        vao = UNKNOWN;
+        activeUnit = UNKNOWN;
+        for(int[] unit : textures)
+            Arrays.fill(unit, UNKNOWN);
+        Arrays.fill(buffers, UNKNOWN);
+        Arrays.fill(enabled, UNKNOWN);
+    }
+
+    ///Rolls the counters over, call once at the start of each frame
+    public static void beginFrame()
+    {
+        lastIssued = issued;
+        lastSkipped = skipped;
+        lastUniforms = uniforms;
+        lastBlocks = blocks;
+        issued = 0;
+        skipped = 0;
+        uniforms = 0;
+        blocks = 0;
+    }
+
+    public static void useProgram(int id)
+    {
+        if(program == id) { skipped++; return; }
+
+        glUseProgram(id);
+        program = id;
+        issued++;
+    }
+
+    public static int getProgram()
+    {
+        return program;
+    }
+
+    public static void bindVertexArray(int id)
+    {
+        if(vao == id) { skipped++; return; }
+
+        glBindVertexArray(id);
+        vao = id;
+        issued++;
+
+        //The element buffer binding belongs to the VAO
+        buffers[bufferIndex(GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+    }
+
+    ///unit is the index, not GL_TEXTUREi, below MAX_UNITS
+    public static void activeTexture(int unit)
+    {
+        if(activeUnit == unit) { skipped++; return; }
+        checkUnit(unit);
+
+        glActiveTexture(GL_TEXTURE0 + unit);
+        activeUnit = unit;
+        issued++;
+    }
+
+    ///Binds id to target on the active unit
+    public static void bindTexture(int target, int id)
+    {
+        int t = textureIndex(target);
+        if(activeUnit != UNKNOWN && t != UNKNOWN && textures[activeUnit][t] == id) { skipped++; return; }
+
+        glBindTexture(target, id);
+        if(activeUnit != UNKNOWN && t != UNKNOWN)
+            textures[activeUnit][t] = id;
+        issued++;
+    }
+
+    public static void bindTexture(int unit, int target, int id)
+    {
+        checkUnit(unit);
+        int t = textureIndex(target);
+        if(t != UNKNOWN && textures[unit][t] == id) { skipped++; return; }
+
+        activeTexture(unit);
+        bindTexture(target, id);
+    }
+
+    public static void bindBuffer(int target, int id)
+    {
+        int b = bufferIndex(target);
+        if(b != UNKNOWN && buffers[b] == id) { skipped++; return; }
+
+        glBindBuffer(target, id);
+        if(b != UNKNOWN)
+            buffers[b] = id;
+        issued++;
+    }
+
+    public static void enable(int cap)
+    {
+        setCapability(cap, true);
+    }
+
+    public static void disable(int cap)
+    {
+        setCapability(cap, false);
+    }
+
+    private static void setCapability(int cap, boolean on)
+    {
+        int c = capabilityIndex(cap);
+        int want = on ? 1 : 0;
+        if(c != UNKNOWN && enabled[c] == want) { skipped++; return; }
+
+        if(on) glEnable(cap);
+        else   glDisable(cap);
+        if(c != UNKNOWN)
+            enabled[c] = want;
+        issued++;
+    }
+
+    //Deleting a bound object unbinds it and frees the name for reuse,
+    //so any cached copy of that name has to go
+    public static void programDeleted(int id)
+    {
+        if(program == id) program = UNKNOWN;
+    }
+
+    public static void vertexArrayDeleted(int id)
+    {
+        if(vao == id) vao = UNKNOWN;
+    }
+
+    public static void textureDeleted(int id)
+    {
+        for(int[] unit : textures)
+            for(int t = 0; t < unit.length; t++)
+                if(unit[t] == id) unit[t] = UNKNOWN;
+    }
+
+    public static void bufferDeleted(int id)
+    {
+        for(int b = 0; b < buffers.length; b++)
+            if(buffers[b] == id) buffers[b] = UNKNOWN;
+    }
+
+    //Not state changes, but counted here with the rest of the per frame GL traffic
+    public static void uniformUploaded()      { uniforms++; }
+    public static void uniformBlockUploaded() { blocks++; }
+
+    public static int getIssuedCalls()    { return lastIssued; }
+    public static int getSkippedCalls()   { return lastSkipped; }
+    public static int getUniformUploads() { return lastUniforms; }
+    public static int getBlockUploads()   { return lastBlocks; }
+
+    //GL guarantees at least 48 combined units on 3.3, we track 32
+    private static void checkUnit(int unit)
+    {
+        if(unit < 0 || unit >= MAX_UNITS)
+            throw new IllegalArgumentException("Texture unit must be in [0, " + MAX_UNITS + "), given: " + unit);
+    }
+
+    private static int textureIndex(int target)
+    {
+        for(int i = 0; i < TEXTURE_TARGETS.length; i++)
+            if(TEXTURE_TARGETS[i] == target) return i;
+        return UNKNOWN;
+    }
+
+    private static int bufferIndex(int target)
+    {
+        for(int i = 0; i < BUFFER_TARGETS.length; i++)
+            if(BUFFER_TARGETS[i] == target) return i;
+        return UNKNOWN;
+    }
+
+    private static int capabilityIndex(int cap)
+    {
+        for(int i = 0; i < CAPABILITIES.length; i++)
+            if(CAPABILITIES[i] == cap) return i;
+        return UNKNOWN;
+    }
+}
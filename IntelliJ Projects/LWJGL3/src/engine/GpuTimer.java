@@ -0,0 +1,76 @@
+package engine;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL33.*;
+
+///GPU time of the work between begin() and end(), once per frame. Results
+///are read a few frames later and only if they are already there, so the
+///CPU never waits on the GPU, a frame whose result isn't in by the time
+///its query comes round again is dropped. Unlike the Profiler's GPU zones
+///this runs whether profiling is on or not. GL thread only.
+public class GpuTimer
+{
+    private static final int QUERIES = StreamBuffer.FRAMES + 1;
+
+    private final int[] queries = new int[QUERIES];
+    private final boolean[] pending = new boolean[QUERIES];
+    private int next = 0;
+    private boolean open = false;
+
+    private long last = -1;
+    private long dropped = 0;
+
+    public GpuTimer()
+    {
+        glGenQueries(queries);
+    }
+
+    ///Starts timing, collecting the result the query last held first
+    public void begin()
+    {
+        if(open)
+            throw new IllegalStateException("GPU timer already running");
+
+        last = -1;
+        if(pending[next])
+        {
+            if(glGetQueryObjecti(queries[next], GL_QUERY_RESULT_AVAILABLE) == GL_TRUE)
+                last = glGetQueryObjectui64(queries[next], GL_QUERY_RESULT);
+            else
+                dropped++;
+            pending[next] = false;
+        }
+
+        glBeginQuery(GL_TIME_ELAPSED, queries[next]);
+        open = true;
+    }
+
+    public void end()
+    {
+        if(!open)
+            throw new IllegalStateException("GPU timer not running");
+
+        glEndQuery(GL_TIME_ELAPSED);
+        pending[next] = true;
+        next = (next + 1) % QUERIES;
+        open = false;
+    }
+
+    ///Nanoseconds the frame QUERIES frames back took on the GPU, collected
+    ///by the last begin(). -1 when there was none or it wasn't ready.
+    public long getLastNanos()
+    {
+        return last;
+    }
+
+    ///Frames whose result wasn't ready in time
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    public void cleanup()
+    {
+        glDeleteQueries(queries);
+    }
+}
@@ -0,0 +1,414 @@
+package engine;
+
+import org.joml.*;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.lang.Math;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.ARBIndirectParameters.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
+import static org.lwjgl.opengl.GL40.*;
+import static org.lwjgl.opengl.GL42.*;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Draws the whole scene without the CPU touching individual objects. The
+///objects sit in a storage buffer, cull.comp tests each against the frustum
+///and appends the visible ones to a draw command per mesh, and everything
+///goes out in one glMultiDrawElementsIndirect per index type. Where
+///ARB_indirect_parameters is around, compact.comp packs the commands that
+///got instances together first and the draws take their count from the GPU.
+///
+///All meshes come from one MeshPool. Shapes are lists of meshes like the
+///Engine's, objects whose shape has no meshes yet draw shape 0. Needs GL 4.3
+///with storage buffers in vertex shaders, see isSupported(). GL thread only.
+public class IndirectRenderer
+{
+    private static final int GROUP_SIZE = 64;   //local_size_x of the compute shaders
+
+    //std430 layouts, see cull.comp
+    private static final int OBJECT_BYTES = 96;
+    private static final int SHAPE_BYTES = 8;
+    private static final int MESH_BYTES = 64;
+    private static final int COMMAND_BYTES = 20;
+    private static final int INSTANCE_BYTES = 8;
+
+    private static final int OBJECTS = 0, SHAPES = 1, MESHES = 2, COMMANDS = 3, INSTANCES = 4, COMPACTED = 5, COUNTS = 6;
+    private static final int INSTANCE_LOCATION = 8;
+
+    private final MeshPool pool;
+    private final boolean drawCount;
+
+    private final Shader cull, compact, draw;
+    private final int planesLoc, objectCountLoc, commandCountLoc, shortCommandsLoc;
+
+    private final int objects, shapeTable, meshTable, commands, template, instances, compacted, counts;
+
+    private final ArrayList<List<Mesh>> shapes = new ArrayList<List<Mesh>>();
+    private final Vector4f plane = new Vector4f();
+    private final Vector3f pos = new Vector3f();
+    private final float[] planes = new float[24];
+    private final ByteBuffer zeroCounts = memCalloc(2 * Integer.BYTES);
+
+    //Copy of the objects buffer, moved objects are patched in here and the
+    //range they span uploaded from it
+    private ByteBuffer objectData = memAlloc(OBJECT_BYTES);
+
+    private int objectCount, commandCount, shortCommands;
+    private boolean built = false;
+
+    ///Everything this needs is core in GL 4.3, except that vertex shaders
+    ///may have no storage buffers at all there
+    public static boolean isSupported()
+    {
+        return GL.getCapabilities().OpenGL43 && glGetInteger(GL_MAX_VERTEX_SHADER_STORAGE_BLOCKS) >= 2;
+    }
+
+    ///fragName is the fragment shader drawn with, see gpu_driven.vert for
+    ///what it receives
+    public IndirectRenderer(MeshPool pool, String fragName)
+    {
+        if(!isSupported())
+            throw new IllegalStateException("GPU driven rendering needs GL 4.3 with vertex shader storage buffers");
+
+        this.pool = pool;
+        GLCapabilities caps = GL.getCapabilities();
+        drawCount = caps.OpenGL46 || caps.GL_ARB_indirect_parameters;
+
+        cull = Shader.compute("cull");
+        compact = Shader.compute("compact");
+        draw = new Shader("gpu_driven", fragName);
+
+        //A vec4 array, uploaded in one call past the Shader setters
+        planesLoc = glGetUniformLocation(cull.getID(), "planes");
+        objectCountLoc = cull.initUniform("objectCount", 1);
+        commandCountLoc = compact.initUniform("commandCount", 1);
+        shortCommandsLoc = compact.initUniform("shortCommands", 1);
+
+        objects = glGenBuffers();
+        shapeTable = glGenBuffers();
+        meshTable = glGenBuffers();
+        commands = glGenBuffers();
+        template = glGenBuffers();
+        instances = glGenBuffers();
+        compacted = glGenBuffers();
+        counts = glGenBuffers();
+
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, counts);
+        glBufferData(GL_COPY_WRITE_BUFFER, 2 * Integer.BYTES, GL_DYNAMIC_DRAW);
+    }
+
+    ///True when the draws take their count from the GPU
+    public boolean hasDrawCount()
+    {
+        return drawCount;
+    }
+
+    ///The program the scene is drawn with, for setting its samplers
+    public Shader getShader()
+    {
+        return draw;
+    }
+
+    ///Sets the meshes of a shape, they have to come from the renderer's
+    ///pool. Takes effect with the next update().
+    public void setShape(int shape, List<Mesh> meshes)
+    {
+        for(Mesh mesh : meshes)
+        {
+            if(mesh.getPool() != pool)
+                throw new IllegalArgumentException(mesh.name + " belongs to another pool");
+        }
+        while(shapes.size() <= shape)
+            shapes.add(List.of());
+        shapes.set(shape, new ArrayList<Mesh>(meshes));
+    }
+
+    ///Rebuilds every table from scene and the shapes. Uploads all objects,
+    ///call after objects were added or removed or shapes changed, not
+    ///every frame. Objects that only moved are updateTransforms()' job.
+    public void update(Scene scene)
+    {
+        if(shapes.isEmpty() || shapes.get(0).isEmpty())
+            throw new IllegalStateException("Shape 0 needs meshes, it stands in for the others");
+
+        //Mesh table in shape order so every shape's meshes are contiguous
+        ArrayList<Mesh> meshes = new ArrayList<Mesh>();
+        int[] shapeFirst = new int[shapes.size()];
+        for(int k = 0; k < shapes.size(); k++)
+        {
+            shapeFirst[k] = meshes.size();
+            meshes.addAll(shapes.get(k));
+        }
+
+        //Commands with 16 bit indices first, one index type per draw call
+        int[] commandOf = new int[meshes.size()];
+        shortCommands = 0;
+        for(int m = 0; m < meshes.size(); m++)
+        {
+            if(meshes.get(m).getIndexType() == GL_UNSIGNED_SHORT)
+                commandOf[m] = shortCommands++;
+        }
+        int next = shortCommands;
+        for(int m = 0; m < meshes.size(); m++)
+        {
+            if(meshes.get(m).getIndexType() != GL_UNSIGNED_SHORT)
+                commandOf[m] = next++;
+        }
+        commandCount = meshes.size();
+
+        //Room for every object of a shape in each of its meshes' commands
+        objectCount = scene.getIdLimit();
+        int[] capacity = new int[commandCount];
+        for(int id = 0; id < objectCount; id++)
+        {
+            if(!scene.contains(id))
+                continue;
+            int shape = resolve(scene.getShape(id));
+            for(int m = shapeFirst[shape]; m < shapeFirst[shape] + shapes.get(shape).size(); m++)
+                capacity[commandOf[m]]++;
+        }
+        int[] baseInstance = new int[commandCount];
+        int instanceTotal = 0;
+        for(int c = 0; c < commandCount; c++)
+        {
+            baseInstance[c] = instanceTotal;
+            instanceTotal += capacity[c];
+        }
+
+        scene.updateTransforms(null);
+        if(objectData.capacity() < objectCount * OBJECT_BYTES)
+            objectData = memRealloc(objectData, objectCount * OBJECT_BYTES);
+        memSet(objectData, 0);
+        for(int id = 0; id < objectCount; id++)
+        {
+            if(scene.contains(id))
+            {
+                writeTransform(scene, id);
+                objectData.putInt(id * OBJECT_BYTES + 80, resolve(scene.getShape(id))).putInt(id * OBJECT_BYTES + 84, scene.getMaterial(id));
+            }
+            else
+                objectData.putFloat(id * OBJECT_BYTES + 76, -1.0f);
+        }
+        upload(objects, objectData, objectCount * OBJECT_BYTES);
+
+        int stagingBytes = Math.max(commandCount * Math.max(MESH_BYTES, COMMAND_BYTES), shapes.size() * SHAPE_BYTES);
+        ByteBuffer data = memCalloc(Math.max(stagingBytes, 1));
+        try
+        {
+            for(int k = 0; k < shapes.size(); k++)
+            {
+                int shape = resolve(k);
+                data.putInt(k * SHAPE_BYTES, shapeFirst[shape]).putInt(k * SHAPE_BYTES + 4, shapes.get(shape).size());
+            }
+            upload(shapeTable, data, shapes.size() * SHAPE_BYTES);
+
+            for(int m = 0; m < meshes.size(); m++)
+            {
+                Mesh mesh = meshes.get(m);
+                int e = m * MESH_BYTES;
+                Vector3fc scale = mesh.getPositionScale(), offset = mesh.getPositionOffset();
+                Vector2fc texScale = mesh.getTexCoordScale(), texOffset = mesh.getTexCoordOffset();
+                data.putInt(e, commandOf[m]);
+                data.putFloat(e + 16, scale.x()).putFloat(e + 20, scale.y()).putFloat(e + 24, scale.z());
+                data.putFloat(e + 32, offset.x()).putFloat(e + 36, offset.y()).putFloat(e + 40, offset.z());
+                data.putFloat(e + 48, texScale.x()).putFloat(e + 52, texScale.y()).putFloat(e + 56, texOffset.x()).putFloat(e + 60, texOffset.y());
+            }
+            upload(meshTable, data, meshes.size() * MESH_BYTES);
+
+            //Instance counts start at 0 and are reset from this copy every frame
+            for(int m = 0; m < meshes.size(); m++)
+            {
+                Mesh mesh = meshes.get(m);
+                int c = commandOf[m] * COMMAND_BYTES;
+                data.putInt(c, mesh.getIndexCount());
+                data.putInt(c + 4, 0);
+                data.putInt(c + 8, (int)(mesh.getIndexOffset() / mesh.getIndexSize()));
+                data.putInt(c + 12, mesh.getBaseVertex());
+                data.putInt(c + 16, baseInstance[commandOf[m]]);
+            }
+            upload(template, data, commandCount * COMMAND_BYTES);
+        }
+        finally
+        {
+            memFree(data);
+        }
+
+        allocate(commands, (long)commandCount * COMMAND_BYTES);
+        allocate(compacted, (long)commandCount * COMMAND_BYTES);
+        allocate(instances, (long)Math.max(instanceTotal, 1) * INSTANCE_BYTES);
+        built = true;
+    }
+
+    ///Brings the objects buffer up to date with objects that moved since
+    ///the last update, leaving every other table alone. Only the model
+    ///matrices and bounding spheres of the moved objects are written, then
+    ///the range of the buffer they span is uploaded in one go. Has to be
+    ///what brings the scene's transforms up to date, moves another caller
+    ///picks up don't reach the GPU. Falls back to update() when objects
+    ///were added since.
+    public void updateTransforms(Scene scene)
+    {
+        if(!built || scene.getIdLimit() != objectCount)
+        {
+            update(scene);
+            return;
+        }
+        if(scene.updateTransforms(null) == 0)
+            return;
+
+        IntList changed = scene.getTransforms().getChanged();
+        int first = Integer.MAX_VALUE, last = -1;
+        for(int i = 0; i < changed.size(); i++)
+        {
+            int id = changed.get(i);
+            writeTransform(scene, id);
+            first = Math.min(first, id);
+            last = Math.max(last, id);
+        }
+
+        long offset = (long)first * OBJECT_BYTES;
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, objects);
+        nglBufferSubData(GL_COPY_WRITE_BUFFER, offset, (long)(last - first + 1) * OBJECT_BYTES, memAddress(objectData) + offset);
+    }
+
+    //Copies the world matrix straight out of the transform store, followed
+    //by the bounding sphere
+    private void writeTransform(Scene scene, int id)
+    {
+        int o = id * OBJECT_BYTES;
+        memCopy(scene.getTransforms().getWorldAddress(id), memAddress(objectData) + o, 16 * Float.BYTES);
+        scene.getPosition(id, pos);
+        objectData.putFloat(o + 64, pos.x).putFloat(o + 68, pos.y).putFloat(o + 72, pos.z).putFloat(o + 76, scene.getRadius(id));
+    }
+
+    ///Culls and draws everything visible from viewProj. Textures and the
+    ///FrameData block have to be bound already.
+    public void draw(Matrix4fc viewProj)
+    {
+        if(commandCount == 0 || objectCount == 0)
+            return;
+
+        //Fresh commands with no instances
+        GLState.bindBuffer(GL_COPY_READ_BUFFER, template);
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, commands);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, (long)commandCount * COMMAND_BYTES);
+
+        for(int i = 0; i < 6; i++)
+        {
+            viewProj.frustumPlane(i, plane);
+            planes[i * 4] = plane.x;
+            planes[i * 4 + 1] = plane.y;
+            planes[i * 4 + 2] = plane.z;
+            planes[i * 4 + 3] = plane.w;
+        }
+
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, OBJECTS, objects);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, SHAPES, shapeTable);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, MESHES, meshTable);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, COMMANDS, commands);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, INSTANCES, instances);
+
+        cull.use();
+        glUniform4fv(planesLoc, planes);
+        GLState.uniformUploaded();
+        cull.setUniformInt(objectCountLoc, objectCount);
+        glDispatchCompute((objectCount + GROUP_SIZE - 1) / GROUP_SIZE, 1, 1);
+
+        int source = commands;
+        if(drawCount)
+        {
+            GLState.bindBuffer(GL_COPY_WRITE_BUFFER, counts);
+            nglBufferSubData(GL_COPY_WRITE_BUFFER, 0, 2 * Integer.BYTES, memAddress(zeroCounts));
+
+            glMemoryBarrier(GL_SHADER_STORAGE_BARRIER_BIT);
+            glBindBufferBase(GL_SHADER_STORAGE_BUFFER, COMPACTED, compacted);
+            glBindBufferBase(GL_SHADER_STORAGE_BUFFER, COUNTS, counts);
+            compact.use();
+            compact.setUniformInt(commandCountLoc, commandCount);
+            compact.setUniformInt(shortCommandsLoc, shortCommands);
+            glDispatchCompute((commandCount + GROUP_SIZE - 1) / GROUP_SIZE, 1, 1);
+            source = compacted;
+        }
+        glMemoryBarrier(GL_COMMAND_BARRIER_BIT | GL_VERTEX_ATTRIB_ARRAY_BARRIER_BIT | GL_SHADER_STORAGE_BARRIER_BIT);
+
+        //Instance i of a command reads entry baseInstance + i of the instance buffer
+        draw.use();
+        GLState.bindVertexArray(pool.getVao());
+        GLState.bindBuffer(GL_ARRAY_BUFFER, instances);
+        glVertexAttribIPointer(INSTANCE_LOCATION, 2, GL_UNSIGNED_INT, INSTANCE_BYTES, 0);
+        glEnableVertexAttribArray(INSTANCE_LOCATION);
+        glVertexAttribDivisor(INSTANCE_LOCATION, 1);
+
+        GLState.bindBuffer(GL_DRAW_INDIRECT_BUFFER, source);
+        int longCommands = commandCount - shortCommands;
+        if(drawCount)
+        {
+            GLState.bindBuffer(GL_PARAMETER_BUFFER_ARB, counts);
+            if(shortCommands > 0)
+                glMultiDrawElementsIndirectCountARB(GL_TRIANGLES, GL_UNSIGNED_SHORT, 0, 0, shortCommands, 0);
+            if(longCommands > 0)
+                glMultiDrawElementsIndirectCountARB(GL_TRIANGLES, GL_UNSIGNED_INT, (long)shortCommands * COMMAND_BYTES, Integer.BYTES, longCommands, 0);
+        }
+        else
+        {
+            //Commands nothing was appended to cost the GPU next to nothing
+            if(shortCommands > 0)
+                glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_SHORT, 0, shortCommands, 0);
+            if(longCommands > 0)
+                glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_INT, (long)shortCommands * COMMAND_BYTES, longCommands, 0);
+        }
+    }
+
+    ///Draw calls one frame issues, whatever the scene's size
+    public int getDrawCalls()
+    {
+        return (shortCommands > 0 ? 1 : 0) + (commandCount > shortCommands ? 1 : 0);
+    }
+
+    public int getCommandCount()
+    {
+        return commandCount;
+    }
+
+    public void cleanup()
+    {
+        cull.cleanup();
+        compact.cleanup();
+        draw.cleanup();
+        for(int buffer : new int[]{ objects, shapeTable, meshTable, commands, template, instances, compacted, counts })
+        {
+            glDeleteBuffers(buffer);
+            GLState.bufferDeleted(buffer);
+        }
+        memFree(zeroCounts);
+        memFree(objectData);
+    }
+
+    //Shapes without meshes draw shape 0
+    private int resolve(int shape)
+    {
+        return shape < shapes.size() && !shapes.get(shape).isEmpty() ? shape : 0;
+    }
+
+    private static void upload(int buffer, ByteBuffer data, int bytes)
+    {
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+        nglBufferData(GL_COPY_WRITE_BUFFER, Math.max(bytes, 1), memAddress(data), GL_DYNAMIC_DRAW);
+    }
+
+    private static void allocate(int buffer, long bytes)
+    {
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+        glBufferData(GL_COPY_WRITE_BUFFER, Math.max(bytes, 1), GL_DYNAMIC_DRAW);
+    }
+}
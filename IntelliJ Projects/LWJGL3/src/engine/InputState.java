@@ -0,0 +1,25 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+///Keyboard state filled in from the GLFW key callback on the main thread,
+///safe to read from any other thread.
+public class InputState
+{
+    private final AtomicIntegerArray keys = new AtomicIntegerArray(GLFW_KEY_LAST + 1);
+
+    public void onKey(int key, int action)
+    {
+        if(key < 0 || key > GLFW_KEY_LAST)
+            return;
+
+        keys.set(key, action == GLFW_RELEASE ? 0 : 1);
+    }
+
+    public boolean isDown(int key)
+    {
+        return keys.get(key) != 0;
+    }
+}
@@ -0,0 +1,60 @@
+package engine;
+
+import java.util.Arrays;
+
+///Growable list of primitive ints, clear() keeps the storage so a list
+///that is refilled every frame stops allocating once it has warmed up.
+public class IntList
+{
+    private int[] data;
+    private int size;
+
+    public IntList()
+    {
+        this(16);
+    }
+
+    public IntList(int capacity)
+    {
+        data = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    public void add(int value)
+    {
+        if(size == data.length)
+            data = Arrays.copyOf(data, data.length * 2);
+        data[size++] = value;
+    }
+
+    public int removeLast()
+    {
+        return data[--size];
+    }
+
+    public int get(int i)
+    {
+        return data[i];
+    }
+
+    public void set(int i, int value)
+    {
+        data[i] = value;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    ///Backing array, only the first size() entries are meaningful
+    public int[] array()
+    {
+        return data;
+    }
+}
@@ -0,0 +1,83 @@
+package engine;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.system.MemoryUtil.*;
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.*;
+
+///Builds levels of detail for a mesh with meshoptimizer's simplifier. Every
+///level keeps the vertices of the full mesh and only has fewer triangles,
+///so a MeshPool can store a level as nothing but another index range. Touches
+///no GL state, safe to run on any thread.
+public final class LodBuilder
+{
+    ///Indices of a level and the error the simplifier reported for it, in
+    ///object space units. Level 0 is the mesh itself with an error of 0.
+    public record Level(int[] indices, float error) {}
+
+    private LodBuilder() {}
+
+    ///One level per target error plus level 0. Targets are fractions of the
+    ///mesh size, 0.01 allows the surface to move by 1% of it, and have to
+    ///be ascending. A level the simplifier can't get below the one before it
+    ///shares that level's indices.
+    public static Level[] build(MeshData data, float[] targetErrors)
+    {
+        Level[] levels = new Level[targetErrors.length + 1];
+        levels[0] = new Level(data.indices, 0.0f);
+        if(targetErrors.length == 0 || data.getIndexCount() == 0)
+        {
+            for(int i = 1; i < levels.length; i++)
+                levels[i] = levels[0];
+            return levels;
+        }
+
+        int vertexCount = data.getVertexCount();
+        int indexCount = data.getIndexCount();
+        IntBuffer source = memAllocInt(indexCount);
+        IntBuffer dest = memAllocInt(indexCount);
+        IntBuffer ordered = memAllocInt(indexCount);
+        FloatBuffer positions = memAllocFloat(data.positions.length);
+        FloatBuffer resultError = memAllocFloat(1);
+        try
+        {
+            source.put(data.indices).flip();
+            positions.put(data.positions).flip();
+            float scale = meshopt_simplifyScale(positions, vertexCount, 3 * Float.BYTES);
+
+            for(int i = 0; i < targetErrors.length; i++)
+            {
+                //Always from the full mesh, simplifying a simplification adds the errors up.
+                //A target of one triangle lets the error alone decide where to stop.
+                int count = (int)meshopt_simplify(dest, source, positions, vertexCount, 3 * Float.BYTES,
+                        3, targetErrors[i], 0, resultError);
+
+                Level previous = levels[i];
+                if(count == 0 || count >= previous.indices().length)
+                {
+                    levels[i + 1] = previous;
+                    continue;
+                }
+
+                //Simplifying wrecks the vertex cache order, put it back
+                dest.limit(count);
+                meshopt_optimizeVertexCache(ordered, dest, vertexCount);
+                int[] indices = new int[count];
+                ordered.get(0, indices);
+                dest.clear();
+
+                levels[i + 1] = new Level(indices, resultError.get(0) * scale);
+            }
+        }
+        finally
+        {
+            memFree(source);
+            memFree(dest);
+            memFree(ordered);
+            memFree(positions);
+            memFree(resultError);
+        }
+        return levels;
+    }
+}
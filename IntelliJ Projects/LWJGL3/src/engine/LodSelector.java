@@ -0,0 +1,89 @@
+package engine;
+
+import java.lang.Math;
+import java.util.Arrays;
+
+///Picks a level of detail per object from how large the error of each
+///level would look on screen. The coarsest level whose error projects to
+///at most pixelError pixels wins. Objects remember their level, a finer
+///one is taken as soon as the current one is too coarse but a coarser one
+///only once it is comfortably within budget, so an object sitting right at
+///a threshold doesn't flicker between two levels.
+///
+///Plain arrays and no GL, select() allocates nothing and may run on the
+///culling workers as long as every object is handled by one thread a frame.
+public class LodSelector
+{
+    ///Fraction of pixelError the next coarser level has to stay under
+    public static final float DEFAULT_HYSTERESIS = 0.25f;
+
+    private final float pixelError;
+    private final float hysteresis;
+
+    //Error of each level per shape in object space units, ascending
+    private float[][] errors = new float[0][];
+    //Current level per object id
+    private byte[] levels = new byte[0];
+
+    //Pixels a unit covers at a distance of one
+    private float projection = 1.0f;
+
+    public LodSelector(float pixelError, float hysteresis)
+    {
+        if(pixelError <= 0.0f)
+            throw new IllegalArgumentException("Pixel error must be positive, given: " + pixelError);
+        if(hysteresis < 0.0f || hysteresis >= 1.0f)
+            throw new IllegalArgumentException("Hysteresis must be in [0, 1), given: " + hysteresis);
+
+        this.pixelError = pixelError;
+        this.hysteresis = hysteresis;
+    }
+
+    ///Level errors of a shape, level 0 first. Shapes never set have one level.
+    public void setLevels(int shape, float[] levelErrors)
+    {
+        if(levelErrors.length > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("At most " + Byte.MAX_VALUE + " levels, given: " + levelErrors.length);
+        if(shape >= errors.length)
+            errors = Arrays.copyOf(errors, shape + 1);
+        errors[shape] = levelErrors.clone();
+    }
+
+    public int getLevelCount(int shape)
+    {
+        return shape < errors.length && errors[shape] != null ? errors[shape].length : 1;
+    }
+
+    ///fov is the vertical field of view in degrees, height the viewport's in pixels
+    public void setView(float fov, int height)
+    {
+        projection = height / (2.0f * (float)Math.tan(Math.toRadians(fov) * 0.5));
+    }
+
+    ///Makes room for ids below idLimit, call before the visibility pass.
+    ///Only allocates when the scene has grown.
+    public void ensureCapacity(int idLimit)
+    {
+        if(idLimit > levels.length)
+            levels = Arrays.copyOf(levels, Math.max(idLimit, levels.length * 2));
+    }
+
+    ///Level for object id of the given shape at distance from the eye
+    public int select(int id, int shape, float distance)
+    {
+        if(shape >= errors.length || errors[shape] == null)
+            return 0;
+
+        float[] e = errors[shape];
+        float scale = projection / Math.max(distance, 1e-4f);
+        int level = Math.min(levels[id], e.length - 1);
+
+        while(level > 0 && e[level] * scale > pixelError)
+            level--;
+        while(level < e.length - 1 && e[level + 1] * scale <= pixelError * (1.0f - hysteresis))
+            level++;
+
+        levels[id] = (byte)level;
+        return level;
+    }
+}
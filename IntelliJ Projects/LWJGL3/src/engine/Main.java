@@ -0,0 +1,31 @@
+package engine;
+
+public class Main
+{
+
+    public static void main(String[] args)
+    {
+        //--cubes <n> sets the cube count, --per-object switches off instancing,
+        //--workers <n> sets how many threads prepare each frame,
+        //--gpu-driven culls on the GPU and draws with multi-draw indirect where GL 4.3 allows, materials need texture arrays,
+        //--threaded-update [--update-rate <hz>] moves input and camera updates to their own thread,
+        //--profile [--trace-file <path>] records CPU and GPU zones, F11 writes them out,
+        //--materials <n> [--no-texture-arrays] gives the cubes n generated textures,
+        //--shader-cache <dir> or --no-shader-cache picks where linked programs are kept,
+        //--model <path> imports a model for the objects to cycle through, repeatable, generated scenes use only the models,
+        //--float-vertices stores the meshes as plain floats instead of quantized,
+        //--lod-errors <a,b,...> [--lod-pixels <px>] sets the model levels of detail, --no-lod turns them off,
+        //--gl <major.minor> caps the GL version asked for, 3.3 tries the fallback paths,
+        //--headless [--frames <n>] renders offscreen without vsync,
+        //--capture-dir <dir> and --golden-dir <dir> [--golden-tolerance <n>] [--capture-every <n>]
+        //dump frames and compare them against golden images, mismatches fail the run,
+        //--scene <grid|city|hierarchy> [--seed <n>] [--depth <n>] fills the scene procedurally with --cubes objects,
+        //--camera-path <file> [--path-rate <fps>] replays a camera path, --record-path <file> records one,
+        //--report <file> is where runs with either append their frame time summary, see Bench for sweeps
+        Engine engine = new Engine(EngineConfig.fromArgs(args));
+        engine.run();
+        engine.cleanup();
+        if(engine.getFailedFrames() > 0)
+            System.exit(1);
+    }
+}
\ No newline at end of file
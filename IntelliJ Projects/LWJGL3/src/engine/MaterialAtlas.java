@@ -0,0 +1,177 @@
+package engine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Puts a whole set of material textures behind two bindings so draws with
+///different materials no longer need a rebind in between. Images exactly
+///the size of a layer get a layer of a texture array to themselves,
+///smaller ones are packed into shared atlas layers. A draw picks its
+///material with an integer index, the material table maps that index to
+///the layer and the rectangle the image occupies:
+///
+///  texel 2i:     uv scale x, uv scale y, uv offset x, uv offset y
+///  texel 2i + 1: layer, 0, 0, 0
+///
+///The table is a buffer texture so shaders read it with texelFetch.
+public class MaterialAtlas
+{
+    //Texels of edge colour around each atlas entry, keeps filtering and the
+    //first few mip levels from bleeding in the neighbours
+    private static final int PADDING = 4;
+
+    private final TextureArray array;
+    private final int tableBuffer, tableTexture;
+    private final int materials;
+    private final int atlasLayers;
+
+    private final TextureBinding tableBinding;
+
+    ///Uploads every image, material i is images.get(i). The images are left
+    ///for the caller to free.
+    public MaterialAtlas(List<TextureDecoder.Image> images, int layerSize, TextureSampler sampler)
+    {
+        materials = images.size();
+        float[] table = new float[materials * 8];
+
+        //Oversized images are halved until they fit a layer
+        ArrayList<TextureDecoder.Image> owned = new ArrayList<TextureDecoder.Image>();
+        TextureDecoder.Image[] fitted = new TextureDecoder.Image[materials];
+        for(int i = 0; i < materials; i++)
+        {
+            TextureDecoder.Image image = images.get(i);
+            while(image.width > layerSize || image.height > layerSize)
+            {
+                int w = Math.max(1, image.width / 2), h = Math.max(1, image.height / 2);
+                image = new TextureDecoder.Image(image.file, w, h, image.channels,
+                        TextureBaker.downsample(image.getPixels(), image.width, image.height, w, h, image.channels), false);
+                owned.add(image);
+            }
+            fitted[i] = image;
+        }
+
+        //Full layers come first, then the atlas layers. Atlas entries go in
+        //tallest first which is what the shelf packer likes.
+        int[] layerOf = new int[materials];
+        int[] xOf = new int[materials], yOf = new int[materials];
+        int layers = 0;
+        ArrayList<Integer> small = new ArrayList<Integer>();
+        for(int i = 0; i < materials; i++)
+        {
+            if(fitted[i].width == layerSize && fitted[i].height == layerSize)
+                layerOf[i] = layers++;
+            else
+                small.add(i);
+        }
+        small.sort((a, b) -> Integer.compare(fitted[b].height, fitted[a].height));
+
+        int firstAtlas = layers;
+        RectPacker packer = new RectPacker(layerSize, layerSize);
+        int[] corner = new int[2];
+        for(int i : small)
+        {
+            int w = Math.min(fitted[i].width + 2 * PADDING, layerSize);
+            int h = Math.min(fitted[i].height + 2 * PADDING, layerSize);
+            if(layers == firstAtlas || !packer.pack(w, h, corner))
+            {
+                packer.clear();
+                layers++;
+                packer.pack(w, h, corner);
+            }
+            layerOf[i] = layers - 1;
+            xOf[i] = corner[0];
+            yOf[i] = corner[1];
+        }
+        atlasLayers = layers - firstAtlas;
+
+        array = new TextureArray(layerSize, layerSize, Math.max(layers, 1), sampler);
+        for(int i = 0; i < materials; i++)
+        {
+            TextureDecoder.Image image = fitted[i];
+            int x = xOf[i], y = yOf[i];
+            if(layerOf[i] < firstAtlas)
+                array.upload(layerOf[i], 0, 0, image);
+            else
+            {
+                int pad = Math.min(PADDING, Math.min(layerSize - image.width, layerSize - image.height) / 2);
+                TextureDecoder.Image padded = pad(image, pad);
+                array.upload(layerOf[i], x, y, padded);
+                padded.free();
+                x += pad;
+                y += pad;
+            }
+
+            int t = i * 8;
+            table[t]     = (float)image.width / layerSize;
+            table[t + 1] = (float)image.height / layerSize;
+            table[t + 2] = (float)x / layerSize;
+            table[t + 3] = (float)y / layerSize;
+            table[t + 4] = layerOf[i];
+        }
+        if(sampler.usesMipmaps())
+            array.generateMipmaps();
+
+        for(TextureDecoder.Image image : owned)
+            image.free();
+
+        tableBuffer = glGenBuffers();
+        GLState.bindBuffer(GL_TEXTURE_BUFFER, tableBuffer);
+        glBufferData(GL_TEXTURE_BUFFER, table, GL_STATIC_DRAW);
+
+        tableTexture = glGenTextures();
+        GLState.bindTexture(GL_TEXTURE_BUFFER, tableTexture);
+        glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, tableBuffer);
+
+        tableBinding = unit -> GLState.bindTexture(unit, GL_TEXTURE_BUFFER, tableTexture);
+    }
+
+    //Copy of image with pad texels of its edge repeated on every side
+    private static TextureDecoder.Image pad(TextureDecoder.Image image, int pad)
+    {
+        int w = image.width + 2 * pad, h = image.height + 2 * pad, c = image.channels;
+        TextureDecoder.Image padded = TextureDecoder.Image.allocate(image.file, w, h, c);
+        ByteBuffer src = image.getPixels(), dst = padded.getPixels();
+        for(int y = 0; y < h; y++)
+        {
+            int sy = Math.min(Math.max(y - pad, 0), image.height - 1);
+            for(int x = 0; x < w; x++)
+            {
+                int sx = Math.min(Math.max(x - pad, 0), image.width - 1);
+                for(int k = 0; k < c; k++)
+                    dst.put((y * w + x) * c + k, src.get((sy * image.width + sx) * c + k));
+            }
+        }
+        return padded;
+    }
+
+    ///The layers, sampled as a sampler2DArray
+    public TextureBinding getArray()
+    {
+        return array;
+    }
+
+    ///The material table, sampled as a samplerBuffer
+    public TextureBinding getTable()
+    {
+        return tableBinding;
+    }
+
+    public int getMaterialCount()   { return materials; }
+    public int getLayerCount()      { return array.layers; }
+    public int getAtlasLayerCount() { return atlasLayers; }
+
+    public void cleanup()
+    {
+        array.delete();
+        glDeleteTextures(tableTexture);
+        GLState.textureDeleted(tableTexture);
+        glDeleteBuffers(tableBuffer);
+        GLState.bufferDeleted(tableBuffer);
+    }
+}
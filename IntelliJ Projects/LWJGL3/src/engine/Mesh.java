@@ -0,0 +1,125 @@
+package engine;
+
+import org.joml.*;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL32.*;
+
+///A range of vertices and indices inside a MeshPool. Indices are relative to
+///the mesh's first vertex and drawn with a base vertex, so a mesh with up to
+///65536 vertices gets 16 bit indices no matter where in the pool it sits.
+///Drawing assumes the pool's VAO is bound.
+public class Mesh
+{
+    public final String name;
+    private final MeshPool pool;
+    private final VertexLayout layout;
+
+    private final int baseVertex, vertexCount;
+    private final long indexOffset;     //Bytes into the pool's index buffer
+    private final int indexCount, indexType;
+
+    //Positions in the shader are pos * positionScale + positionOffset,
+    //texture coordinates tex * texCoordScale + texCoordOffset
+    private final Vector3f positionScale = new Vector3f(), positionOffset = new Vector3f();
+    private final Vector2f texCoordScale = new Vector2f(), texCoordOffset = new Vector2f();
+    private final float radius;
+
+    Mesh(MeshPool pool, MeshData data, int baseVertex, long indexOffset, int indexType,
+         Vector3fc scale, Vector3fc offset, Vector2fc texScale, Vector2fc texOffset)
+    {
+        this.name = data.name;
+        this.pool = pool;
+        this.layout = pool.getLayout();
+        this.baseVertex = baseVertex;
+        this.vertexCount = data.getVertexCount();
+        this.indexOffset = indexOffset;
+        this.indexCount = data.getIndexCount();
+        this.indexType = indexType;
+        positionScale.set(scale);
+        positionOffset.set(offset);
+        texCoordScale.set(texScale);
+        texCoordOffset.set(texOffset);
+        radius = data.getRadius();
+    }
+
+    //Another level of detail of base, same vertices with other indices
+    Mesh(Mesh base, long indexOffset, int indexCount, int indexType)
+    {
+        this.name = base.name;
+        this.pool = base.pool;
+        this.layout = base.layout;
+        this.baseVertex = base.baseVertex;
+        this.vertexCount = base.vertexCount;
+        this.indexOffset = indexOffset;
+        this.indexCount = indexCount;
+        this.indexType = indexType;
+        positionScale.set(base.positionScale);
+        positionOffset.set(base.positionOffset);
+        texCoordScale.set(base.texCoordScale);
+        texCoordOffset.set(base.texCoordOffset);
+        radius = base.radius;
+    }
+
+    public void draw()
+    {
+        glDrawElementsBaseVertex(GL_TRIANGLES, indexCount, indexType, indexOffset, baseVertex);
+    }
+
+    public void drawInstanced(int instances)
+    {
+        glDrawElementsInstancedBaseVertex(GL_TRIANGLES, indexCount, indexType, indexOffset, instances, baseVertex);
+    }
+
+    public MeshPool getPool()              { return pool; }
+    public int getVao()                    { return pool.getVao(); }
+    public int getBaseVertex()             { return baseVertex; }
+    public int getVertexCount()            { return vertexCount; }
+    public long getIndexOffset()           { return indexOffset; }
+    public int getIndexCount()             { return indexCount; }
+    public int getIndexType()              { return indexType; }
+    public int getTriangleCount()          { return indexCount / 3; }
+    public Vector3fc getPositionScale()    { return positionScale; }
+    public Vector3fc getPositionOffset()   { return positionOffset; }
+    public Vector2fc getTexCoordScale()    { return texCoordScale; }
+    public Vector2fc getTexCoordOffset()   { return texCoordOffset; }
+
+    ///Radius of the sphere around the origin that holds every vertex
+    public float getRadius()
+    {
+        return radius;
+    }
+
+    public int getIndexSize()
+    {
+        return indexType == GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES;
+    }
+
+    ///Bytes of vertex data, also what a draw fetches at least once
+    public long getVertexBytes()
+    {
+        return (long)vertexCount * layout.getStride();
+    }
+
+    public long getIndexBytes()
+    {
+        return (long)indexCount * getIndexSize();
+    }
+
+    ///What the same streams would take as plain floats with 32 bit indices
+    public long getUncompressedBytes()
+    {
+        VertexLayout full = layout.asFloats();
+        return (long)vertexCount * full.getStride() + (long)indexCount * Integer.BYTES;
+    }
+
+    ///One line summary of the memory the mesh takes against plain floats
+    public String describeMemory()
+    {
+        long bytes = getVertexBytes() + getIndexBytes();
+        long full = getUncompressedBytes();
+        return String.format("%s: %d vertices x %d bytes, %d x %d bit indices, %d bytes against %d as floats (%.0f%% smaller)",
+                name, vertexCount, layout.getStride(), indexCount, getIndexSize() * 8, bytes, full,
+                100.0 * (full - bytes) / full);
+    }
+}
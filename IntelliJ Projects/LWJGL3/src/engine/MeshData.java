@@ -0,0 +1,125 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+
+///Geometry of a mesh on the CPU side, one array per vertex stream plus the
+///triangle list. Only positions are required, texCoords and normals may be
+///null. Nothing here touches GL, a MeshPool encodes and uploads it.
+public class MeshData
+{
+    public final String name;
+    public final float[] positions;    //x, y, z
+    public final float[] texCoords;    //u, v, or null
+    public final float[] normals;      //x, y, z, or null
+    public final int[] indices;        //Three per triangle
+
+    public MeshData(String name, float[] positions, float[] texCoords, float[] normals, int[] indices)
+    {
+        int vertices = positions.length / 3;
+        if(positions.length % 3 != 0)
+            throw new IllegalArgumentException(name + ": positions need 3 floats per vertex");
+        if(texCoords != null && texCoords.length != vertices * 2)
+            throw new IllegalArgumentException(name + ": expected " + vertices * 2 + " texture coordinates, got " + texCoords.length);
+        if(normals != null && normals.length != vertices * 3)
+            throw new IllegalArgumentException(name + ": expected " + vertices * 3 + " normal components, got " + normals.length);
+        if(indices.length % 3 != 0)
+            throw new IllegalArgumentException(name + ": indices need to form whole triangles");
+
+        this.name = name;
+        this.positions = positions;
+        this.texCoords = texCoords;
+        this.normals = normals;
+        this.indices = indices;
+    }
+
+    ///Splits interleaved position and texture coordinate data, stride is
+    ///in floats with the position first and the coordinates right after
+    public static MeshData fromInterleaved(String name, float[] vertices, int stride, int[] indices)
+    {
+        int count = vertices.length / stride;
+        float[] positions = new float[count * 3];
+        float[] texCoords = new float[count * 2];
+        for(int i = 0; i < count; i++)
+        {
+            System.arraycopy(vertices, i * stride, positions, i * 3, 3);
+            System.arraycopy(vertices, i * stride + 3, texCoords, i * 2, 2);
+        }
+        return new MeshData(name, positions, texCoords, null, indices);
+    }
+
+    public int getVertexCount()
+    {
+        return positions.length / 3;
+    }
+
+    public int getIndexCount()
+    {
+        return indices.length;
+    }
+
+    public int getTriangleCount()
+    {
+        return indices.length / 3;
+    }
+
+    ///Copy with smooth normals, each vertex gets the area weighted average of
+    ///the faces using it. clockwise says which winding faces the viewer.
+    public MeshData withGeneratedNormals(boolean clockwise)
+    {
+        float[] n = new float[positions.length];
+        Vector3f a = new Vector3f(), b = new Vector3f(), c = new Vector3f();
+        for(int t = 0; t < indices.length; t += 3)
+        {
+            int i0 = indices[t] * 3, i1 = indices[t + 1] * 3, i2 = indices[t + 2] * 3;
+            a.set(positions[i0], positions[i0 + 1], positions[i0 + 2]);
+            b.set(positions[i1], positions[i1 + 1], positions[i1 + 2]).sub(a);
+            c.set(positions[i2], positions[i2 + 1], positions[i2 + 2]).sub(a);
+            b.cross(c);
+            if(clockwise)
+                b.negate();
+
+            for(int k = 0; k < 3; k++)
+            {
+                int i = indices[t + k] * 3;
+                n[i]     += b.x;
+                n[i + 1] += b.y;
+                n[i + 2] += b.z;
+            }
+        }
+
+        for(int i = 0; i < n.length; i += 3)
+        {
+            float length = (float)Math.sqrt(n[i] * n[i] + n[i + 1] * n[i + 1] + n[i + 2] * n[i + 2]);
+            if(length > 0.0f)
+            {
+                n[i] /= length;
+                n[i + 1] /= length;
+                n[i + 2] /= length;
+            }
+        }
+        return new MeshData(name, positions, texCoords, n, indices);
+    }
+
+    ///Axis aligned bounds of the positions
+    public void getBounds(Vector3f min, Vector3f max)
+    {
+        min.set(Float.POSITIVE_INFINITY);
+        max.set(Float.NEGATIVE_INFINITY);
+        for(int i = 0; i < positions.length; i += 3)
+        {
+            min.set(Math.min(min.x, positions[i]), Math.min(min.y, positions[i + 1]), Math.min(min.z, positions[i + 2]));
+            max.set(Math.max(max.x, positions[i]), Math.max(max.y, positions[i + 1]), Math.max(max.z, positions[i + 2]));
+        }
+    }
+
+    ///Radius of the sphere around the origin that holds every vertex
+    public float getRadius()
+    {
+        float r2 = 0.0f;
+        for(int i = 0; i < positions.length; i += 3)
+            r2 = Math.max(r2, positions[i] * positions[i] + positions[i + 1] * positions[i + 1] + positions[i + 2] * positions[i + 2]);
+        return (float)Math.sqrt(r2);
+    }
+}
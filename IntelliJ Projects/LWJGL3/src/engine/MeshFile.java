@@ -0,0 +1,203 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+///Imported and optimized meshes of a model file, see ModelImporter. Loading
+///one is a memory map and a bulk copy per stream, Assimp is never involved.
+///The header remembers the size and modification time of the source so an
+///edited source is imported again, bumping VERSION retires every old file.
+///
+///Layout, little endian:
+///  int magic "BMS1", int version, long source size, long source modified
+///  int mesh count, int reserved
+///  per mesh: int flags (1 texture coordinates, 2 normals), int vertex count,
+///            int index count, int offset from the start of the file,
+///            float ACMR as imported, float ACMR optimized
+///  payloads, each starting on a 16 byte boundary: positions, texture
+///  coordinates and normals as floats, then the indices as ints
+public final class MeshFile
+{
+    public static final String EXTENSION = ".bmsh";
+
+    private static final int MAGIC = 0x31534D42;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 6 * Integer.BYTES;
+    private static final int ALIGNMENT = 16;
+
+    private static final int HAS_TEXCOORDS = 1;
+    private static final int HAS_NORMALS = 2;
+
+    private final ByteBuffer data;
+    private final long sourceSize, sourceModified;
+    private final int meshes;
+
+    private MeshFile(ByteBuffer data)
+    {
+        this.data = data;
+        sourceSize = data.getLong(8);
+        sourceModified = data.getLong(16);
+        meshes = data.getInt(24);
+    }
+
+    ///Where the cached version of source lives, next to it with the extension swapped
+    public static Path cachePath(Path source)
+    {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return source.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + EXTENSION);
+    }
+
+    ///Maps file read only and checks the mesh table against its size
+    public static MeshFile map(Path file) throws IOException
+    {
+        ByteBuffer data;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if(data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC)
+            throw new IOException("Not a mesh file: " + file);
+        if(data.getInt(4) != VERSION)
+            throw new IOException("Unsupported mesh file version " + data.getInt(4) + " in " + file);
+
+        MeshFile mesh = new MeshFile(data);
+        if(mesh.meshes < 0 || HEADER_BYTES + (long)mesh.meshes * ENTRY_BYTES > data.capacity())
+            throw new IOException("Corrupt mesh table in " + file);
+        for(int i = 0; i < mesh.meshes; i++)
+        {
+            if(mesh.getOffset(i) < 0 || mesh.getOffset(i) + mesh.getPayloadBytes(i) > data.capacity())
+                throw new IOException("Mesh " + i + " out of bounds in " + file);
+        }
+        return mesh;
+    }
+
+    ///Writes the meshes of a source file, written aside and moved in place
+    ///so a reader never maps half a file
+    public static void write(Path file, long sourceSize, long sourceModified, MeshData[] meshes, float[] acmrBefore, float[] acmrAfter) throws IOException
+    {
+        long size = align(HEADER_BYTES + (long)meshes.length * ENTRY_BYTES);
+        long[] offsets = new long[meshes.length];
+        for(int i = 0; i < meshes.length; i++)
+        {
+            offsets[i] = size;
+            size = align(size + payloadBytes(meshes[i].getVertexCount(), meshes[i].getIndexCount(), flagsOf(meshes[i])));
+        }
+        if(size > Integer.MAX_VALUE)
+            throw new IOException("Model too large for a mesh file: " + file);
+
+        ByteBuffer out = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceModified).putInt(meshes.length).putInt(0);
+        for(int i = 0; i < meshes.length; i++)
+        {
+            MeshData mesh = meshes[i];
+            out.putInt(flagsOf(mesh)).putInt(mesh.getVertexCount()).putInt(mesh.getIndexCount()).putInt((int)offsets[i])
+               .putFloat(acmrBefore[i]).putFloat(acmrAfter[i]);
+        }
+
+        for(int i = 0; i < meshes.length; i++)
+        {
+            MeshData mesh = meshes[i];
+            out.position((int)offsets[i]);
+            out.asFloatBuffer().put(mesh.positions);
+            out.position(out.position() + mesh.positions.length * Float.BYTES);
+            if(mesh.texCoords != null)
+            {
+                out.asFloatBuffer().put(mesh.texCoords);
+                out.position(out.position() + mesh.texCoords.length * Float.BYTES);
+            }
+            if(mesh.normals != null)
+            {
+                out.asFloatBuffer().put(mesh.normals);
+                out.position(out.position() + mesh.normals.length * Float.BYTES);
+            }
+            out.asIntBuffer().put(mesh.indices);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, out.array());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int flagsOf(MeshData mesh)
+    {
+        return (mesh.texCoords != null ? HAS_TEXCOORDS : 0) | (mesh.normals != null ? HAS_NORMALS : 0);
+    }
+
+    private static long payloadBytes(int vertices, int indices, int flags)
+    {
+        int floats = 3 + ((flags & HAS_TEXCOORDS) != 0 ? 2 : 0) + ((flags & HAS_NORMALS) != 0 ? 3 : 0);
+        return ((long)vertices * floats + indices) * 4;
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private int entry(int mesh)
+    {
+        return HEADER_BYTES + mesh * ENTRY_BYTES;
+    }
+
+    private int getFlags(int mesh)   { return data.getInt(entry(mesh)); }
+    private long getOffset(int mesh) { return data.getInt(entry(mesh) + 12) & 0xFFFFFFFFL; }
+
+    private long getPayloadBytes(int mesh)
+    {
+        return payloadBytes(getVertexCount(mesh), getIndexCount(mesh), getFlags(mesh));
+    }
+
+    ///True when the file was written for a source of this size and modification time
+    public boolean isCurrent(long size, long modified)
+    {
+        return sourceSize == size && sourceModified == modified;
+    }
+
+    public int getMeshCount()
+    {
+        return meshes;
+    }
+
+    public int getVertexCount(int mesh)  { return data.getInt(entry(mesh) + 4); }
+    public int getIndexCount(int mesh)   { return data.getInt(entry(mesh) + 8); }
+    public float getAcmrBefore(int mesh) { return data.getFloat(entry(mesh) + 16); }
+    public float getAcmrAfter(int mesh)  { return data.getFloat(entry(mesh) + 20); }
+
+    ///Copies a mesh out of the mapping
+    public MeshData getMesh(int mesh, String name)
+    {
+        int flags = getFlags(mesh);
+        int vertices = getVertexCount(mesh);
+        ByteBuffer payload = data.slice((int)getOffset(mesh), (int)getPayloadBytes(mesh)).order(ByteOrder.LITTLE_ENDIAN);
+
+        float[] positions = new float[vertices * 3];
+        float[] texCoords = (flags & HAS_TEXCOORDS) != 0 ? new float[vertices * 2] : null;
+        float[] normals = (flags & HAS_NORMALS) != 0 ? new float[vertices * 3] : null;
+        int[] indices = new int[getIndexCount(mesh)];
+
+        payload.asFloatBuffer().get(positions);
+        int position = positions.length * Float.BYTES;
+        if(texCoords != null)
+        {
+            payload.position(position).slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(texCoords);
+            position += texCoords.length * Float.BYTES;
+        }
+        if(normals != null)
+        {
+            payload.position(position).slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(normals);
+            position += normals.length * Float.BYTES;
+        }
+        payload.position(position).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(indices);
+
+        return new MeshData(name, positions, texCoords, normals, indices);
+    }
+}
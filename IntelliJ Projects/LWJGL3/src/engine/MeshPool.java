@@ -0,0 +1,239 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///One vertex buffer, one index buffer and one VAO shared by every mesh
+///added to it. Meshes are packed one after the other and drawn with a base
+///vertex, so going from one mesh to the next needs no rebinding at all.
+///All meshes share the pool's VertexLayout. The buffers double when they
+///run out of space, existing meshes stay where they are. GL thread only.
+public class MeshPool
+{
+    private final VertexLayout layout;
+    private final int vao;
+    private int vbo, ebo;
+
+    //Bytes allocated and handed out so far
+    private long vertexCapacity, indexCapacity;
+    private long vertexUsed, indexUsed;
+
+    private final ArrayList<Mesh> meshes = new ArrayList<Mesh>();
+
+    ///How full the pool was at some point, see truncate()
+    public record Mark(long vertexBytes, long indexBytes, int meshCount) {}
+
+    ///Capacities are the starting sizes in bytes
+    public MeshPool(VertexLayout layout, long vertexBytes, long indexBytes)
+    {
+        this.layout = layout;
+        vertexCapacity = Math.max(vertexBytes, layout.getStride());
+        indexCapacity = Math.max(indexBytes, Integer.BYTES);
+
+        vao = glGenVertexArrays();
+        vbo = createBuffer(vertexCapacity);
+        ebo = createBuffer(indexCapacity);
+        attach();
+    }
+
+    //Created through the copy target so nothing the VAOs hold gets disturbed
+    private static int createBuffer(long size)
+    {
+        int buffer = glGenBuffers();
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, buffer);
+        glBufferData(GL_COPY_WRITE_BUFFER, size, GL_STATIC_DRAW);
+        return buffer;
+    }
+
+    //Points the VAO at the current buffers, the element buffer binding is
+    //part of the VAO so it is bound with the VAO bound
+    private void attach()
+    {
+        GLState.bindVertexArray(vao);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
+        layout.apply(0);
+        GLState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+    }
+
+    ///Encodes data in the pool's layout and uploads it. Data has to carry
+    ///every stream the layout stores.
+    public Mesh add(MeshData data)
+    {
+        int stride = layout.getStride();
+        int vertexCount = data.getVertexCount();
+        long vertexBytes = (long)vertexCount * stride;
+
+        //Indices are relative to the mesh so the mesh's own size decides
+        boolean shortIndices = vertexCount <= 0x10000;
+        long indexBytes = (long)data.getIndexCount() * (shortIndices ? Short.BYTES : Integer.BYTES);
+
+        if(vertexUsed + vertexBytes > vertexCapacity || indexUsed + indexBytes + Integer.BYTES > indexCapacity)
+            grow(vertexUsed + vertexBytes, indexUsed + indexBytes + Integer.BYTES);
+
+        Vector3f scale = new Vector3f(), offset = new Vector3f();
+        layout.getDequantization(data, scale, offset);
+        Vector2f texScale = new Vector2f(), texOffset = new Vector2f();
+        layout.getTexCoordDequantization(data, texScale, texOffset);
+
+        ByteBuffer staging = memAlloc((int)vertexBytes);
+        try
+        {
+            layout.encode(data, scale, offset, texScale, texOffset, staging);
+            GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
+            nglBufferSubData(GL_ARRAY_BUFFER, vertexUsed, vertexBytes, memAddress(staging));
+        }
+        finally
+        {
+            memFree(staging);
+        }
+
+        long indexStart = uploadIndices(data.indices, shortIndices);
+        Mesh mesh = new Mesh(this, data, (int)(vertexUsed / stride), indexStart,
+                shortIndices ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT, scale, offset, texScale, texOffset);
+        meshes.add(mesh);
+        vertexUsed += vertexBytes;
+        return mesh;
+    }
+
+    ///Adds a level of detail of base, see LodBuilder. Only the indices are
+    ///stored, the level draws base's vertices.
+    public Mesh addLod(Mesh base, int[] indices)
+    {
+        if(base.getPool() != this)
+            throw new IllegalArgumentException(base.name + " belongs to another pool");
+
+        boolean shortIndices = base.getIndexType() == GL_UNSIGNED_SHORT;
+        long indexBytes = (long)indices.length * (shortIndices ? Short.BYTES : Integer.BYTES);
+        if(indexUsed + indexBytes + Integer.BYTES > indexCapacity)
+            grow(vertexUsed, indexUsed + indexBytes + Integer.BYTES);
+
+        long indexStart = uploadIndices(indices, shortIndices);
+        Mesh mesh = new Mesh(base, indexStart, indices.length, base.getIndexType());
+        meshes.add(mesh);
+        return mesh;
+    }
+
+    //Appends indices to the index buffer and returns their byte offset,
+    //needs room for the indices plus alignment
+    private long uploadIndices(int[] indices, boolean shortIndices)
+    {
+        int indexSize = shortIndices ? Short.BYTES : Integer.BYTES;
+        long indexStart = (indexUsed + indexSize - 1) / indexSize * indexSize;
+        long indexBytes = (long)indices.length * indexSize;
+
+        ByteBuffer staging = memAlloc((int)indexBytes);
+        try
+        {
+            for(int i : indices)
+            {
+                if(shortIndices) staging.putShort((short)i);
+                else             staging.putInt(i);
+            }
+
+            //Not through GL_ELEMENT_ARRAY_BUFFER, that would need the VAO bound
+            GLState.bindBuffer(GL_COPY_WRITE_BUFFER, ebo);
+            nglBufferSubData(GL_COPY_WRITE_BUFFER, indexStart, indexBytes, memAddress(staging));
+        }
+        finally
+        {
+            memFree(staging);
+        }
+
+        indexUsed = indexStart + indexBytes;
+        return indexStart;
+    }
+
+    //Moves the contents into buffers with room for at least the given
+    //sizes, offsets of existing meshes don't change
+    private void grow(long vertexBytes, long indexBytes)
+    {
+        if(vertexBytes > vertexCapacity)
+        {
+            vertexCapacity = Math.max(vertexCapacity * 2, vertexBytes);
+            vbo = copyInto(vbo, vertexUsed, vertexCapacity);
+        }
+        if(indexBytes > indexCapacity)
+        {
+            indexCapacity = Math.max(indexCapacity * 2, indexBytes);
+            ebo = copyInto(ebo, indexUsed, indexCapacity);
+        }
+        attach();
+    }
+
+    private static int copyInto(int old, long used, long capacity)
+    {
+        int buffer = createBuffer(capacity);
+        GLState.bindBuffer(GL_COPY_READ_BUFFER, old);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, used);
+
+        glDeleteBuffers(old);
+        GLState.bufferDeleted(old);
+        return buffer;
+    }
+
+    public Mark mark()
+    {
+        return new Mark(vertexUsed, indexUsed, meshes.size());
+    }
+
+    ///Frees every mesh added since mark was taken, for a model that failed
+    ///halfway through its upload. Those meshes must not be drawn again,
+    ///the next ones added take their place in the buffers.
+    public void truncate(Mark mark)
+    {
+        if(mark.meshCount() > meshes.size() || mark.vertexBytes() > vertexUsed || mark.indexBytes() > indexUsed)
+            throw new IllegalArgumentException("Mark is past the end of the pool");
+
+        meshes.subList(mark.meshCount(), meshes.size()).clear();
+        vertexUsed = mark.vertexBytes();
+        indexUsed = mark.indexBytes();
+    }
+
+    public VertexLayout getLayout()
+    {
+        return layout;
+    }
+
+    public int getVao()
+    {
+        return vao;
+    }
+
+    public int getVertexBuffer()
+    {
+        return vbo;
+    }
+
+    public int getIndexBuffer()
+    {
+        return ebo;
+    }
+
+    public List<Mesh> getMeshes()
+    {
+        return meshes;
+    }
+
+    public long getVertexBytesUsed() { return vertexUsed; }
+    public long getIndexBytesUsed()  { return indexUsed; }
+
+    public void cleanup()
+    {
+        glDeleteVertexArrays(vao);
+        GLState.vertexArrayDeleted(vao);
+        glDeleteBuffers(vbo);
+        GLState.bufferDeleted(vbo);
+        glDeleteBuffers(ebo);
+        GLState.bufferDeleted(ebo);
+    }
+}
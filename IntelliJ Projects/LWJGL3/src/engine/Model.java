@@ -0,0 +1,93 @@
+package engine;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+///Handle to a model file loading through a ModelLoader. It has no meshes
+///until the loader has imported it and uploaded them, draw a placeholder
+///until isResident() turns true. Every level of detail holds one mesh per
+///mesh of the file, level 0 is full detail.
+public class Model
+{
+    public final Path source;
+
+    private final ArrayList<List<Mesh>> levels = new ArrayList<List<Mesh>>();
+    private float[] levelErrors = { 0.0f };
+    private ModelImporter.Result result;
+    private boolean resident = false, failed = false;
+    private float radius = 0.0f;
+
+    Model(Path source)
+    {
+        this.source = source;
+    }
+
+    void markResident(List<List<Mesh>> uploaded, float[] errors, ModelImporter.Result result)
+    {
+        levels.addAll(uploaded);
+        levelErrors = errors;
+        this.result = result;
+        for(Mesh mesh : uploaded.get(0))
+            radius = Math.max(radius, mesh.getRadius());
+        resident = true;
+    }
+
+    void markFailed()
+    {
+        failed = true;
+    }
+
+    public boolean isResident()
+    {
+        return resident;
+    }
+
+    ///The load gave up, the model will never become resident
+    public boolean isFailed()
+    {
+        return failed;
+    }
+
+    ///Full detail meshes
+    public List<Mesh> getMeshes()
+    {
+        return getMeshes(0);
+    }
+
+    public List<Mesh> getMeshes(int level)
+    {
+        return level < levels.size() ? levels.get(level) : List.of();
+    }
+
+    public int getLevelCount()
+    {
+        return Math.max(levels.size(), 1);
+    }
+
+    ///Error of each level in object space units, see LodBuilder
+    public float[] getLevelErrors()
+    {
+        return levelErrors;
+    }
+
+    ///Radius of the sphere around the origin that holds every mesh
+    public float getRadius()
+    {
+        return radius;
+    }
+
+    public int getTriangleCount(int level)
+    {
+        int triangles = 0;
+        for(Mesh mesh : getMeshes(level))
+            triangles += mesh.getTriangleCount();
+        return triangles;
+    }
+
+    ///How the meshes were obtained, null until resident
+    public ModelImporter.Result getResult()
+    {
+        return result;
+    }
+}
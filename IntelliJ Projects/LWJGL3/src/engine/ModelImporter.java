@@ -0,0 +1,303 @@
+package engine;
+
+import org.lwjgl.*;
+import org.lwjgl.assimp.*;
+import org.lwjgl.system.*;
+import org.lwjgl.util.meshoptimizer.*;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.lwjgl.assimp.Assimp.*;
+import static org.lwjgl.system.MemoryStack.*;
+import static org.lwjgl.system.MemoryUtil.*;
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.*;
+
+///Turns glTF, OBJ, FBX and whatever else Assimp reads into MeshData. Every
+///mesh is reordered for the post-transform cache, then for overdraw, then
+///its vertices are renumbered in the order the indices first use them so
+///fetches walk memory forwards. The result goes to a MeshFile next to the
+///source and later loads map that instead. Touches no GL state, safe to
+///run on any thread.
+///
+///Run on its own it imports the given files from scratch, loads them again
+///from the cache and prints both:
+///
+///    ModelImporter <model>...
+public final class ModelImporter
+{
+    //Triangles only, node transforms baked into the vertices so a model
+    //draws with nothing but its instance matrix
+    private static final int IMPORT_FLAGS = aiProcess_Triangulate | aiProcess_JoinIdenticalVertices |
+            aiProcess_GenSmoothNormals | aiProcess_PreTransformVertices | aiProcess_SortByPType;
+
+    //Cache the ACMR figures assume, 16 entries is typical of current hardware
+    private static final int CACHE_SIZE = 16;
+    //Overdraw ordering may make the vertex cache this much worse
+    private static final float OVERDRAW_THRESHOLD = 1.05f;
+
+    ///Meshes of a model plus how they were obtained. ACMR is average cache
+    ///miss ratio, transformed vertices per triangle, over the whole model.
+    public record Result(MeshData[] meshes, boolean fromCache, long nanos, float acmrBefore, float acmrAfter) {}
+
+    private ModelImporter() {}
+
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length == 0)
+            throw new IllegalArgumentException("Usage: ModelImporter <model>...");
+
+        for(String arg : args)
+        {
+            Path source = Paths.get(arg);
+            Files.deleteIfExists(MeshFile.cachePath(source));
+            Result imported = load(source);
+            Result cached = load(source);
+            System.out.println(describe(source, imported));
+            System.out.println(describe(source, cached));
+        }
+    }
+
+    ///One line summary of a load
+    public static String describe(Path source, Result result)
+    {
+        int triangles = 0, vertices = 0;
+        for(MeshData mesh : result.meshes())
+        {
+            triangles += mesh.getTriangleCount();
+            vertices += mesh.getVertexCount();
+        }
+        return String.format("%s: %d meshes, %d vertices, %d triangles, %s in %.1f ms, ACMR %.3f -> %.3f",
+                source.getFileName(), result.meshes().length, vertices, triangles,
+                result.fromCache() ? "loaded from cache" : "imported", result.nanos() / 1.0e6,
+                result.acmrBefore(), result.acmrAfter());
+    }
+
+    ///Loads source from its MeshFile when that is current, otherwise imports
+    ///and optimizes it and writes the MeshFile for next time
+    public static Result load(Path source) throws IOException
+    {
+        long start = System.nanoTime();
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+
+        Path cached = MeshFile.cachePath(source);
+        if(Files.isRegularFile(cached))
+        {
+            try
+            {
+                MeshFile file = MeshFile.map(cached);
+                if(file.isCurrent(size, modified))
+                {
+                    MeshData[] meshes = new MeshData[file.getMeshCount()];
+                    float[] before = new float[meshes.length], after = new float[meshes.length];
+                    for(int i = 0; i < meshes.length; i++)
+                    {
+                        meshes[i] = file.getMesh(i, meshName(source, i));
+                        before[i] = file.getAcmrBefore(i);
+                        after[i] = file.getAcmrAfter(i);
+                    }
+                    return new Result(meshes, true, System.nanoTime() - start, overall(meshes, before), overall(meshes, after));
+                }
+            }
+            catch(IOException e)
+            {
+                //Stale versions and broken files are simply imported again
+                System.err.println(e.getMessage());
+            }
+        }
+
+        MeshData[] meshes = importFile(source);
+        float[] before = new float[meshes.length], after = new float[meshes.length];
+        for(int i = 0; i < meshes.length; i++)
+        {
+            before[i] = acmr(meshes[i]);
+            meshes[i] = optimize(meshes[i]);
+            after[i] = acmr(meshes[i]);
+        }
+
+        try
+        {
+            MeshFile.write(cached, size, modified, meshes, before, after);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Unable to cache " + source + ": " + e.getMessage());
+        }
+        return new Result(meshes, false, System.nanoTime() - start, overall(meshes, before), overall(meshes, after));
+    }
+
+    private static String meshName(Path source, int index)
+    {
+        return source.getFileName() + "#" + index;
+    }
+
+    //ACMR over all meshes, weighted by triangles which is the same as
+    //adding up the transformed vertices and dividing once
+    private static float overall(MeshData[] meshes, float[] acmr)
+    {
+        double transformed = 0.0;
+        long triangles = 0;
+        for(int i = 0; i < meshes.length; i++)
+        {
+            transformed += (double)acmr[i] * meshes[i].getTriangleCount();
+            triangles += meshes[i].getTriangleCount();
+        }
+        return triangles == 0 ? 0.0f : (float)(transformed / triangles);
+    }
+
+    ///Reads every triangle mesh of source through Assimp, as it comes
+    public static MeshData[] importFile(Path source) throws IOException
+    {
+        AIScene scene = aiImportFile(source.toString(), IMPORT_FLAGS);
+        if(scene == null)
+            throw new IOException("Unable to import " + source + ": " + aiGetErrorString());
+
+        try
+        {
+            ArrayList<MeshData> meshes = new ArrayList<MeshData>();
+            PointerBuffer pointers = scene.mMeshes();
+            for(int m = 0; m < scene.mNumMeshes(); m++)
+            {
+                AIMesh mesh = AIMesh.create(pointers.get(m));
+
+                //SortByPType leaves points and lines in meshes of their own
+                if((mesh.mPrimitiveTypes() & aiPrimitiveType_TRIANGLE) == 0)
+                    continue;
+
+                int vertices = mesh.mNumVertices();
+                float[] positions = new float[vertices * 3];
+                float[] normals = new float[vertices * 3];
+                //Meshes without coordinates get zeros so they fit layouts that store some
+                float[] texCoords = new float[vertices * 2];
+
+                AIVector3D.Buffer p = mesh.mVertices();
+                AIVector3D.Buffer n = mesh.mNormals();
+                AIVector3D.Buffer t = mesh.mTextureCoords(0);
+                for(int v = 0; v < vertices; v++)
+                {
+                    AIVector3D pv = p.get(v);
+                    positions[v * 3] = pv.x();
+                    positions[v * 3 + 1] = pv.y();
+                    positions[v * 3 + 2] = pv.z();
+                    if(n != null)
+                    {
+                        AIVector3D nv = n.get(v);
+                        normals[v * 3] = nv.x();
+                        normals[v * 3 + 1] = nv.y();
+                        normals[v * 3 + 2] = nv.z();
+                    }
+                    if(t != null)
+                    {
+                        AIVector3D tv = t.get(v);
+                        texCoords[v * 2] = tv.x();
+                        texCoords[v * 2 + 1] = tv.y();
+                    }
+                }
+
+                AIFace.Buffer faces = mesh.mFaces();
+                int[] indices = new int[mesh.mNumFaces() * 3];
+                int count = 0;
+                for(int f = 0; f < mesh.mNumFaces(); f++)
+                {
+                    IntBuffer face = faces.get(f).mIndices();
+                    if(face.remaining() != 3)
+                        continue;
+                    indices[count++] = face.get(0);
+                    indices[count++] = face.get(1);
+                    indices[count++] = face.get(2);
+                }
+                if(count < indices.length)
+                    indices = Arrays.copyOf(indices, count);
+
+                meshes.add(new MeshData(meshName(source, meshes.size()), positions, texCoords, normals, indices));
+            }
+            return meshes.toArray(new MeshData[0]);
+        }
+        finally
+        {
+            aiReleaseImport(scene);
+        }
+    }
+
+    ///Reorders data for the vertex cache, overdraw and vertex fetch in that
+    ///order, unused vertices are dropped on the way
+    public static MeshData optimize(MeshData data)
+    {
+        int vertexCount = data.getVertexCount();
+        int indexCount = data.getIndexCount();
+
+        IntBuffer indices = memAllocInt(indexCount);
+        IntBuffer scratch = memAllocInt(indexCount);
+        FloatBuffer positions = memAllocFloat(data.positions.length);
+        IntBuffer remap = memAllocInt(vertexCount);
+        try
+        {
+            indices.put(data.indices).flip();
+            positions.put(data.positions).flip();
+
+            meshopt_optimizeVertexCache(scratch, indices, vertexCount);
+            meshopt_optimizeOverdraw(indices, scratch, positions, vertexCount, 3 * Float.BYTES, OVERDRAW_THRESHOLD);
+
+            int unique = (int)meshopt_optimizeVertexFetchRemap(remap, indices);
+            meshopt_remapIndexBuffer(scratch, indices, indexCount, remap);
+
+            int[] newIndices = new int[indexCount];
+            scratch.get(0, newIndices);
+
+            int[] map = new int[vertexCount];
+            remap.get(0, map);
+            return new MeshData(data.name,
+                    remapStream(data.positions, 3, map, unique),
+                    data.texCoords != null ? remapStream(data.texCoords, 2, map, unique) : null,
+                    data.normals != null ? remapStream(data.normals, 3, map, unique) : null,
+                    newIndices);
+        }
+        finally
+        {
+            memFree(indices);
+            memFree(scratch);
+            memFree(positions);
+            memFree(remap);
+        }
+    }
+
+    //Moves vertex v to map[v], vertices mapped to ~0 are unused and dropped
+    private static float[] remapStream(float[] src, int components, int[] map, int count)
+    {
+        float[] dst = new float[count * components];
+        for(int v = 0; v < map.length; v++)
+        {
+            if(map[v] != -1)
+                System.arraycopy(src, v * components, dst, map[v] * components, components);
+        }
+        return dst;
+    }
+
+    ///Transformed vertices per triangle with a CACHE_SIZE entry FIFO cache,
+    ///between 0.5 at best and 3 at worst
+    public static float acmr(MeshData data)
+    {
+        if(data.getIndexCount() == 0)
+            return 0.0f;
+
+        IntBuffer indices = memAllocInt(data.getIndexCount());
+        try(MemoryStack stack = stackPush())
+        {
+            indices.put(data.indices).flip();
+            MeshoptVertexCacheStatistics stats = MeshoptVertexCacheStatistics.malloc(stack);
+            meshopt_analyzeVertexCache(indices, data.getVertexCount(), CACHE_SIZE, 0, 0, stats);
+            return stats.acmr();
+        }
+        finally
+        {
+            memFree(indices);
+        }
+    }
+}
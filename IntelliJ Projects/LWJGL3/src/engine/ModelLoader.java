@@ -0,0 +1,157 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+///Loads models without stalling the render thread. Importing, optimizing,
+///reading the mesh cache and building the levels of detail all happen on
+///worker threads, the GL thread only uploads finished models into a MeshPool.
+///
+///load() hands back a Model right away, update() does the uploading and
+///must be called once per frame on the GL thread.
+public class ModelLoader
+{
+    //A model somewhere between requested and resident
+    private static final class Pending
+    {
+        final Model model;
+        ModelImporter.Result result;
+        LodBuilder.Level[][] lods;      //Per mesh
+        long lodNanos;
+        Exception error;
+
+        Pending(Model model)
+        {
+            this.model = model;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final float[] lodErrors;
+
+    private final AtomicInteger importing = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Pending> imported = new ConcurrentLinkedQueue<Pending>();
+
+    ///lodErrors are the simplifier's target errors, one level each, see
+    ///LodBuilder. Empty loads full detail only.
+    public ModelLoader(int workers, float[] lodErrors)
+    {
+        if(workers < 1)
+            throw new IllegalArgumentException("Worker count must be at least 1, given: " + workers);
+        this.lodErrors = lodErrors.clone();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "Model import " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    ///Starts loading the model at source
+    public Model load(Path source)
+    {
+        Pending pending = new Pending(new Model(source));
+
+        importing.incrementAndGet();
+        pool.execute(() -> {
+            try(Profiler.Zone z = Profiler.zone("import"))
+            {
+                pending.result = ModelImporter.load(source);
+
+                long start = System.nanoTime();
+                MeshData[] meshes = pending.result.meshes();
+                pending.lods = new LodBuilder.Level[meshes.length][];
+                for(int i = 0; i < meshes.length; i++)
+                    pending.lods[i] = LodBuilder.build(meshes[i], lodErrors);
+                pending.lodNanos = System.nanoTime() - start;
+            }
+            catch(IOException | RuntimeException e)
+            {
+                pending.error = e;
+            }
+            imported.add(pending);
+            importing.decrementAndGet();
+        });
+
+        return pending.model;
+    }
+
+    ///Uploads every model that finished importing into meshes, once per
+    ///frame on the GL thread
+    public void update(MeshPool meshes)
+    {
+        Pending p;
+        while((p = imported.poll()) != null)
+        {
+            Model model = p.model;
+            if(p.error != null)
+            {
+                System.err.println("Model load failed: " + model.source + ": " + p.error.getMessage());
+                model.markFailed();
+                continue;
+            }
+
+            MeshPool.Mark mark = meshes.mark();
+            try
+            {
+                int levelCount = lodErrors.length + 1;
+                ArrayList<List<Mesh>> levels = new ArrayList<List<Mesh>>();
+                for(int level = 0; level < levelCount; level++)
+                    levels.add(new ArrayList<Mesh>());
+
+                //A level's error is the worst of its meshes
+                float[] errors = new float[levelCount];
+                MeshData[] data = p.result.meshes();
+                for(int i = 0; i < data.length; i++)
+                {
+                    LodBuilder.Level[] lods = p.lods[i];
+                    Mesh mesh = meshes.add(data[i]);
+                    levels.get(0).add(mesh);
+                    for(int level = 1; level < levelCount; level++)
+                    {
+                        //Levels the simplifier couldn't improve on draw the one before
+                        if(lods[level].indices() != lods[level - 1].indices())
+                            mesh = meshes.addLod(levels.get(0).get(i), lods[level].indices());
+                        levels.get(level).add(mesh);
+                        errors[level] = Math.max(errors[level], lods[level].error());
+                    }
+                }
+                model.markResident(levels, errors, p.result);
+
+                System.out.println(ModelImporter.describe(model.source, p.result));
+                StringBuilder triangles = new StringBuilder();
+                for(int level = 0; level < levelCount; level++)
+                    triangles.append(level == 0 ? "" : ", ").append(model.getTriangleCount(level));
+                System.out.printf("%s: %d levels of detail built in %.1f ms, triangles %s%n",
+                        model.source.getFileName(), levelCount, p.lodNanos / 1.0e6, triangles);
+            }
+            catch(IllegalArgumentException e)
+            {
+                //Data the pool's layout can't hold, the meshes that did
+                //make it in are of no use without the rest
+                meshes.truncate(mark);
+                System.err.println("Model load failed: " + model.source + ": " + e.getMessage());
+                model.markFailed();
+            }
+        }
+    }
+
+    ///Models still importing or waiting for upload
+    public int getQueueDepth()
+    {
+        return importing.get() + imported.size();
+    }
+
+    public void cleanup()
+    {
+        pool.shutdownNow();
+        imported.clear();
+    }
+}
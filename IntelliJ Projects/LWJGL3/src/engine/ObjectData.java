@@ -0,0 +1,68 @@
+package engine;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Per object model matrices for draws that aren't instanced. A batch of up
+///to MAX_OBJECTS matrices goes up in one upload, each draw then only names
+///its slot with a draw id instead of sending a whole matrix. Shaders declare:
+///
+///    layout (std140) uniform ObjectData
+///    {
+///        mat4 models[256];
+///    };
+///    uniform int drawId;
+public class ObjectData
+{
+    public static final String BLOCK = "ObjectData";
+    public static final int BINDING = 1;
+
+    ///16KB, the smallest maximum block size GL allows
+    public static final int MAX_OBJECTS = 256;
+    private static final int MATRIX_BYTES = 16 * Float.BYTES;
+
+    private final UniformBlock block;
+    private int count = 0;
+
+    public ObjectData()
+    {
+        this(new UniformBlock(BLOCK, BINDING, MAX_OBJECTS * MATRIX_BYTES));
+    }
+
+    private ObjectData(UniformBlock block)
+    {
+        this.block = block;
+    }
+
+    ///Staging and upload counting without a GL context, see UniformBlock.detached()
+    static ObjectData detached()
+    {
+        return new ObjectData(UniformBlock.detached(BLOCK, MAX_OBJECTS * MATRIX_BYTES));
+    }
+
+    ///Copies matrix index of src into the next slot and returns the slot,
+    ///or -1 when the batch is full and has to be flushed first
+    public int add(FloatBuffer src, int index)
+    {
+        if(count == MAX_OBJECTS)
+            return -1;
+
+        memCopy(memAddress(src) + (long)index * MATRIX_BYTES, memAddress(block.getData()) + (long)count * MATRIX_BYTES, MATRIX_BYTES);
+        return count++;
+    }
+
+    ///Uploads the batch and starts a new one, draws using its slots have to
+    ///be issued before the next flush
+    public void flush()
+    {
+        if(count > 0)
+            block.upload(count * MATRIX_BYTES);
+        count = 0;
+    }
+
+    public void cleanup()
+    {
+        block.cleanup();
+    }
+}
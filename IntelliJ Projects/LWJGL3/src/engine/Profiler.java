@@ -0,0 +1,343 @@
+package engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL33.*;
+
+///In engine profiler with no native dependencies. CPU zones are scoped with
+///try-with-resources and land in a ring buffer owned by the recording
+///thread, zone objects are preallocated per thread so recording never
+///allocates. GPU zones bracket GL work with timestamp queries that are read
+///back a few frames later, and only if the results are already available,
+///so the CPU never waits on the GPU. Everything recorded can be exported as
+///Chrome trace event JSON, which Perfetto and chrome://tracing open.
+///
+///    try(Profiler.Zone z = Profiler.zone("cull")) { ... }
+///
+///While disabled a zone is a single flag check returning a shared no-op.
+public final class Profiler
+{
+    ///A zone in progress, close it to record it
+    public static final class Zone implements AutoCloseable
+    {
+        private ThreadBuffer owner;    //null for the no-op zone
+        private boolean gpu;
+        private int name;
+        private int depth;
+        private long start;     //Nanoseconds for CPU zones, query slot for GPU zones
+
+        @Override
+        public void close()
+        {
+            if(owner == null)
+                return;
+
+            if(gpu) endGpu(this);
+            else    owner.end(this);
+        }
+    }
+
+    private static final Zone NOOP = new Zone();
+
+    private static final int RING_SIZE = 1 << 16;    //Zones kept per thread
+    private static final int MAX_DEPTH = 64;
+
+    //Zones recorded by one thread, oldest entries get overwritten
+    private static final class ThreadBuffer
+    {
+        private final String threadName;
+        private final long tid;
+
+        private final long[] starts = new long[RING_SIZE];
+        private final long[] ends = new long[RING_SIZE];
+        private final int[] names = new int[RING_SIZE];
+        private final int[] depths = new int[RING_SIZE];
+        private volatile long count = 0;
+
+        private final Zone[] stack = new Zone[MAX_DEPTH];
+        private int depth = 0;
+
+        ThreadBuffer(String threadName, long tid)
+        {
+            this.threadName = threadName;
+            this.tid = tid;
+            for(int i = 0; i < MAX_DEPTH; i++)
+            {
+                stack[i] = new Zone();
+                stack[i].owner = this;
+            }
+        }
+
+        Zone begin(int name)
+        {
+            if(depth == MAX_DEPTH)
+                return NOOP;
+
+            Zone z = stack[depth];
+            z.gpu = false;
+            z.name = name;
+            z.depth = depth++;
+            z.start = System.nanoTime();
+            return z;
+        }
+
+        void end(Zone z)
+        {
+            record(z.name, z.depth, z.start, System.nanoTime());
+            depth = z.depth;
+        }
+
+        void record(int name, int depth, long start, long end)
+        {
+            int i = (int)(count & (RING_SIZE - 1));
+            starts[i] = start;
+            ends[i] = end;
+            names[i] = name;
+            depths[i] = depth;
+            count = count + 1;  //Only the owning thread writes
+        }
+    }
+
+    private static volatile boolean enabled = false;
+
+    private static final ConcurrentHashMap<String, Integer> nameIds = new ConcurrentHashMap<String, Integer>();
+    private static final ArrayList<String> names = new ArrayList<String>();
+
+    private static final ArrayList<ThreadBuffer> buffers = new ArrayList<ThreadBuffer>();
+    private static final ThreadLocal<ThreadBuffer> local = ThreadLocal.withInitial(() -> {
+        Thread t = Thread.currentThread();
+        ThreadBuffer buffer = new ThreadBuffer(t.getName(), t.getId());
+        synchronized(buffers) { buffers.add(buffer); }
+        return buffer;
+    });
+
+    //GPU zones, only touched by the GL thread. Queries come in begin/end
+    //pairs, GPU_FRAMES sets of them rotate so a set is only read back
+    //once the GPU has had time to finish it. The CPU may run StreamBuffer.FRAMES
+    //frames ahead, one set more than that is never still in flight.
+    private static final int GPU_FRAMES = StreamBuffer.FRAMES + 1;
+    private static final int GPU_ZONES = 64;
+
+    private static boolean gpuReady = false;
+    private static int[] gpuQueries;
+    private static final int[][] gpuNames = new int[GPU_FRAMES][GPU_ZONES];
+    private static final int[][] gpuDepths = new int[GPU_FRAMES][GPU_ZONES];
+    private static final int[] gpuCounts = new int[GPU_FRAMES];
+    private static final Zone[] gpuStack = new Zone[MAX_DEPTH];
+    private static int gpuFrame = 0;
+    private static int gpuDepth = 0;
+    private static long gpuToCpu;       //Added to GPU timestamps to line them up with System.nanoTime, see syncGpuClock
+    private static long gpuDropped = 0; //Frames whose results weren't ready in time
+    private static ThreadBuffer gpuBuffer;
+
+    private Profiler() {}
+
+    public static void setEnabled(boolean on)
+    {
+        enabled = on;
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    ///Opens a CPU zone on the calling thread
+    public static Zone zone(String name)
+    {
+        if(!enabled)
+            return NOOP;
+
+        return local.get().begin(nameId(name));
+    }
+
+    private static int nameId(String name)
+    {
+        Integer id = nameIds.get(name);
+        if(id != null)
+            return id;
+
+        synchronized(names)
+        {
+            id = nameIds.get(name);
+            if(id == null)
+            {
+                id = names.size();
+                names.add(name);
+                nameIds.put(name, id);
+            }
+        }
+        return id;
+    }
+
+    ///Creates the timestamp queries, call on the GL thread after the context
+    ///is current to enable GPU zones
+    public static void initGpu()
+    {
+        gpuQueries = new int[GPU_FRAMES * GPU_ZONES * 2];
+        glGenQueries(gpuQueries);
+        for(int i = 0; i < MAX_DEPTH; i++)
+            gpuStack[i] = new Zone();
+
+        gpuBuffer = new ThreadBuffer("GPU", -1);
+        syncGpuClock();
+        gpuReady = true;
+    }
+
+    //The GPU and CPU clocks drift apart over a long run, measured once the
+    //GPU zones of a trace would slowly slide against the CPU ones
+    private static void syncGpuClock()
+    {
+        gpuToCpu = System.nanoTime() - glGetInteger64(GL_TIMESTAMP);
+    }
+
+    public static void cleanupGpu()
+    {
+        if(!gpuReady)
+            return;
+
+        glDeleteQueries(gpuQueries);
+        gpuReady = false;
+    }
+
+    ///Opens a GPU zone, GL thread only. The zone measures when the GPU reaches
+    ///the commands issued inside it, not when the CPU issues them.
+    public static Zone gpuZone(String name)
+    {
+        if(!enabled || !gpuReady || gpuDepth == MAX_DEPTH)
+            return NOOP;
+
+        int slot = gpuCounts[gpuFrame];
+        if(slot == GPU_ZONES)
+            return NOOP;
+        gpuCounts[gpuFrame]++;
+
+        gpuNames[gpuFrame][slot] = nameId(name);
+        gpuDepths[gpuFrame][slot] = gpuDepth;
+        glQueryCounter(gpuQueries[queryIndex(gpuFrame, slot)], GL_TIMESTAMP);
+
+        Zone z = gpuStack[gpuDepth++];
+        z.owner = gpuBuffer;
+        z.gpu = true;
+        z.start = slot;
+        return z;
+    }
+
+    private static void endGpu(Zone z)
+    {
+        glQueryCounter(gpuQueries[queryIndex(gpuFrame, (int)z.start) + 1], GL_TIMESTAMP);
+        gpuDepth--;
+    }
+
+    private static int queryIndex(int frame, int slot)
+    {
+        return (frame * GPU_ZONES + slot) * 2;
+    }
+
+    ///Rotates the GPU query sets and collects the oldest one if the GPU is
+    ///done with it, call once per frame on the GL thread before any GPU zone
+    public static void beginFrame()
+    {
+        if(!gpuReady)
+            return;
+
+        gpuFrame = (gpuFrame + 1) % GPU_FRAMES;
+        int count = gpuCounts[gpuFrame];
+        gpuCounts[gpuFrame] = 0;
+        gpuDepth = 0;
+        if(count == 0)
+            return;
+
+        //Queries complete in order, if the last one is there they all are
+        int last = gpuQueries[queryIndex(gpuFrame, count - 1) + 1];
+        if(glGetQueryObjecti(last, GL_QUERY_RESULT_AVAILABLE) == GL_FALSE)
+        {
+            gpuDropped++;
+            return;
+        }
+
+        //Once per collected frame keeps the offset fresh without a sync per zone
+        syncGpuClock();
+        for(int slot = 0; slot < count; slot++)
+        {
+            int q = queryIndex(gpuFrame, slot);
+            long start = glGetQueryObjectui64(gpuQueries[q], GL_QUERY_RESULT) + gpuToCpu;
+            long end = glGetQueryObjectui64(gpuQueries[q + 1], GL_QUERY_RESULT) + gpuToCpu;
+            gpuBuffer.record(gpuNames[gpuFrame][slot], gpuDepths[gpuFrame][slot], start, end);
+        }
+    }
+
+    ///GPU frames skipped because their results weren't ready yet
+    public static long getDroppedGpuFrames()
+    {
+        return gpuDropped;
+    }
+
+    ///Writes every zone still held in the ring buffers as Chrome trace event
+    ///JSON. Zones recorded while the export runs may or may not be included.
+    public static void exportChromeTrace(Path file) throws IOException
+    {
+        ArrayList<ThreadBuffer> all;
+        synchronized(buffers) { all = new ArrayList<ThreadBuffer>(buffers); }
+        if(gpuBuffer != null)
+            all.add(gpuBuffer);
+
+        String[] nameTable;
+        synchronized(names) { nameTable = names.toArray(new String[0]); }
+
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(file)))
+        {
+            out.println("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean first = true;
+            for(ThreadBuffer b : all)
+            {
+                if(!first) out.println(",");
+                first = false;
+                out.printf(Locale.ROOT, "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+                        b.tid, escape(b.threadName));
+
+                long count = b.count;
+                long oldest = Math.max(0, count - RING_SIZE);
+                for(long n = oldest; n < count; n++)
+                {
+                    int i = (int)(n & (RING_SIZE - 1));
+                    int name = b.names[i];
+                    out.println(",");
+                    out.printf(Locale.ROOT, "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f,\"args\":{\"depth\":%d}}",
+                            escape(name < nameTable.length ? nameTable[name] : "?"), b.tid,
+                            b.starts[i] / 1000.0, (b.ends[i] - b.starts[i]) / 1000.0, b.depths[i]);
+                }
+            }
+            out.println();
+            out.println("]}");
+        }
+    }
+
+    private static String escape(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length());
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch(c) {
+                case '"'  -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if(c < 0x20) sb.append(String.format("\\u%04x", (int)c));
+                    else         sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
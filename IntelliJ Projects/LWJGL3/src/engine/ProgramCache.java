@@ -0,0 +1,187 @@
+package engine;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.*;
+import org.lwjgl.util.xxhash.XXHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.lwjgl.opengl.ARBGetProgramBinary.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.system.MemoryStack.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Keeps linked programs on disk with glGetProgramBinary so later runs can
+///skip compiling and linking. Entries are keyed by a hash of both sources
+///together with the driver's vendor, renderer and version strings, a driver
+///update changes the key and the stale entries are simply never hit again.
+///A binary the driver refuses anyway is deleted and the caller falls back
+///to compiling from source. GL thread only.
+public class ProgramCache
+{
+    private static final int MAGIC = 0x31425250;    //"PRB1"
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final Path dir;
+    private final String driver;
+    private final boolean supported;
+
+    private int hits, misses, rejected;
+
+    public ProgramCache(Path dir)
+    {
+        this.dir = dir;
+        driver = glGetString(GL_VENDOR) + "\0" + glGetString(GL_RENDERER) + "\0" + glGetString(GL_VERSION);
+
+        GLCapabilities caps = GL.getCapabilities();
+        boolean available = (caps.OpenGL41 || caps.GL_ARB_get_program_binary) && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        if(available)
+        {
+            try
+            {
+                Files.createDirectories(dir);
+            }
+            catch(IOException e)
+            {
+                System.err.println("Program cache disabled, unable to create " + dir + ": " + e.getMessage());
+                available = false;
+            }
+        }
+        supported = available;
+    }
+
+    ///False when the driver can't hand out program binaries, every lookup misses
+    public boolean isSupported()
+    {
+        return supported;
+    }
+
+    ///Returns a linked program for the sources or 0 when there is no usable entry
+    public int load(String vertSource, String fragSource)
+    {
+        if(!supported)
+            return 0;
+
+        Path file = fileFor(vertSource, fragSource);
+        if(!Files.isRegularFile(file))
+        {
+            misses++;
+            return 0;
+        }
+
+        ByteBuffer data = null;
+        int program = 0;
+        try
+        {
+            byte[] bytes = Files.readAllBytes(file);
+            data = memAlloc(bytes.length).put(bytes).flip().order(ByteOrder.LITTLE_ENDIAN);
+            if(bytes.length < HEADER_BYTES || data.getInt(0) != MAGIC || data.getInt(8) != bytes.length - HEADER_BYTES)
+                throw new IOException("Corrupt program binary " + file);
+
+            program = glCreateProgram();
+            glProgramBinary(program, data.getInt(4), data.position(HEADER_BYTES));
+            if(glGetProgrami(program, GL_LINK_STATUS) == GL_TRUE)
+            {
+                hits++;
+                return program;
+            }
+
+            //Usually a driver update that kept the version string, or an
+            //unknown format which also leaves an error behind
+            while(glGetError() != GL_NO_ERROR) {}
+        }
+        catch(IOException e)
+        {
+            System.err.println(e.getMessage());
+        }
+        finally
+        {
+            if(data != null)
+                memFree(data);
+        }
+
+        if(program != 0)
+            glDeleteProgram(program);
+        try { Files.deleteIfExists(file); }
+        catch(IOException ignored) {}
+
+        rejected++;
+        misses++;
+        return 0;
+    }
+
+    ///Asks the driver to keep the binary around, call before linking a
+    ///program that will be passed to store
+    public void prepare(int program)
+    {
+        if(supported)
+            glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+    }
+
+    ///Saves a freshly linked program under the key of its sources
+    public void store(String vertSource, String fragSource, int program)
+    {
+        if(!supported)
+            return;
+
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if(length <= 0)
+            return;
+
+        ByteBuffer data = memAlloc(HEADER_BYTES + length).order(ByteOrder.LITTLE_ENDIAN);
+        try(MemoryStack stack = stackPush())
+        {
+            IntBuffer written = stack.mallocInt(1);
+            IntBuffer format = stack.mallocInt(1);
+            glGetProgramBinary(program, written, format, data.position(HEADER_BYTES));
+
+            data.putInt(0, MAGIC).putInt(4, format.get(0)).putInt(8, written.get(0));
+            data.position(0).limit(HEADER_BYTES + written.get(0));
+
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+
+            //Written aside first so a crash never leaves half a binary behind
+            Path file = fileFor(vertSource, fragSource);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Unable to store program binary: " + e.getMessage());
+        }
+        finally
+        {
+            memFree(data);
+        }
+    }
+
+    private Path fileFor(String vertSource, String fragSource)
+    {
+        byte[] key = (vertSource + "\0" + fragSource + "\0" + driver).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = memAlloc(key.length);
+        try
+        {
+            buffer.put(key).flip();
+            return dir.resolve(String.format("%016x.bin", XXHash.XXH3_64bits(buffer)));
+        }
+        finally
+        {
+            memFree(buffer);
+        }
+    }
+
+    public int getHits()     { return hits; }
+    public int getMisses()   { return misses; }
+    public int getRejected() { return rejected; }
+}
@@ -0,0 +1,47 @@
+package engine;
+
+///Packs rectangles into a fixed size area with shelves: rectangles go left
+///to right along the current shelf and a new shelf opens above it once a
+///row is full. Wastes some space over fancier packers but never moves
+///anything already placed. Feeding rectangles tallest first packs best.
+public class RectPacker
+{
+    private final int width, height;
+    private int shelfY = 0;         //Bottom of the current shelf
+    private int shelfHeight = 0;
+    private int cursorX = 0;
+
+    public RectPacker(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+    }
+
+    ///Places a w by h rectangle and writes its corner to out[0], out[1].
+    ///Returns false when it doesn't fit anymore.
+    public boolean pack(int w, int h, int[] out)
+    {
+        if(w > width || h > height)
+            return false;
+
+        if(cursorX + w > width)
+        {
+            shelfY += shelfHeight;
+            shelfHeight = 0;
+            cursorX = 0;
+        }
+        if(shelfY + h > height)
+            return false;
+
+        out[0] = cursorX;
+        out[1] = shelfY;
+        cursorX += w;
+        shelfHeight = Math.max(shelfHeight, h);
+        return true;
+    }
+
+    public void clear()
+    {
+        shelfY = shelfHeight = cursorX = 0;
+    }
+}
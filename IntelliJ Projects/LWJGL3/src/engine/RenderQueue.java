@@ -0,0 +1,228 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+///Collects the draws of a frame as 64 bit sort keys plus a payload index,
+///sorts them so draws sharing state end up next to each other and replays
+///them with as few program, texture and VAO switches as possible.
+///
+///Key layout from the most significant bit down, the top bit stays clear:
+///  layer        4 bits
+///  transparent  1 bit
+///  opaque:      shader 10, texture set 12, mesh 12, depth 24 (front to back)
+///  transparent: depth 24 (back to front), shader 10, texture set 12, mesh 12
+public class RenderQueue
+{
+    ///Called once per run of consecutive draws that share a shader, texture
+    ///set and mesh, with that state already bound. payloads[start] through
+    ///payloads[start + count - 1] are the payloads of the run in sorted order.
+    public interface BatchHandler
+    {
+        void draw(RenderQueue queue, int mesh, int[] payloads, int start, int count);
+    }
+
+    private static final int LAYER_BITS   = 4;
+    private static final int SHADER_BITS  = 10;
+    private static final int TEXTURE_BITS = 12;
+    private static final int MESH_BITS    = 12;
+    private static final int DEPTH_BITS   = 24;
+
+    private static final int STATE_BITS = SHADER_BITS + TEXTURE_BITS + MESH_BITS;
+    private static final long DEPTH_MAX = (1L << DEPTH_BITS) - 1;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+    private static final int TRANSPARENT_SHIFT = STATE_BITS + DEPTH_BITS;
+    private static final int LAYER_SHIFT = TRANSPARENT_SHIFT + 1;
+
+    //Registered state, ids are indices into these
+    private final ArrayList<Shader> shaders = new ArrayList<Shader>();
+    private final ArrayList<TextureBinding[]> textureSets = new ArrayList<TextureBinding[]>();
+    private final ArrayList<Mesh> meshes = new ArrayList<Mesh>();
+
+    //Draws of the current frame, the scratch pair is the radix sort's
+    //destination and swaps roles with the live pair on every pass
+    private long[] keys = new long[1024];
+    private int[] payloads = new int[1024];
+    private long[] keyScratch = new long[1024];
+    private int[] payloadScratch = new int[1024];
+    private final int[] histogram = new int[256];
+    private int count = 0;
+
+    private int programSwitches, textureSwitches, vaoSwitches, batches;
+
+    public int registerShader(Shader shader)
+    {
+        return register(shaders, shader, SHADER_BITS, "shaders");
+    }
+
+    ///Texture i of the set is bound to texture unit i
+    public int registerTextureSet(TextureBinding... textures)
+    {
+        return register(textureSets, textures, TEXTURE_BITS, "texture sets");
+    }
+
+    ///Meshes from the same MeshPool share a VAO, switching between them
+    ///binds nothing
+    public int registerMesh(Mesh mesh)
+    {
+        return register(meshes, mesh, MESH_BITS, "meshes");
+    }
+
+    private <T> int register(ArrayList<T> list, T item, int bits, String what)
+    {
+        if(list.size() == 1 << bits)
+            throw new IllegalStateException("Render queue is limited to " + (1 << bits) + " " + what);
+
+        list.add(item);
+        return list.size() - 1;
+    }
+
+    public Mesh getMesh(int mesh)
+    {
+        return meshes.get(mesh);
+    }
+
+    public void clear()
+    {
+        count = 0;
+    }
+
+    ///depth is the normalized distance from the camera, 0 at the eye and 1
+    ///at the far plane, values outside are clamped
+    public void submit(int layer, boolean transparent, int shader, int textureSet, int mesh, float depth, int payload)
+    {
+        if(count == keys.length)
+        {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            keyScratch = new long[capacity];
+            payloadScratch = new int[capacity];
+        }
+
+        long d = (long)(Math.min(Math.max(depth, 0.0f), 1.0f) * DEPTH_MAX);
+        long state = ((long)shader << (TEXTURE_BITS + MESH_BITS)) | ((long)textureSet << MESH_BITS) | mesh;
+
+        long key = ((long)(layer & ((1 << LAYER_BITS) - 1)) << LAYER_SHIFT);
+        if(transparent)
+            key |= (1L << TRANSPARENT_SHIFT) | ((DEPTH_MAX - d) << STATE_BITS) | state;
+        else
+            key |= (state << DEPTH_BITS) | d;
+
+        keys[count] = key;
+        payloads[count] = payload;
+        count++;
+    }
+
+    //LSD radix sort over the key bytes, bytes that are equal across every
+    //key are skipped so only the bits actually in use cost a pass
+    private void sort()
+    {
+        for(int shift = 0; shift < 64; shift += 8)
+        {
+            Arrays.fill(histogram, 0);
+            for(int i = 0; i < count; i++)
+                histogram[(int)(keys[i] >>> shift) & 0xFF]++;
+
+            if(histogram[(int)(keys[0] >>> shift) & 0xFF] == count)
+                continue;
+
+            int sum = 0;
+            for(int b = 0; b < 256; b++)
+            {
+                int c = histogram[b];
+                histogram[b] = sum;
+                sum += c;
+            }
+
+            for(int i = 0; i < count; i++)
+            {
+                int dst = histogram[(int)(keys[i] >>> shift) & 0xFF]++;
+                keyScratch[dst] = keys[i];
+                payloadScratch[dst] = payloads[i];
+            }
+
+            long[] k = keys; keys = keyScratch; keyScratch = k;
+            int[] p = payloads; payloads = payloadScratch; payloadScratch = p;
+        }
+    }
+
+    private static int shaderOf(long state)  { return (int)(state >>> (TEXTURE_BITS + MESH_BITS)); }
+    private static int textureOf(long state) { return (int)(state >>> MESH_BITS) & ((1 << TEXTURE_BITS) - 1); }
+    private static int meshOf(long state)    { return (int)state & ((1 << MESH_BITS) - 1); }
+
+    private static long stateOf(long key)
+    {
+        boolean transparent = ((key >>> TRANSPARENT_SHIFT) & 1) != 0;
+        return transparent ? key & STATE_MASK : (key >>> DEPTH_BITS) & STATE_MASK;
+    }
+
+    ///Sorts and replays the queue, then clears it
+    public void execute(BatchHandler handler)
+    {
+        programSwitches = textureSwitches = vaoSwitches = batches = 0;
+        if(count == 0)
+            return;
+
+        sort();
+
+        int curShader = -1, curTextures = -1, curVao = -1;
+        int runStart = 0;
+        while(runStart < count)
+        {
+            long state = stateOf(keys[runStart]);
+            long prefix = keys[runStart] >>> TRANSPARENT_SHIFT;
+
+            //Extend the run while layer, blending and state stay the same
+            int runEnd = runStart + 1;
+            while(runEnd < count && stateOf(keys[runEnd]) == state && (keys[runEnd] >>> TRANSPARENT_SHIFT) == prefix)
+                runEnd++;
+
+            int shader = shaderOf(state);
+            int textures = textureOf(state);
+            int mesh = meshOf(state);
+
+            if(shader != curShader)
+            {
+                shaders.get(shader).use();
+                curShader = shader;
+                programSwitches++;
+            }
+            if(textures != curTextures)
+            {
+                TextureBinding[] set = textureSets.get(textures);
+                for(int unit = 0; unit < set.length; unit++)
+                    set[unit].bind(unit);
+                curTextures = textures;
+                textureSwitches++;
+            }
+            int vao = meshes.get(mesh).getVao();
+            if(vao != curVao)
+            {
+                GLState.bindVertexArray(vao);
+                curVao = vao;
+                vaoSwitches++;
+            }
+
+            handler.draw(this, mesh, payloads, runStart, runEnd - runStart);
+            batches++;
+            runStart = runEnd;
+        }
+
+        count = 0;
+    }
+
+    ///Issues one non-instanced draw of mesh, for handlers that draw each
+    ///payload on its own
+    public void drawElements(int mesh)
+    {
+        meshes.get(mesh).draw();
+    }
+
+    //Counts from the last execute
+    public int getProgramSwitches() { return programSwitches; }
+    public int getTextureSwitches() { return textureSwitches; }
+    public int getVaoSwitches()     { return vaoSwitches; }
+    public int getBatches()         { return batches; }
+}
@@ -0,0 +1,67 @@
+package engine;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+
+///Offscreen framebuffer with an RGBA8 color and a 24 bit depth attachment,
+///what headless runs draw into in place of the window's framebuffer.
+public class RenderTarget
+{
+    private final int fbo, color, depth;
+    private final int width, height;
+
+    public RenderTarget(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+
+        color = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, color);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_RGBA8, width, height);
+
+        depth = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, depth);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT24, width, height);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        fbo = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, color);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depth);
+
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        if(status != GL_FRAMEBUFFER_COMPLETE)
+            throw new IllegalStateException("Render target incomplete, status 0x" + Integer.toHexString(status));
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    ///Makes this the target of draws and reads and sets the viewport to match
+    public void bind()
+    {
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glViewport(0, 0, width, height);
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public float getAspectRatio()
+    {
+        return (float)width / (float)height;
+    }
+
+    public void cleanup()
+    {
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        glDeleteFramebuffers(fbo);
+        glDeleteRenderbuffers(color);
+        glDeleteRenderbuffers(depth);
+    }
+}
@@ -0,0 +1,241 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+///Holds the objects in the world and a spatial index over them so only
+///the ones inside the view frustum have to be considered for drawing.
+///Objects are addressed by id, ids of removed objects get reused.
+///
+///Transforms live in a TransformStore, an object may be attached to a
+///parent and then moves with it. Moving or turning an object only takes
+///effect in the world matrices and the index at the next
+///updateTransforms(), which cull() and FramePrep run first thing.
+public class Scene
+{
+    private static final int FREE = -1;
+
+    private final AABBTree tree = new AABBTree();
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final TransformStore transforms;
+
+    //Per object data indexed by id, the transforms are the store's
+    private float[] radii;      //Bounding sphere, the box built from it holds for any rotation
+    private int[] materials;    //Index into whatever material set the renderer uses
+    private int[] shapes;       //Index into whatever set of models the renderer draws
+    private int[] proxies;      //Tree proxy, FREE when the id isn't in use
+
+    private final Vector3f axis = new Vector3f();
+    private final Vector3f world = new Vector3f();
+
+    public Scene()
+    {
+        this(16);
+    }
+
+    public Scene(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        transforms = new TransformStore(capacity);
+        radii = new float[capacity];
+        materials = new int[capacity];
+        shapes = new int[capacity];
+        proxies = new int[capacity];
+        Arrays.fill(proxies, FREE);
+    }
+
+    private void grow(int minCapacity)
+    {
+        int capacity = Math.max(proxies.length * 2, minCapacity);
+        radii = Arrays.copyOf(radii, capacity);
+        materials = Arrays.copyOf(materials, capacity);
+        shapes = Arrays.copyOf(shapes, capacity);
+
+        int old = proxies.length;
+        proxies = Arrays.copyOf(proxies, capacity);
+        Arrays.fill(proxies, old, capacity, FREE);
+    }
+
+    ///Adds an object rotated angle degrees about axis and returns its id
+    public int add(Vector3fc pos, float angle, Vector3fc axis, float radius)
+    {
+        return add(TransformStore.NONE, pos, angle, axis, radius);
+    }
+
+    ///Adds an object attached to parent, pos and the rotation are relative
+    ///to it. A parent of TransformStore.NONE attaches to nothing.
+    public int add(int parent, Vector3fc pos, float angle, Vector3fc axis, float radius)
+    {
+        if(parent != TransformStore.NONE)
+            checkId(parent);
+
+        int id = transforms.create(parent);
+        if(id >= proxies.length)
+            grow(id + 1);
+
+        transforms.setPosition(id, pos.x(), pos.y(), pos.z());
+        this.axis.set(axis).normalize();
+        transforms.setRotation(id, (float)Math.toRadians(angle), this.axis.x, this.axis.y, this.axis.z);
+        radii[id] = radius;
+        materials[id] = 0;
+        shapes[id] = 0;
+
+        //Children get their real place in the index at the next update
+        proxies[id] = tree.insert(id,
+                pos.x() - radius, pos.y() - radius, pos.z() - radius,
+                pos.x() + radius, pos.y() + radius, pos.z() + radius);
+        return id;
+    }
+
+    ///Removes an object, objects attached to it have to be removed first
+    public void remove(int id)
+    {
+        checkId(id);
+
+        transforms.destroy(id);
+        tree.remove(proxies[id]);
+        proxies[id] = FREE;
+    }
+
+    ///Moves the object to x, y, z relative to its parent
+    public void move(int id, float x, float y, float z)
+    {
+        checkId(id);
+        transforms.setPosition(id, x, y, z);
+    }
+
+    ///Changes the bounding sphere, for when the shape of an object changes
+    public void setRadius(int id, float radius)
+    {
+        checkId(id);
+
+        radii[id] = radius;
+        moveProxy(id);
+    }
+
+    public float getRadius(int id)
+    {
+        return radii[id];
+    }
+
+    ///Rotates the object angle degrees about axis x, y, z relative to its parent
+    public void setRotation(int id, float angle, float x, float y, float z)
+    {
+        checkId(id);
+
+        axis.set(x, y, z).normalize();
+        transforms.setRotation(id, (float)Math.toRadians(angle), axis.x, axis.y, axis.z);
+    }
+
+    public void setMaterial(int id, int material)
+    {
+        checkId(id);
+        materials[id] = material;
+    }
+
+    public int getMaterial(int id)
+    {
+        return materials[id];
+    }
+
+    public void setShape(int id, int shape)
+    {
+        checkId(id);
+        shapes[id] = shape;
+    }
+
+    public int getShape(int id)
+    {
+        return shapes[id];
+    }
+
+    ///Position in the world as of the last updateTransforms()
+    public Vector3f getPosition(int id, Vector3f dest)
+    {
+        return transforms.getWorldPosition(id, dest);
+    }
+
+    ///Copies the world matrix of an object into dest, as of the last updateTransforms()
+    public Matrix4f getModel(int id, Matrix4f dest)
+    {
+        return transforms.getWorld(id, dest);
+    }
+
+    ///Copies the world matrix of an object into dest at offset
+    public void getModel(int id, float[] dest, int offset)
+    {
+        transforms.getWorld(id, dest, offset);
+    }
+
+    public boolean contains(int id)
+    {
+        return id >= 0 && id < proxies.length && proxies[id] != FREE;
+    }
+
+    public int size()
+    {
+        return transforms.size();
+    }
+
+    ///Highest id handed out plus one, handy for sizing per object buffers
+    public int getIdLimit()
+    {
+        return transforms.getIdLimit();
+    }
+
+    ///Rebuilds the world matrices of everything moved since the last call
+    ///and of everything attached to it, spread over pool if not null, then
+    ///moves them in the index. Returns how many objects changed.
+    public int updateTransforms(ForkJoinPool pool)
+    {
+        int changed = transforms.update(pool);
+        IntList ids = transforms.getChanged();
+        for(int i = 0; i < ids.size(); i++)
+            moveProxy(ids.get(i));
+        return changed;
+    }
+
+    ///The transforms behind the objects, world matrices are ready to be
+    ///copied into an instance buffer from there
+    public TransformStore getTransforms()
+    {
+        return transforms;
+    }
+
+    ///Clears visible and fills it with the ids of every object that may be
+    ///inside the frustum described by viewProj
+    public void cull(Matrix4fc viewProj, IntList visible)
+    {
+        updateTransforms(null);
+        visible.clear();
+        frustum.set(viewProj, false);
+        tree.query(frustum, visible);
+    }
+
+    ///The spatial index, for callers that split the culling across threads
+    public AABBTree getIndex()
+    {
+        return tree;
+    }
+
+    public void cleanup()
+    {
+        transforms.cleanup();
+    }
+
+    private void moveProxy(int id)
+    {
+        transforms.getWorldPosition(id, world);
+        float r = radii[id];
+        tree.move(proxies[id], world.x - r, world.y - r, world.z - r, world.x + r, world.y + r, world.z + r);
+    }
+
+    private void checkId(int id)
+    {
+        if(!contains(id))
+            throw new IllegalArgumentException("No object with id: " + id);
+    }
+}
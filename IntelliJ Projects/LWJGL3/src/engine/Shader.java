@@ -0,0 +1,455 @@
+package engine;
+
+import org.joml.*;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.*;
+
+import java.nio.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL43.GL_COMPUTE_SHADER;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.*;
+
+public class Shader
+{
+    private final int shaderProgram;
+
+    private static String dir = null;
+    private static ProgramCache programCache = null;
+    private static boolean parallelCompileSet = false;
+
+    private ArrayList<UniformInfo> uniforms;
+    private HashMap<String, UniformInfo> uniformsByName;
+
+    //Scratch space for matrix uploads so they don't allocate
+    private final FloatBuffer matrixScratch = MemoryUtil.memAllocFloat(16);
+
+    ///Assumes the shader files are named shaderName.frag
+    ///and shaderName.vert for the fragment and vertex
+    ///shader sources.
+    public Shader(String shaderName)
+    {
+        this(shaderName, shaderName);
+    }
+
+    ///Allows variants to share a stage, e.g. an instanced
+    ///vertex shader paired with the regular fragment shader.
+    public Shader(String vertName, String fragName)
+    {
+        this(buildPrograms(new String[]{ vertName }, new String[]{ fragName })[0]);
+    }
+
+    private Shader(int program)
+    {
+        shaderProgram = program;
+        uniforms = new ArrayList<UniformInfo>();
+        uniformsByName = new HashMap<String, UniformInfo>();
+
+        //Hook up every uniform block this program declares
+        if(program != 0)
+            UniformBlock.bindBlocks(program);
+    }
+
+    ///Shader with no program behind it, for exercising the uniform
+    ///bookkeeping without a GL context. Add uniforms with addUniform(),
+    ///values that change are counted in GLState but go no further.
+    static Shader detached()
+    {
+        return new Shader(0);
+    }
+
+    ///Compute program from shaderName.comp, needs GL 4.3. Not cached,
+    ///compute programs are few and small.
+    public static Shader compute(String shaderName)
+    {
+        if(dir == null)
+            throw new RuntimeException("Shader directory unspecified, please specify a directory");
+
+        String source = readFile(String.format("%s/%s.comp", dir, shaderName));
+        if(source == null) throw new RuntimeException("Unable to find/open the compute shader source file");
+
+        int shader = glCreateShader(GL_COMPUTE_SHADER);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        if(glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE)
+            throw new RuntimeException("Failed to compile compute shader:\n" + glGetShaderInfoLog(shader));
+
+        int program = glCreateProgram();
+        glAttachShader(program, shader);
+        glLinkProgram(program);
+        glDeleteShader(shader);
+        if(glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE)
+            throw new RuntimeException("Failed to link the shader:\n" + glGetProgramInfoLog(program));
+
+        return new Shader(program);
+    }
+
+    ///Builds several programs at once, pairs[i] holds the vertex and the
+    ///fragment shader name of program i. Every compile and link is issued
+    ///before any result is checked, so drivers with parallel compilation
+    ///work on all of them at the same time.
+    public static Shader[] load(String[]... pairs)
+    {
+        String[] vertNames = new String[pairs.length];
+        String[] fragNames = new String[pairs.length];
+        for(int i = 0; i < pairs.length; i++)
+        {
+            vertNames[i] = pairs[i][0];
+            fragNames[i] = pairs[i][1];
+        }
+
+        int[] programs = buildPrograms(vertNames, fragNames);
+        Shader[] shaders = new Shader[programs.length];
+        for(int i = 0; i < programs.length; i++)
+            shaders[i] = new Shader(programs[i]);
+        return shaders;
+    }
+
+    private static int[] buildPrograms(String[] vertNames, String[] fragNames)
+    {
+        if(dir == null)
+            throw new RuntimeException("Shader directory unspecified, please specify a directory");
+
+        int count = vertNames.length;
+        String[] vertSources = new String[count];
+        String[] fragSources = new String[count];
+        for(int i = 0; i < count; i++)
+        {
+            vertSources[i] = readFile(String.format("%s/%s.vert", dir, vertNames[i]));
+            if(vertSources[i] == null) throw new RuntimeException("Unable to find/open the vertex shader source file");
+
+            fragSources[i] = readFile(String.format("%s/%s.frag", dir, fragNames[i]));
+            if(fragSources[i] == null) throw new RuntimeException("Unable to find/open the fragment shader source file");
+        }
+
+        int[] programs = new int[count];
+        if(programCache != null)
+        {
+            for(int i = 0; i < count; i++)
+                programs[i] = programCache.load(vertSources[i], fragSources[i]);
+        }
+
+        //Let the driver use as many compiler threads as it likes
+        if(GL.getCapabilities().GL_KHR_parallel_shader_compile && !parallelCompileSet)
+        {
+            glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+            parallelCompileSet = true;
+        }
+
+        //Issue everything that missed the cache without waiting on any of it
+        int[] vertShaders = new int[count];
+        int[] fragShaders = new int[count];
+        for(int i = 0; i < count; i++)
+        {
+            if(programs[i] != 0)
+                continue;
+
+            vertShaders[i] = glCreateShader(GL_VERTEX_SHADER);
+            glShaderSource(vertShaders[i], vertSources[i]);
+            glCompileShader(vertShaders[i]);
+
+            fragShaders[i] = glCreateShader(GL_FRAGMENT_SHADER);
+            glShaderSource(fragShaders[i], fragSources[i]);
+            glCompileShader(fragShaders[i]);
+
+            programs[i] = glCreateProgram();
+            glAttachShader(programs[i], vertShaders[i]);
+            glAttachShader(programs[i], fragShaders[i]);
+            if(programCache != null)
+                programCache.prepare(programs[i]);
+            glLinkProgram(programs[i]);
+        }
+
+        //Now collect the results, the status queries wait for each one to finish
+        for(int i = 0; i < count; i++)
+        {
+            if(vertShaders[i] == 0)
+                continue;
+
+            //Check status of shader
+            if(glGetShaderi(vertShaders[i], GL_COMPILE_STATUS) == GL_FALSE)
+                throw new RuntimeException("Failed to compile vertex shader:\n" + glGetShaderInfoLog(vertShaders[i]));
+
+            if(glGetShaderi(fragShaders[i], GL_COMPILE_STATUS) == GL_FALSE)
+                throw new RuntimeException("Failed to compile fragment shader:\n" + glGetShaderInfoLog(fragShaders[i]));
+
+            if(glGetProgrami(programs[i], GL_LINK_STATUS) == GL_FALSE)
+                throw new RuntimeException("Failed to link the shader:\n" + glGetProgramInfoLog(programs[i]));
+
+            glDeleteShader(vertShaders[i]);
+            glDeleteShader(fragShaders[i]);
+
+            if(programCache != null)
+                programCache.store(vertSources[i], fragSources[i], programs[i]);
+        }
+
+        return programs;
+    }
+
+    private static String readFile(String filePath)
+    {
+        try
+        {
+            return Files.readString(Paths.get(filePath));
+        }
+        catch(Exception e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public void use()
+    {
+        GLState.useProgram(shaderProgram);
+    }
+
+    public int getID()
+    {
+        return  shaderProgram;
+    }
+
+    public void cleanup()
+    {
+        glDeleteProgram(shaderProgram);
+        GLState.programDeleted(shaderProgram);
+        MemoryUtil.memFree(matrixScratch);
+    }
+
+    ///Registers a uniform and returns its handle, pass the handle to the
+    ///setters to skip the name lookup entirely.
+    public int initUniform(String name, int params)
+    {
+        this.use();
+        return addUniform(new UniformInfo(this, name, params, uniforms.size()));
+    }
+
+    int addUniform(UniformInfo info)
+    {
+        uniforms.add(info);
+        uniformsByName.put(info.getName(), info);
+        return info.getSlot();
+    }
+
+    ///Returns the handle of a uniform previously registered with initUniform
+    public int getUniform(String name)
+    {
+        UniformInfo found = uniformsByName.get(name);
+        if(found == null)
+            throw new RuntimeException("No Uniform named: " + name);
+        return found.getSlot();
+    }
+
+    //Handle based setters, values matching the last upload are dropped
+
+    public void setUniformInt(int handle, int i)
+    {
+        UniformInfo info = checkedUniform(handle, 1);
+        if(!info.update(0, i))
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        glUniform1i(info.getLocation(), i);
+    }
+
+    public void setUniformInt(int handle, int... i)
+    {
+        UniformInfo info = checkedUniform(handle, i.length);
+        boolean changed = false;
+        for(int c = 0; c < i.length; c++)
+            changed |= info.update(c, i[c]);
+        if(!changed)
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        switch(i.length) {
+            case 1 -> glUniform1i(info.getLocation(), i[0]);
+            case 2 -> glUniform2i(info.getLocation(), i[0], i[1]);
+            case 3 -> glUniform3i(info.getLocation(), i[0], i[1], i[2]);
+            case 4 -> glUniform4i(info.getLocation(), i[0], i[1], i[2], i[3]);
+            default -> throw new RuntimeException("Invalid number of arguments min: 1, max: 4, given: " + i.length);
+        }
+    }
+
+    public void setUniformFloat(int handle, float f)
+    {
+        UniformInfo info = checkedUniform(handle, 1);
+        if(!info.update(0, Float.floatToRawIntBits(f)))
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        glUniform1f(info.getLocation(), f);
+    }
+
+    ///Fixed arity version for per draw vec2 uploads, skips the varargs array
+    public void setUniformFloat(int handle, float x, float y)
+    {
+        UniformInfo info = checkedUniform(handle, 2);
+        boolean changed = info.update(0, Float.floatToRawIntBits(x));
+        changed |= info.update(1, Float.floatToRawIntBits(y));
+        if(!changed)
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        glUniform2f(info.getLocation(), x, y);
+    }
+
+    ///Fixed arity version for per draw vec3 uploads, skips the varargs array
+    public void setUniformFloat(int handle, float x, float y, float z)
+    {
+        UniformInfo info = checkedUniform(handle, 3);
+        boolean changed = info.update(0, Float.floatToRawIntBits(x));
+        changed |= info.update(1, Float.floatToRawIntBits(y));
+        changed |= info.update(2, Float.floatToRawIntBits(z));
+        if(!changed)
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        glUniform3f(info.getLocation(), x, y, z);
+    }
+
+    public void setUniformFloat(int handle, float... f)
+    {
+        UniformInfo info = checkedUniform(handle, f.length);
+        boolean changed = false;
+        for(int c = 0; c < f.length; c++)
+            changed |= info.update(c, Float.floatToRawIntBits(f[c]));
+        if(!changed)
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        switch(f.length) {
+            case 1 -> glUniform1f(info.getLocation(), f[0]);
+            case 2 -> glUniform2f(info.getLocation(), f[0], f[1]);
+            case 3 -> glUniform3f(info.getLocation(), f[0], f[1], f[2]);
+            case 4 -> glUniform4f(info.getLocation(), f[0], f[1], f[2], f[3]);
+            default -> throw new RuntimeException("Invalid number of arguments min: 1, max: 4, given: " + f.length);
+        }
+    }
+
+    public void setUniformMatrix2f(int handle, Matrix2fc m)
+    {
+        m.get(0, matrixScratch);
+        setUniformMatrix(handle, 4);
+    }
+
+    public void setUniformMatrix3f(int handle, Matrix3fc m)
+    {
+        m.get(0, matrixScratch);
+        setUniformMatrix(handle, 9);
+    }
+
+    public void setUniformMatrix4f(int handle, Matrix4fc m)
+    {
+        m.get(0, matrixScratch);
+        setUniformMatrix(handle, 16);
+    }
+
+    //Uploads the first count floats of matrixScratch
+    private void setUniformMatrix(int handle, int count)
+    {
+        UniformInfo info = checkedUniform(handle, count);
+        boolean changed = false;
+        for(int c = 0; c < count; c++)
+            changed |= info.update(c, Float.floatToRawIntBits(matrixScratch.get(c)));
+        if(!changed)
+            return;
+
+        GLState.uniformUploaded();
+        if(shaderProgram == 0)
+            return;
+        this.use();
+        matrixScratch.limit(count);
+        switch(count) {
+            case 4  -> glUniformMatrix2fv(info.getLocation(), false, matrixScratch);
+            case 9  -> glUniformMatrix3fv(info.getLocation(), false, matrixScratch);
+            case 16 -> glUniformMatrix4fv(info.getLocation(), false, matrixScratch);
+            default -> throw new RuntimeException("Invalid number of arguments possible values: 4 9 16, given: " + count);
+        }
+        matrixScratch.clear();
+    }
+
+    private UniformInfo checkedUniform(int handle, int params)
+    {
+        if(handle < 0 || handle >= uniforms.size())
+            throw new RuntimeException("Invalid Uniform handle: " + handle);
+
+        UniformInfo info = uniforms.get(handle);
+        if(info.getParamCount() != params)
+            throw new RuntimeException(String.format("Failed to set Uniform, Uniform %s expects %d args, was given %d", info.getName(), info.getParamCount(), params));
+        return info;
+    }
+
+    //Name based setters, thin wrappers that resolve the handle on every call
+
+    public void setUniformInt(String name, int... i)
+    {
+        UniformInfo found = uniformsByName.get(name);
+        if(found == null)
+            throw new RuntimeException(String.format("Failed to set Uniform, no Uniform accepting %d int(s) named: %s", i.length, name));
+        setUniformInt(found.getSlot(), i);
+    }
+
+    public void setUniformFloat(String name, float... f)
+    {
+        UniformInfo found = uniformsByName.get(name);
+        if(found == null)
+            throw new RuntimeException(String.format("Failed to set Uniform, no Uniform accepting %d float(s) named: %s", f.length, name));
+        setUniformFloat(found.getSlot(), f);
+    }
+
+    public void setUniformMatrix2f(String name, Matrix2fc m)
+    {
+        setUniformMatrix2f(findMatrix(name, 4), m);
+    }
+
+    public void setUniformMatrix3f(String name, Matrix3fc m)
+    {
+        setUniformMatrix3f(findMatrix(name, 9), m);
+    }
+
+    public void setUniformMatrix4f(String name, Matrix4fc m)
+    {
+        setUniformMatrix4f(findMatrix(name, 16), m);
+    }
+
+    private int findMatrix(String name, int params)
+    {
+        UniformInfo found = uniformsByName.get(name);
+        if(found == null)
+            throw new RuntimeException(String.format("Failed to set Uniform, no Uniform accepting %d float(s) named: %s", params, name));
+        return found.getSlot();
+    }
+
+    public static void setShaderSourceDirectory(String directory)
+    {
+        dir = directory;
+    }
+
+    ///Programs built after this go through cache, null turns caching off
+    public static void setProgramCache(ProgramCache cache)
+    {
+        programCache = cache;
+    }
+}
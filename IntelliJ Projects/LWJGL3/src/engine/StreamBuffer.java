@@ -0,0 +1,233 @@
+package engine;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Ring buffer for data written fresh every frame, instance matrices and
+///uniform blocks. The buffer is split into one partition per frame in
+///flight, a frame writes only to its own partition and a fence placed at
+///the end of the frame tells when the GPU is done reading it. Writing
+///never waits on the GPU unless it has fallen FRAMES frames behind.
+///
+///With GL 4.4 or ARB_buffer_storage the buffer stays mapped for its whole
+///life, coherent, so writes go straight to memory the GPU reads. Without
+///it every write maps its range unsynchronized and unmaps it again, the
+///fences keep that safe just the same.
+///
+///Writes go through reserve() and commit():
+///
+///    long dst = stream.reserve(bytes, alignment);
+///    //...fill bytes at dst...
+///    long offset = stream.commit();   //Where they are in getBuffer()
+///
+///beginFrame() and endFrame() move every stream to the next partition
+///together. GL thread only.
+public class StreamBuffer
+{
+    ///Frames the CPU may run ahead of the GPU
+    public static final int FRAMES = 3;
+
+    //One fence per partition shared by every stream, they all advance together
+    private static final long[] fences = new long[FRAMES];
+    private static int partition = 0;
+    private static long frame = 0;
+    private static long waitNanos, lastWaitNanos;
+
+    private final int target;
+    private final boolean persistent;
+
+    private int buffer;
+    private long partitionBytes;
+    private long mapped = NULL;     //Persistent mapping of the whole buffer
+
+    private long frameUsed = -1;    //Frame the cursor belongs to
+    private long cursor;            //Bytes used of the current partition
+    private long reserved = -1;     //Offset of the open reservation, -1 if none
+
+    ///target is the binding the buffer is used through, partitionBytes
+    ///the room one frame gets at first. Writes beyond that grow the buffer.
+    public StreamBuffer(int target, long partitionBytes)
+    {
+        if(partitionBytes <= 0)
+            throw new IllegalArgumentException("Partition size must be positive, given: " + partitionBytes);
+
+        this.target = target;
+        persistent = isPersistentSupported();
+        allocate(partitionBytes);
+    }
+
+    ///True when writes go to a persistent mapping instead of mapping per write
+    public static boolean isPersistentSupported()
+    {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL44 || caps.GL_ARB_buffer_storage;
+    }
+
+    ///Waits until the GPU is done with the partition this frame writes to,
+    ///call once at the start of the frame before any reserve()
+    public static void beginFrame()
+    {
+        lastWaitNanos = waitNanos;
+        waitNanos = 0;
+
+        long fence = fences[partition];
+        if(fence == NULL)
+            return;
+
+        long start = System.nanoTime();
+        //Flush on the first try so the fence can't sit unsubmitted while we wait
+        int flags = GL_SYNC_FLUSH_COMMANDS_BIT;
+        while(true)
+        {
+            int status = glClientWaitSync(fence, flags, 1_000_000L);
+            if(status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED || status == GL_WAIT_FAILED)
+                break;
+            flags = 0;
+        }
+        waitNanos += System.nanoTime() - start;
+
+        glDeleteSync(fence);
+        fences[partition] = NULL;
+    }
+
+    ///Fences the partition of this frame and moves on to the next, call
+    ///once after the frame's last draw
+    public static void endFrame()
+    {
+        if(fences[partition] != NULL)
+            glDeleteSync(fences[partition]);
+        fences[partition] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        partition = (partition + 1) % FRAMES;
+        frame++;
+    }
+
+    ///Time the last frame spent waiting for the GPU to release a partition
+    public static long getWaitNanos()
+    {
+        return lastWaitNanos;
+    }
+
+    ///Returns the address to write bytes at, aligned within the buffer to
+    ///alignment which has to be a power of two. Commit before the next reserve.
+    public long reserve(long bytes, int alignment)
+    {
+        if(reserved >= 0)
+            throw new IllegalStateException("Previous reservation not committed");
+
+        if(frameUsed != frame)
+        {
+            frameUsed = frame;
+            cursor = 0;
+        }
+
+        long start = (cursor + alignment - 1) & -(long)alignment;
+        if(start + bytes > partitionBytes)
+        {
+            //Draws already issued keep the old buffer alive until they are done
+            grow(Math.max(partitionBytes * 2, bytes + alignment));
+            start = 0;
+        }
+
+        reserved = partition * partitionBytes + start;
+        cursor = start + bytes;
+
+        if(persistent)
+            return mapped + reserved;
+
+        //Nothing the GPU may still read lives in this range, the fences see to that
+        GLState.bindBuffer(target, buffer);
+        long address = nglMapBufferRange(target, reserved, bytes,
+                GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT);
+        if(address == NULL)
+            throw new IllegalStateException("Unable to map stream buffer");
+        return address;
+    }
+
+    ///Ends the open reservation, returns its offset in getBuffer()
+    public long commit()
+    {
+        if(reserved < 0)
+            throw new IllegalStateException("Nothing reserved");
+
+        if(!persistent)
+        {
+            GLState.bindBuffer(target, buffer);
+            glUnmapBuffer(target);
+        }
+
+        long offset = reserved;
+        reserved = -1;
+        return offset;
+    }
+
+    ///Reserves, copies bytes from src and commits, returns the offset
+    public long write(long src, long bytes, int alignment)
+    {
+        memCopy(src, reserve(bytes, alignment), bytes);
+        return commit();
+    }
+
+    ///Current buffer, changes when the stream grows so bind it per use
+    public int getBuffer()
+    {
+        return buffer;
+    }
+
+    public long getPartitionBytes()
+    {
+        return partitionBytes;
+    }
+
+    public boolean isPersistent()
+    {
+        return persistent;
+    }
+
+    public void cleanup()
+    {
+        release();
+    }
+
+    private void allocate(long partitionBytes)
+    {
+        this.partitionBytes = partitionBytes;
+        long size = partitionBytes * FRAMES;
+
+        buffer = glGenBuffers();
+        GLState.bindBuffer(target, buffer);
+        if(persistent)
+        {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(target, size, flags);
+            mapped = nglMapBufferRange(target, 0, size, flags);
+            if(mapped == NULL)
+                throw new IllegalStateException("Unable to map stream buffer persistently");
+        }
+        else
+            glBufferData(target, size, GL_STREAM_DRAW);
+    }
+
+    private void grow(long newPartitionBytes)
+    {
+        release();
+        allocate(newPartitionBytes);
+    }
+
+    private void release()
+    {
+        if(mapped != NULL)
+        {
+            GLState.bindBuffer(target, buffer);
+            glUnmapBuffer(target);
+            mapped = NULL;
+        }
+        glDeleteBuffers(buffer);
+        GLState.bufferDeleted(buffer);
+    }
+}
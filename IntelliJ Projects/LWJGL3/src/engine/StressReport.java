@@ -0,0 +1,161 @@
+package engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+///Per frame measurements of a stress run and the summary written at its
+///end. Unlike Timer, which keeps histograms over rolling windows, every
+///frame of the run is kept so percentiles are exact, a run is only as long
+///as its camera path.
+///
+///write() appends one CSV row per run, a sweep pointing every run at the
+///same file ends up with one table. Columns a mode can't measure, CPU
+///preparation and visible counts when the GPU culls for one, are left
+///empty rather than written as 0 so they don't pass for real numbers.
+public class StressReport
+{
+    private static final String HEADER = "scene,objects,seed,mode,shape,lod,workers,frames,"
+            + "frame_mean_ms,frame_p50_ms,frame_p95_ms,frame_p99_ms,frame_p999_ms,frame_max_ms,"
+            + "prep_mean_ms,prep_p99_ms,update_mean_ms,update_p99_ms,gpu_mean_ms,gpu_p99_ms,gpu_frames,"
+            + "draw_calls_mean,triangles_mean,visible_mean";
+
+    ///Passed for anything a frame has no measurement of
+    public static final int NOT_MEASURED = -1;
+
+    private long[] frameNanos = new long[1024];
+    private long[] prepNanos = new long[1024];
+    private long[] updateNanos = new long[1024];
+    private long[] gpuNanos = new long[1024];
+    private int frames = 0, prepFrames = 0, gpuFrames = 0;
+    private long drawCalls, triangles, visible;
+    private int triangleFrames = 0, visibleFrames = 0;
+
+    ///Records one frame, any of prepNanos, gpuNanos, triangles and visible
+    ///may be NOT_MEASURED
+    public void add(long frameNanos, long prepNanos, long updateNanos, long gpuNanos, int drawCalls, long triangles, int visible)
+    {
+        if(frames == this.frameNanos.length)
+        {
+            int capacity = frames * 2;
+            this.frameNanos = Arrays.copyOf(this.frameNanos, capacity);
+            this.updateNanos = Arrays.copyOf(this.updateNanos, capacity);
+        }
+        this.frameNanos[frames] = frameNanos;
+        this.updateNanos[frames] = updateNanos;
+        frames++;
+
+        if(prepNanos >= 0)
+        {
+            if(prepFrames == this.prepNanos.length)
+                this.prepNanos = Arrays.copyOf(this.prepNanos, prepFrames * 2);
+            this.prepNanos[prepFrames++] = prepNanos;
+        }
+        if(gpuNanos >= 0)
+        {
+            if(gpuFrames == this.gpuNanos.length)
+                this.gpuNanos = Arrays.copyOf(this.gpuNanos, gpuFrames * 2);
+            this.gpuNanos[gpuFrames++] = gpuNanos;
+        }
+
+        this.drawCalls += drawCalls;
+        if(triangles >= 0)
+        {
+            this.triangles += triangles;
+            triangleFrames++;
+        }
+        if(visible >= 0)
+        {
+            this.visible += visible;
+            visibleFrames++;
+        }
+    }
+
+    public int getFrames()
+    {
+        return frames;
+    }
+
+    ///One line for the console
+    public String describe()
+    {
+        if(frames == 0)
+            return "No frames recorded";
+
+        long[] frame = sorted(frameNanos, frames);
+        return String.format(Locale.ROOT, "%d frames, frame p50 %.2f p99 %.2f max %.2f ms | prep %s | update %.3f ms | GPU %s | %.0f draw calls, %s triangles, %s visible",
+                frames, percentile(frame, 50.0), percentile(frame, 99.0), percentile(frame, 100.0),
+                prepFrames > 0 ? String.format(Locale.ROOT, "%.3f ms", mean(prepNanos, prepFrames)) : "n/a",
+                mean(updateNanos, frames),
+                gpuFrames > 0 ? String.format(Locale.ROOT, "%.3f ms", mean(gpuNanos, gpuFrames)) : "n/a",
+                (double)drawCalls / frames,
+                triangleFrames > 0 ? String.format(Locale.ROOT, "%.0f", (double)triangles / triangleFrames) : "n/a",
+                visibleFrames > 0 ? String.format(Locale.ROOT, "%.0f", (double)visible / visibleFrames) : "n/a");
+    }
+
+    ///Appends the summary to file as a CSV row, writing the header first if
+    ///the file is new. The other arguments label the row, mode says how the
+    ///frames were drawn, shape what the objects were and lod whether they
+    ///had levels of detail, workers may be NOT_MEASURED for modes without any.
+    public void write(Path file, String scene, int objects, long seed, String mode, String shape, boolean lod, int workers) throws IOException
+    {
+        boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))
+        {
+            if(fresh)
+                out.println(HEADER);
+
+            long[] frame = sorted(frameNanos, frames);
+            long[] prep = sorted(prepNanos, prepFrames);
+            long[] update = sorted(updateNanos, frames);
+            long[] gpu = sorted(gpuNanos, gpuFrames);
+
+            out.println(String.format(Locale.ROOT, "%s,%d,%d,%s,%s,%s,%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%s,%s,%.4f,%.4f,%s,%s,%d,%.1f,%s,%s",
+                    scene, objects, seed, mode, shape, lod ? "on" : "off", workers >= 0 ? Integer.toString(workers) : "", frames,
+                    mean(frameNanos, frames), percentile(frame, 50.0), percentile(frame, 95.0), percentile(frame, 99.0),
+                    percentile(frame, 99.9), percentile(frame, 100.0),
+                    cell(mean(prepNanos, prepFrames), prepFrames), cell(percentile(prep, 99.0), prepFrames),
+                    mean(updateNanos, frames), percentile(update, 99.0),
+                    cell(mean(gpuNanos, gpuFrames), gpuFrames), cell(percentile(gpu, 99.0), gpuFrames), gpuFrames,
+                    frames > 0 ? (double)drawCalls / frames : 0.0,
+                    triangleFrames > 0 ? String.format(Locale.ROOT, "%.1f", (double)triangles / triangleFrames) : "",
+                    visibleFrames > 0 ? String.format(Locale.ROOT, "%.1f", (double)visible / visibleFrames) : ""));
+        }
+    }
+
+    //Empty when nothing was measured
+    private static String cell(double value, int count)
+    {
+        return count > 0 ? String.format(Locale.ROOT, "%.4f", value) : "";
+    }
+
+    private static long[] sorted(long[] values, int count)
+    {
+        long[] copy = Arrays.copyOf(values, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    //Nearest rank, in milliseconds
+    private static double percentile(long[] sorted, double p)
+    {
+        if(sorted.length == 0)
+            return 0.0;
+        int rank = (int)Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1] / 1.0e6;
+    }
+
+    private static double mean(long[] values, int count)
+    {
+        if(count == 0)
+            return 0.0;
+        long sum = 0;
+        for(int i = 0; i < count; i++)
+            sum += values[i];
+        return (double)sum / count / 1.0e6;
+    }
+}
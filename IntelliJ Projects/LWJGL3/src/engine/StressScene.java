@@ -0,0 +1,209 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+import java.util.Random;
+
+///Procedural scenes for load testing, the same layout, count and seed
+///always produce the same scene. Every layout fills a volume of the same
+///size whatever the count, so a camera path recorded in one run sees
+///more objects, not different ones, as the count goes up. Objects are
+///cubes unless the run imports models, then they cycle through those and
+///leave the cube out so every object is a shape with levels of detail.
+///
+///    GRID       cubes evenly spaced through the whole volume
+///    CITY       towers of stacked cubes in districts on the ground, dense
+///               in the middle of each district and thinning out
+///    HIERARCHY  chains of objects each parented to the one before, every
+///               link turns relative to its parent so the scene has to
+///               rebuild every world matrix each frame, a level at a time
+public class StressScene
+{
+    public enum Layout
+    {
+        GRID, CITY, HIERARCHY;
+
+        public static Layout parse(String name)
+        {
+            for(Layout layout : values())
+            {
+                if(layout.name().equalsIgnoreCase(name))
+                    return layout;
+            }
+            throw new IllegalArgumentException("Unknown scene layout: " + name + ", expected grid, city or hierarchy");
+        }
+    }
+
+    ///Half the width of the volume every layout fills
+    public static final float EXTENT = 100.0f;
+
+    private static final float RADIUS = (float)Math.sqrt(3.0);
+    //Cube edge plus a gap, what the city stacks and the chains step by
+    private static final float SPACING = 2.5f;
+    private static final int CITY_BLOCK = 2000;     //Objects per district
+    private static final Vector3fc Y_AXIS = new Vector3f(0.0f, 1.0f, 0.0f);
+    private static final Vector3fc Z_AXIS = new Vector3f(0.0f, 0.0f, 1.0f);
+
+    private final Layout layout;
+    private final int count;
+    private final long seed;
+    private final int shapes;
+
+    //Hierarchy only
+    private final int depth;
+    private int[] links;            //Scene ids of every link
+    private float[] spin;           //Degrees per second each link turns by
+
+    private StressScene(Layout layout, int count, long seed, int depth, int shapes)
+    {
+        this.layout = layout;
+        this.count = count;
+        this.seed = seed;
+        this.depth = depth;
+        this.shapes = shapes;
+    }
+
+    ///Adds count objects laid out as layout to scene, depth is the length
+    ///of each chain in the hierarchy layout. shapes is the number of
+    ///imported models, objects take shapes 1 to shapes in turn, or the cube
+    ///when there are none.
+    public static StressScene populate(Scene scene, Layout layout, int count, long seed, int depth, int shapes)
+    {
+        if(count < 1)
+            throw new IllegalArgumentException("Object count must be at least 1, given: " + count);
+        if(depth < 1)
+            throw new IllegalArgumentException("Hierarchy depth must be at least 1, given: " + depth);
+        if(shapes < 0)
+            throw new IllegalArgumentException("Shape count can't be negative, given: " + shapes);
+
+        StressScene stress = new StressScene(layout, count, seed, depth, shapes);
+        Random rng = new Random(seed);
+        switch(layout) {
+            case GRID      -> stress.grid(scene);
+            case CITY      -> stress.city(scene, rng);
+            case HIERARCHY -> stress.hierarchy(scene, rng);
+        }
+        if(shapes > 0)
+        {
+            for(int id = 0; id < scene.getIdLimit(); id++)
+                scene.setShape(id, 1 + id % shapes);
+        }
+        return stress;
+    }
+
+    public Layout getLayout()
+    {
+        return layout;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    ///Number of models the objects cycle through, 0 for cubes
+    public int getShapeCount()
+    {
+        return shapes;
+    }
+
+    ///True when update() has anything to do each frame
+    public boolean isAnimated()
+    {
+        return layout == Layout.HIERARCHY;
+    }
+
+    ///Poses the scene at time seconds. Only the hierarchy moves, every link
+    ///gets a new local rotation and the scene works out where that puts
+    ///everything further down the chain on its next transform update.
+    public void update(Scene scene, float time)
+    {
+        if(layout != Layout.HIERARCHY)
+            return;
+
+        //Each link turns about its own local z, carrying the rest of the
+        //chain hanging SPACING along its y axis with it
+        for(int i = 0; i < links.length; i++)
+            scene.setRotation(links[i], spin[i] * time, 0.0f, 0.0f, 1.0f);
+    }
+
+    private void grid(Scene scene)
+    {
+        int side = (int)Math.ceil(Math.cbrt(count));
+        float step = side > 1 ? 2.0f * EXTENT / (side - 1) : 0.0f;
+        Vector3f pos = new Vector3f();
+        for(int i = 0; i < count; i++)
+        {
+            int x = i % side, y = (i / side) % side, z = i / (side * side);
+            pos.set(x * step - EXTENT, y * step - EXTENT, z * step - EXTENT);
+            scene.add(pos, 0.0f, Y_AXIS, RADIUS);
+        }
+    }
+
+    //Towers rise on a ground grid, districts pick their centre at random
+    //and build taller closer to it
+    private void city(Scene scene, Random rng)
+    {
+        int districts = Math.max(1, count / CITY_BLOCK);
+        float[] centres = new float[districts * 2];
+        for(int d = 0; d < districts; d++)
+        {
+            centres[d * 2]     = (rng.nextFloat() * 2.0f - 1.0f) * EXTENT * 0.8f;
+            centres[d * 2 + 1] = (rng.nextFloat() * 2.0f - 1.0f) * EXTENT * 0.8f;
+        }
+
+        float spread = EXTENT / (float)Math.sqrt(districts) * 0.5f;
+        Vector3f pos = new Vector3f();
+        int added = 0;
+        while(added < count)
+        {
+            int d = rng.nextInt(districts);
+            float gx = (float)rng.nextGaussian(), gz = (float)rng.nextGaussian();
+            float x = centres[d * 2] + gx * spread;
+            float z = centres[d * 2 + 1] + gz * spread;
+            x = Math.round(x / SPACING) * SPACING;
+            z = Math.round(z / SPACING) * SPACING;
+
+            //Up to 40 storeys in the middle, a handful at the edges
+            float closeness = (float)Math.exp(-0.5 * (gx * gx + gz * gz));
+            int storeys = 1 + (int)(rng.nextFloat() * 40.0f * closeness);
+            for(int s = 0; s < storeys && added < count; s++, added++)
+            {
+                pos.set(x, s * SPACING - EXTENT * 0.5f, z);
+                scene.add(pos, 0.0f, Y_AXIS, RADIUS);
+            }
+        }
+    }
+
+    private void hierarchy(Scene scene, Random rng)
+    {
+        int chains = (count + depth - 1) / depth;
+        links = new int[count];
+        spin = new float[count];
+
+        Vector3f root = new Vector3f();
+        Vector3f step = new Vector3f(0.0f, SPACING, 0.0f);
+        int i = 0;
+        for(int chain = 0; chain < chains; chain++)
+        {
+            root.set((rng.nextFloat() * 2.0f - 1.0f) * EXTENT,
+                     (rng.nextFloat() * 2.0f - 1.0f) * EXTENT,
+                     (rng.nextFloat() * 2.0f - 1.0f) * EXTENT);
+
+            //The root sits in the scene, every link after it is relative
+            int parent = TransformStore.NONE;
+            for(int link = 0; link < depth && i < count; link++, i++)
+            {
+                parent = scene.add(parent, link == 0 ? root : step, 0.0f, Z_AXIS, RADIUS);
+                links[i] = parent;
+                spin[i] = (rng.nextFloat() * 2.0f - 1.0f) * 45.0f;
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package engine;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.stb.*;
+import org.lwjgl.system.*;
+
+import java.nio.*;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL13.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.system.MemoryStack.*;
+
+
+public class Texture implements TextureBinding
+{
+    private static String dir = null;
+
+    private final int id;
+
+    //Size of level 0, 1x1 while a placeholder
+    private int width = 1, height = 1;
+    private long byteSize = 4;
+    private volatile boolean resident;
+    private volatile boolean failed = false;
+    private boolean deleted = false;
+
+    private final TextureSampler sampler;
+
+    public Texture(String file)
+    {
+        sampler = TextureSampler.DEFAULT;
+        String texPath = resolve(file);
+
+        try(MemoryStack stack = stackPush())
+        {
+            IntBuffer w = stack.mallocInt(1);
+            IntBuffer h = stack.mallocInt(1);
+            IntBuffer n = stack.mallocInt(1);
+
+            STBImage.stbi_set_flip_vertically_on_load(true);
+            ByteBuffer data = STBImage.stbi_load(texPath, w, h, n, 0);
+
+            if(data == null)
+                throw new RuntimeException("Unable to find/open: " + texPath);
+
+            id = glGenTextures();
+            GLState.bindTexture(GL_TEXTURE_2D, id);
+
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+
+            //The internal format follows the image, PNGs keep their alpha
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+            glTexImage2D(GL_TEXTURE_2D, 0, internalFormatOf(n.get(0)), w.get(0), h.get(0), 0, formatOf(n.get(0)), GL_UNSIGNED_BYTE, data);
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+
+            glGenerateMipmap(GL_TEXTURE_2D);
+
+            STBImage.stbi_image_free(data);
+            markResident(w.get(0), h.get(0), n.get(0), true);
+        }
+    }
+
+    ///A 1x1 white placeholder, TextureLoader swaps the real image into the
+    ///same texture object once it has been uploaded so handles stay valid
+    Texture(TextureSampler sampler)
+    {
+        this.sampler = sampler;
+        id = glGenTextures();
+        GLState.bindTexture(GL_TEXTURE_2D, id);
+
+        //No mipmaps yet, a mipmapped min filter would leave the placeholder incomplete
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, sampler.wrapS());
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, sampler.wrapT());
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, sampler.usesMipmaps() ? GL_LINEAR : sampler.minFilter());
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, sampler.magFilter());
+
+        try(MemoryStack stack = stackPush())
+        {
+            ByteBuffer white = stack.bytes((byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF);
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, 1, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, white);
+        }
+    }
+
+    private Texture(int id, TextureSampler sampler)
+    {
+        this.id = id;
+        this.sampler = sampler;
+    }
+
+    ///Texture with no GL object behind it, for exercising the bookkeeping
+    ///of handles without a GL context. Deleting it touches no GL, binding
+    ///it reaches the GL.
+    static Texture detached(TextureSampler sampler)
+    {
+        return new Texture(0, sampler);
+    }
+
+    ///Uploads an image already in memory, mipmaps are built when the
+    ///sampler wants them
+    public Texture(TextureDecoder.Image image, TextureSampler sampler)
+    {
+        this.sampler = sampler;
+        id = glGenTextures();
+        GLState.bindTexture(GL_TEXTURE_2D, id);
+        sampler.apply(GL_TEXTURE_2D);
+
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexImage2D(GL_TEXTURE_2D, 0, internalFormatOf(image.channels), image.width, image.height, 0,
+                formatOf(image.channels), GL_UNSIGNED_BYTE, image.getPixels());
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+
+        if(sampler.usesMipmaps())
+            glGenerateMipmap(GL_TEXTURE_2D);
+        markResident(image.width, image.height, image.channels, sampler.usesMipmaps());
+    }
+
+    ///Uploads a baked texture straight from its mapped file, every level
+    ///is already in the format GL stores so nothing is decoded or converted
+    public Texture(TextureContainer container, TextureSampler sampler)
+    {
+        if(container.internalFormat == GL_COMPRESSED_RGB_S3TC_DXT1_EXT || container.internalFormat == GL_COMPRESSED_RGBA_S3TC_DXT5_EXT)
+        {
+            if(!GL.getCapabilities().GL_EXT_texture_compression_s3tc)
+                throw new RuntimeException("S3TC textures are not supported here, bake without --compress");
+        }
+
+        this.sampler = sampler;
+        id = glGenTextures();
+        GLState.bindTexture(GL_TEXTURE_2D, id);
+
+        sampler.apply(GL_TEXTURE_2D);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, container.getLevels() - 1);
+
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        for(int level = 0; level < container.getLevels(); level++)
+        {
+            int w = container.getLevelWidth(level), h = container.getLevelHeight(level);
+            if(container.isCompressed())
+                glCompressedTexImage2D(GL_TEXTURE_2D, level, container.internalFormat, w, h, 0, container.getLevel(level));
+            else
+                glTexImage2D(GL_TEXTURE_2D, level, container.internalFormat, w, h, 0, container.format, container.type, container.getLevel(level));
+        }
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+
+        width = container.width;
+        height = container.height;
+        byteSize = container.getByteSize();
+        resident = true;
+    }
+
+    //Called by TextureLoader once every level is in place
+    void markResident(int width, int height, int bytesPerPixel, boolean mipmapped)
+    {
+        this.width = width;
+        this.height = height;
+        long base = (long)width * height * bytesPerPixel;
+        byteSize = mipmapped ? base * 4 / 3 : base;    //A full mip chain adds about a third
+        resident = true;
+    }
+
+    ///Estimated GPU memory
+    public long getByteSize()
+    {
+        return byteSize;
+    }
+
+    public TextureSampler getSampler()
+    {
+        return sampler;
+    }
+
+    ///Frees the texture object, binding it afterwards is an error
+    public void delete()
+    {
+        if(deleted)
+            return;
+
+        if(id != 0)
+            glDeleteTextures(id);
+        GLState.textureDeleted(id);
+        deleted = true;
+        resident = false;
+    }
+
+    public boolean isDeleted()
+    {
+        return deleted;
+    }
+
+    ///False while the placeholder is still showing
+    public boolean isResident()
+    {
+        return resident;
+    }
+
+    //Called by TextureLoader when the file couldn't be decoded
+    void markFailed()
+    {
+        failed = true;
+    }
+
+    ///The load gave up, the placeholder will never be replaced
+    public boolean isFailed()
+    {
+        return failed;
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public void bind()
+    {
+        GLState.bindTexture(GL_TEXTURE_2D, id);
+    }
+
+    @Override
+    public void bind(int unit)
+    {
+        GLState.bindTexture(unit, GL_TEXTURE_2D, id);
+    }
+
+    public static void setActive(int i)
+    {
+        GLState.activeTexture(i);
+    }
+
+    public static void setTextureDirectory(String directory)
+    {
+        dir = directory;
+    }
+
+    ///Full path of a file in the texture directory
+    static String resolve(String file)
+    {
+        if(dir == null)
+            throw new RuntimeException("Texture base directory unspecified, please specify what folder holds all textures");
+
+        return String.format("%s/%s", dir, file);
+    }
+
+    ///Pixel transfer format for an image with the given channel count
+    static int formatOf(int channels)
+    {
+        return switch(channels) {
+            case 1 -> GL_RED;
+            case 2 -> GL_RG;
+            case 3 -> GL_RGB;
+            case 4 -> GL_RGBA;
+            default -> throw new IllegalArgumentException("Unsupported channel count: " + channels);
+        };
+    }
+
+    ///Sized internal format matching formatOf
+    static int internalFormatOf(int channels)
+    {
+        return switch(channels) {
+            case 1 -> GL_R8;
+            case 2 -> GL_RG8;
+            case 3 -> GL_RGB8;
+            case 4 -> GL_RGBA8;
+            default -> throw new IllegalArgumentException("Unsupported channel count: " + channels);
+        };
+    }
+}
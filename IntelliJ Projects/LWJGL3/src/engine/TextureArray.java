@@ -0,0 +1,83 @@
+package engine;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL30.*;
+
+///A GL_TEXTURE_2D_ARRAY of same sized RGBA8 layers. Shaders pick a layer
+///with the third texture coordinate, so everything in the array can be
+///drawn without binding anything in between.
+public class TextureArray implements TextureBinding
+{
+    private final int id;
+    public final int width, height, layers;
+    private boolean deleted = false;
+
+    public TextureArray(int width, int height, int layers, TextureSampler sampler)
+    {
+        this.width = width;
+        this.height = height;
+        this.layers = layers;
+
+        int maxLayers = glGetInteger(GL_MAX_ARRAY_TEXTURE_LAYERS);
+        if(layers > maxLayers)
+            throw new IllegalArgumentException("Texture arrays are limited to " + maxLayers + " layers here, asked for " + layers);
+
+        id = glGenTextures();
+        GLState.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        sampler.apply(GL_TEXTURE_2D_ARRAY);
+
+        int levels = sampler.usesMipmaps() ? 32 - Integer.numberOfLeadingZeros(Math.max(width, height)) : 1;
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, levels - 1);
+        for(int level = 0; level < levels; level++)
+            glTexImage3D(GL_TEXTURE_2D_ARRAY, level, GL_RGBA8, Math.max(1, width >> level), Math.max(1, height >> level), layers,
+                    0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer)null);
+    }
+
+    ///Copies image into layer with its bottom left corner at x, y. Images
+    ///with fewer channels are expanded by GL, missing alpha becomes 1.
+    public void upload(int layer, int x, int y, TextureDecoder.Image image)
+    {
+        GLState.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, x, y, layer, image.width, image.height, 1,
+                Texture.formatOf(image.channels), GL_UNSIGNED_BYTE, image.getPixels());
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
+    ///Rebuilds every mip level from level 0, once all layers are uploaded
+    public void generateMipmaps()
+    {
+        GLState.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+    }
+
+    @Override
+    public void bind(int unit)
+    {
+        GLState.bindTexture(unit, GL_TEXTURE_2D_ARRAY, id);
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    ///Estimated GPU memory, a full mip chain adds about a third
+    public long getByteSize()
+    {
+        return (long)width * height * layers * 4 * 4 / 3;
+    }
+
+    public void delete()
+    {
+        if(deleted)
+            return;
+
+        glDeleteTextures(id);
+        GLState.textureDeleted(id);
+        deleted = true;
+    }
+}
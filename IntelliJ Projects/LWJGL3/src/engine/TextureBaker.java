@@ -0,0 +1,195 @@
+package engine;
+
+import org.lwjgl.stb.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Offline tool that turns the jpg and png files of a directory into baked
+///TextureContainer files next to them, with the whole mip chain built ahead
+///of time. With --compress the levels are block compressed: BC1 for RGB,
+///BC3 for RGBA, BC4 and BC5 for one and two channel images. BC7 would beat
+///BC1/BC3 on quality but stb has no encoder for it.
+///
+///    TextureBaker [--compress] <directory>
+public class TextureBaker
+{
+    public static void main(String[] args) throws IOException
+    {
+        boolean compress = false;
+        Path dir = null;
+        for(String arg : args)
+        {
+            if(arg.equals("--compress")) compress = true;
+            else if(dir == null)         dir = Paths.get(arg);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+        if(dir == null)
+            throw new IllegalArgumentException("Usage: TextureBaker [--compress] <directory>");
+
+        ArrayList<Path> sources = new ArrayList<Path>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.{jpg,jpeg,png,JPG,JPEG,PNG}"))
+        {
+            for(Path p : stream)
+                sources.add(p);
+        }
+
+        for(Path source : sources)
+        {
+            Path dest = bakedPath(source);
+            long start = System.nanoTime();
+            bake(source, dest, compress);
+            System.out.printf("%s -> %s, %d bytes in %.1f ms%n", source.getFileName(), dest.getFileName(),
+                    Files.size(dest), (System.nanoTime() - start) / 1.0e6);
+        }
+    }
+
+    ///Where the baked version of source lives, next to it with the extension swapped
+    public static Path bakedPath(Path source)
+    {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return source.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + TextureContainer.EXTENSION);
+    }
+
+    public static void bake(Path source, Path dest, boolean compress) throws IOException
+    {
+        TextureDecoder.Image image = TextureDecoder.decode(source.toString());
+        ArrayList<ByteBuffer> owned = new ArrayList<ByteBuffer>();
+        try
+        {
+            int channels = image.channels;
+            int levelCount = 32 - Integer.numberOfLeadingZeros(Math.max(image.width, image.height));
+            ByteBuffer[] levels = new ByteBuffer[levelCount];
+
+            ByteBuffer pixels = image.getPixels();
+            int w = image.width, h = image.height;
+            for(int level = 0; level < levelCount; level++)
+            {
+                if(level > 0)
+                {
+                    int nw = Math.max(1, w / 2), nh = Math.max(1, h / 2);
+                    pixels = downsample(pixels, w, h, nw, nh, channels);
+                    owned.add(pixels);
+                    w = nw;
+                    h = nh;
+                }
+
+                if(compress)
+                {
+                    levels[level] = compress(pixels, w, h, channels);
+                    owned.add(levels[level]);
+                }
+                else
+                    levels[level] = pixels;
+            }
+
+            if(compress)
+                TextureContainer.write(dest, compressedFormatOf(channels), 0, 0, image.width, image.height, levels);
+            else
+                TextureContainer.write(dest, Texture.internalFormatOf(channels), Texture.formatOf(channels), GL_UNSIGNED_BYTE,
+                        image.width, image.height, levels);
+        }
+        finally
+        {
+            for(ByteBuffer b : owned)
+                memFree(b);
+            image.free();
+        }
+    }
+
+    private static int compressedFormatOf(int channels)
+    {
+        return switch(channels) {
+            case 1 -> GL_COMPRESSED_RED_RGTC1;
+            case 2 -> GL_COMPRESSED_RG_RGTC2;
+            case 3 -> GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+            case 4 -> GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            default -> throw new IllegalArgumentException("Unsupported channel count: " + channels);
+        };
+    }
+
+    //Box filter, each destination texel averages the source texels it
+    //covers so odd sizes and 1 texel wide levels work out as well
+    static ByteBuffer downsample(ByteBuffer src, int w, int h, int nw, int nh, int channels)
+    {
+        ByteBuffer dst = memAlloc(nw * nh * channels);
+        for(int y = 0; y < nh; y++)
+        {
+            int y0 = y * h / nh, y1 = Math.max(y0 + 1, (y + 1) * h / nh);
+            for(int x = 0; x < nw; x++)
+            {
+                int x0 = x * w / nw, x1 = Math.max(x0 + 1, (x + 1) * w / nw);
+                int count = (y1 - y0) * (x1 - x0);
+                for(int c = 0; c < channels; c++)
+                {
+                    int sum = 0;
+                    for(int sy = y0; sy < y1; sy++)
+                        for(int sx = x0; sx < x1; sx++)
+                            sum += src.get((sy * w + sx) * channels + c) & 0xFF;
+                    dst.put((y * nw + x) * channels + c, (byte)((sum + count / 2) / count));
+                }
+            }
+        }
+        return dst;
+    }
+
+    //Compresses a level in 4x4 blocks, edges are padded by repeating the
+    //last row and column
+    static ByteBuffer compress(ByteBuffer src, int w, int h, int channels)
+    {
+        int blocksX = (w + 3) / 4, blocksY = (h + 3) / 4;
+        int blockBytes = (channels == 1 || channels == 3) ? 8 : 16;
+        ByteBuffer dst = memAlloc(blocksX * blocksY * blockBytes);
+
+        //stb wants RGBA for BC1/BC3 and the raw channels for BC4/BC5
+        int blockChannels = channels <= 2 ? channels : 4;
+        ByteBuffer block = memAlloc(16 * blockChannels);
+        ByteBuffer out = memAlloc(16);
+        try
+        {
+            for(int by = 0; by < blocksY; by++)
+            {
+                for(int bx = 0; bx < blocksX; bx++)
+                {
+                    for(int py = 0; py < 4; py++)
+                    {
+                        int sy = Math.min(by * 4 + py, h - 1);
+                        for(int px = 0; px < 4; px++)
+                        {
+                            int sx = Math.min(bx * 4 + px, w - 1);
+                            int s = (sy * w + sx) * channels;
+                            int d = (py * 4 + px) * blockChannels;
+                            for(int c = 0; c < blockChannels; c++)
+                                block.put(d + c, c < channels ? src.get(s + c) : (byte)0xFF);
+                        }
+                    }
+
+                    out.clear();
+                    switch(channels) {
+                        case 1 -> STBDXT.stb_compress_bc4_block(out, block);
+                        case 2 -> STBDXT.stb_compress_bc5_block(out, block);
+                        default -> STBDXT.stb_compress_dxt_block(out, block, channels == 4, STBDXT.STB_DXT_HIGHQUAL);
+                    }
+                    memCopy(memAddress(out), memAddress(dst) + (long)(by * blocksX + bx) * blockBytes, blockBytes);
+                }
+            }
+        }
+        finally
+        {
+            memFree(block);
+            memFree(out);
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,10 @@
+package engine;
+
+///Anything that can be bound to a texture unit, what a RenderQueue texture
+///set is made of
+public interface TextureBinding
+{
+    ///Binds to texture unit i without disturbing the active unit
+    ///when it is already bound there.
+    void bind(int unit);
+}
@@ -0,0 +1,253 @@
+package engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+///Shares textures between everyone asking for the same file with the same
+///sampler settings. Handles are reference counted, a texture nobody holds
+///stays resident on an LRU list so asking for it again is free, and the
+///least recently released ones are deleted once the estimated GPU memory
+///of everything resident, held textures included, goes over the budget.
+///That memory is a running count, kept up to date as uploads finish and
+///textures are deleted, so checking it is free. A texture whose file failed
+///to load is forgotten, the next acquire of the file tries again, and is
+///deleted as soon as nobody holds it. When a baked version of a
+///file sits next to it, see TextureBaker, that is mapped and uploaded
+///directly instead of being decoded. GL thread only.
+public class TextureCache
+{
+    private record Key(String path, TextureSampler sampler) {}
+
+    ///Where textures the cache doesn't have come from, TextureLoader in the engine
+    interface Source
+    {
+        Texture loadPath(String path, TextureSampler sampler);
+    }
+
+    private static final class Entry
+    {
+        final Key key;
+        final Texture texture;
+        int refs = 0;
+        long bytes;         //What residentBytes counts for it
+
+        Entry(Key key, Texture texture)
+        {
+            this.key = key;
+            this.texture = texture;
+        }
+    }
+
+    private final Source loader;
+    private long budget;
+
+    private final HashMap<Key, Entry> entries = new HashMap<Key, Entry>();
+    private final IdentityHashMap<Texture, Entry> byTexture = new IdentityHashMap<Texture, Entry>();
+    //Entries without references in release order, the first one goes first
+    private final LinkedHashMap<Key, Entry> unused = new LinkedHashMap<Key, Entry>();
+    //Entries still showing their placeholder, their size changes once resident
+    private final ArrayList<Entry> loading = new ArrayList<Entry>();
+    private long residentBytes = 0;
+
+    private long hits, misses, evictions;
+
+    ///budget is in bytes of estimated GPU memory
+    public TextureCache(TextureLoader loader, long budget)
+    {
+        this((Source)loader, budget);
+    }
+
+    TextureCache(Source loader, long budget)
+    {
+        this.loader = loader;
+        this.budget = budget;
+    }
+
+    ///Texture for file in the texture directory with default sampling
+    public Texture acquire(String file)
+    {
+        return acquire(file, TextureSampler.DEFAULT);
+    }
+
+    ///Returns the shared texture for file and sampler, loading it if needed.
+    ///Every acquire needs a matching release.
+    public Texture acquire(String file, TextureSampler sampler)
+    {
+        Key key = new Key(canonical(Texture.resolve(file)), sampler);
+
+        Entry entry = entries.get(key);
+        if(entry != null)
+        {
+            hits++;
+            if(entry.refs++ == 0)
+                unused.remove(key);
+            return entry.texture;
+        }
+
+        misses++;
+        entry = new Entry(key, load(key.path(), sampler));
+        entry.refs = 1;
+        entry.bytes = entry.texture.getByteSize();
+        residentBytes += entry.bytes;
+        if(!entry.texture.isResident())
+            loading.add(entry);
+        entries.put(key, entry);
+        byTexture.put(entry.texture, entry);
+        return entry.texture;
+    }
+
+    ///Drops a reference taken with acquire, the texture stays resident until
+    ///the budget needs the space
+    public void release(Texture texture)
+    {
+        Entry entry = byTexture.get(texture);
+        if(entry == null || entry.refs == 0)
+            throw new IllegalArgumentException("Texture is not held from this cache");
+
+        if(--entry.refs == 0)
+        {
+            //Already forgotten, a retry may hold its key by now
+            if(entry.texture.isFailed())
+            {
+                remove(entry);
+                return;
+            }
+            unused.put(entry.key, entry);
+            evict();
+        }
+    }
+
+    ///Counts the uploads that finished and evicts unused textures until
+    ///resident memory fits the budget, call once per frame
+    public void update()
+    {
+        for(int i = loading.size() - 1; i >= 0; i--)
+        {
+            Entry entry = loading.get(i);
+            if(entry.texture.isFailed())
+            {
+                //Forgotten so the next acquire retries, the placeholder goes
+                //once its last holder lets go
+                entries.remove(entry.key);
+                if(entry.refs == 0)
+                {
+                    unused.remove(entry.key);
+                    remove(entry);
+                }
+            }
+            else if(entry.texture.isResident())
+            {
+                residentBytes += entry.texture.getByteSize() - entry.bytes;
+                entry.bytes = entry.texture.getByteSize();
+            }
+            else
+                continue;
+
+            loading.set(i, loading.get(loading.size() - 1));
+            loading.remove(loading.size() - 1);
+        }
+        evict();
+    }
+
+    //Deletes the texture of an entry no longer in entries or unused
+    private void remove(Entry entry)
+    {
+        residentBytes -= entry.bytes;
+        entry.texture.delete();
+        byTexture.remove(entry.texture);
+    }
+
+    private void evict()
+    {
+        Iterator<Entry> it = unused.values().iterator();
+        while(residentBytes > budget && it.hasNext())
+        {
+            Entry entry = it.next();
+
+            //Still uploading, the loader owns it until it is resident
+            if(!entry.texture.isResident())
+                continue;
+
+            residentBytes -= entry.bytes;
+            entry.texture.delete();
+            it.remove();
+            entries.remove(entry.key);
+            byTexture.remove(entry.texture);
+            evictions++;
+        }
+    }
+
+    private Texture load(String path, TextureSampler sampler)
+    {
+        Path baked = TextureBaker.bakedPath(Paths.get(path));
+        if(!Files.isRegularFile(baked))
+            return loader.loadPath(path, sampler);
+
+        try
+        {
+            return new Texture(TextureContainer.map(baked), sampler);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Unable to load baked texture: " + baked, e);
+        }
+    }
+
+    private static String canonical(String path)
+    {
+        Path p = Paths.get(path);
+        try
+        {
+            return p.toRealPath().toString();
+        }
+        catch(IOException e)
+        {
+            //Missing files still get a stable key, the loader reports the error
+            return p.toAbsolutePath().normalize().toString();
+        }
+    }
+
+    public void setBudget(long budget)
+    {
+        this.budget = budget;
+        evict();
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    ///Estimated GPU memory of every texture in the cache, held or not.
+    ///Uploads that finished since the last update() aren't counted yet.
+    public long getResidentBytes()
+    {
+        return residentBytes;
+    }
+
+    public int size()              { return entries.size(); }
+    public long getHits()          { return hits; }
+    public long getMisses()        { return misses; }
+    public long getEvictions()     { return evictions; }
+
+    ///Deletes every texture, held or not
+    public void cleanup()
+    {
+        //Failed textures still held are only in byTexture
+        for(Entry entry : byTexture.values())
+            entry.texture.delete();
+        entries.clear();
+        byTexture.clear();
+        unused.clear();
+        loading.clear();
+        residentBytes = 0;
+    }
+}
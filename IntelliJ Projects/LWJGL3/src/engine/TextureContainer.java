@@ -0,0 +1,157 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+///Baked texture file, see TextureBaker. A fixed header, a table of mip
+///levels and then the level payloads exactly as GL takes them, so loading
+///is a memory map and one upload call per level.
+///
+///Layout, little endian:
+///  int magic "BTX1", int version
+///  int internal format, int format (0 when compressed), int type
+///  int width, int height, int level count
+///  per level: int offset from the start of the file, int size in bytes
+///  payloads, each starting on a 16 byte boundary
+public final class TextureContainer
+{
+    public static final String EXTENSION = ".btx";
+
+    private static final int MAGIC = 0x31585442;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+    private static final int ALIGNMENT = 16;
+
+    public final int internalFormat;
+    public final int format;
+    public final int type;
+    public final int width, height;
+
+    private final ByteBuffer data;
+    private final int[] offsets, sizes;
+
+    private TextureContainer(ByteBuffer data, int internalFormat, int format, int type, int width, int height, int[] offsets, int[] sizes)
+    {
+        this.data = data;
+        this.internalFormat = internalFormat;
+        this.format = format;
+        this.type = type;
+        this.width = width;
+        this.height = height;
+        this.offsets = offsets;
+        this.sizes = sizes;
+    }
+
+    ///Maps file read only, the pages are only read in when GL copies them
+    public static TextureContainer map(Path file) throws IOException
+    {
+        ByteBuffer data;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if(data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC)
+            throw new IOException("Not a baked texture: " + file);
+        if(data.getInt(4) != VERSION)
+            throw new IOException("Unsupported baked texture version " + data.getInt(4) + " in " + file);
+
+        int levels = data.getInt(28);
+        if(levels < 1 || HEADER_BYTES + levels * 8 > data.capacity())
+            throw new IOException("Corrupt level table in " + file);
+
+        int[] offsets = new int[levels];
+        int[] sizes = new int[levels];
+        for(int i = 0; i < levels; i++)
+        {
+            offsets[i] = data.getInt(HEADER_BYTES + i * 8);
+            sizes[i] = data.getInt(HEADER_BYTES + i * 8 + 4);
+            if(offsets[i] < 0 || sizes[i] < 0 || (long)offsets[i] + sizes[i] > data.capacity())
+                throw new IOException("Level " + i + " out of bounds in " + file);
+        }
+
+        return new TextureContainer(data, data.getInt(8), data.getInt(12), data.getInt(16),
+                data.getInt(20), data.getInt(24), offsets, sizes);
+    }
+
+    ///Writes a container, levels[0] is the full size image and each one
+    ///after it half the size of the one before
+    public static void write(Path file, int internalFormat, int format, int type, int width, int height, ByteBuffer[] levels) throws IOException
+    {
+        int tableEnd = HEADER_BYTES + levels.length * 8;
+        long size = align(tableEnd);
+        int[] offsets = new int[levels.length];
+        for(int i = 0; i < levels.length; i++)
+        {
+            offsets[i] = (int)size;
+            size = align(size + levels[i].remaining());
+        }
+        if(size > Integer.MAX_VALUE)
+            throw new IOException("Texture too large for the container: " + file);
+
+        ByteBuffer header = ByteBuffer.allocate(offsets[0]).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+              .putInt(internalFormat).putInt(format).putInt(type)
+              .putInt(width).putInt(height).putInt(levels.length);
+        for(int i = 0; i < levels.length; i++)
+            header.putInt(offsets[i]).putInt(levels[i].remaining());
+        header.clear();
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            writeFully(channel, header, 0);
+            for(int i = 0; i < levels.length; i++)
+                writeFully(channel, levels[i].duplicate(), offsets[i]);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    public boolean isCompressed()
+    {
+        return format == 0;
+    }
+
+    public int getLevels()
+    {
+        return offsets.length;
+    }
+
+    ///The mapped bytes of a level, ready to hand to GL
+    public ByteBuffer getLevel(int level)
+    {
+        return data.slice(offsets[level], sizes[level]);
+    }
+
+    public int getLevelWidth(int level)
+    {
+        return Math.max(1, width >> level);
+    }
+
+    public int getLevelHeight(int level)
+    {
+        return Math.max(1, height >> level);
+    }
+
+    ///Bytes of every level, which is what the texture takes up on the GPU
+    public long getByteSize()
+    {
+        long total = 0;
+        for(int size : sizes)
+            total += size;
+        return total;
+    }
+}
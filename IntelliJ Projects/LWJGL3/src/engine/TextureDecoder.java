@@ -0,0 +1,88 @@
+package engine;
+
+import org.lwjgl.stb.*;
+import org.lwjgl.system.*;
+
+import java.nio.*;
+
+import static org.lwjgl.system.MemoryStack.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Decodes image files into off-heap pixel buffers. Touches no GL state so it
+///is safe to run on any thread, and can be exercised without a context.
+public final class TextureDecoder
+{
+    ///Pixels of a decoded image, rows bottom up and tightly packed. The
+    ///buffer is off-heap and must be handed back with free().
+    public static final class Image
+    {
+        public final String file;
+        public final int width, height, channels;
+        private ByteBuffer pixels;
+        private final boolean fromStb;
+
+        Image(String file, int width, int height, int channels, ByteBuffer pixels, boolean fromStb)
+        {
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.channels = channels;
+            this.pixels = pixels;
+            this.fromStb = fromStb;
+        }
+
+        ///An uninitialized image to fill in by hand, name only shows up in messages
+        public static Image allocate(String name, int width, int height, int channels)
+        {
+            return new Image(name, width, height, channels, memAlloc(width * height * channels), false);
+        }
+
+        public ByteBuffer getPixels()
+        {
+            return pixels;
+        }
+
+        public int getRowBytes()
+        {
+            return width * channels;
+        }
+
+        public int getByteSize()
+        {
+            return width * height * channels;
+        }
+
+        public void free()
+        {
+            if(pixels != null)
+            {
+                if(fromStb) STBImage.stbi_image_free(pixels);
+                else        memFree(pixels);
+                pixels = null;
+            }
+        }
+    }
+
+    private TextureDecoder() {}
+
+    ///Decodes the image at path, flipped so the first row is the bottom one
+    ///the way GL expects it
+    public static Image decode(String path)
+    {
+        try(MemoryStack stack = stackPush())
+        {
+            IntBuffer w = stack.mallocInt(1);
+            IntBuffer h = stack.mallocInt(1);
+            IntBuffer n = stack.mallocInt(1);
+
+            //The plain setter is global, this one only affects the calling thread
+            STBImage.stbi_set_flip_vertically_on_load_thread(1);
+            ByteBuffer data = STBImage.stbi_load(path, w, h, n, 0);
+
+            if(data == null)
+                throw new RuntimeException("Unable to find/open: " + path + " (" + STBImage.stbi_failure_reason() + ")");
+
+            return new Image(path, w.get(0), h.get(0), n.get(0), data, true);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package engine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Loads textures without stalling the render thread. Files are decoded on
+///a pool of worker threads, the GL thread then streams the pixels in through
+///a ring of pixel buffer objects a few rows at a time, never more than the
+///per frame byte budget. Mipmaps are generated once the last rows land.
+///
+///load() hands back a Texture right away that shows a 1x1 placeholder
+///until the real image is resident, update() does the uploading and must
+///be called once per frame on the GL thread.
+public class TextureLoader implements TextureCache.Source
+{
+    private static final int PBO_COUNT = 3;
+
+    //A texture somewhere between decoding and resident
+    private static final class Pending
+    {
+        final Texture texture;
+        final String path;
+        TextureDecoder.Image image;
+        RuntimeException error;
+        int rowsDone = 0;
+
+        Pending(Texture texture, String path)
+        {
+            this.texture = texture;
+            this.path = path;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final long frameBudget;
+
+    private final AtomicInteger decoding = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Pending> decoded = new ConcurrentLinkedQueue<Pending>();
+    private final ArrayDeque<Pending> uploads = new ArrayDeque<Pending>();    //GL thread only
+
+    private final int[] pbos = new int[PBO_COUNT];
+    private final long[] pboSizes = new long[PBO_COUNT];
+    private int nextPbo = 0;
+
+    private long uploadNanos, uploadBytes;
+
+    ///workers decode threads, frameBudget bytes uploaded per update() at most,
+    ///though at least one row always goes through so large images still finish
+    public TextureLoader(int workers, long frameBudget)
+    {
+        if(workers < 1)
+            throw new IllegalArgumentException("Worker count must be at least 1, given: " + workers);
+        if(frameBudget < 1)
+            throw new IllegalArgumentException("Upload budget must be positive, given: " + frameBudget);
+
+        this.frameBudget = frameBudget;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "Texture decode " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        glGenBuffers(pbos);
+        for(int i = 0; i < PBO_COUNT; i++)
+        {
+            GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, pbos[i]);
+            glBufferData(GL_PIXEL_UNPACK_BUFFER, frameBudget, GL_STREAM_DRAW);
+            pboSizes[i] = frameBudget;
+        }
+        GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+    }
+
+    ///Starts loading file from the texture directory, GL thread only
+    public Texture load(String file)
+    {
+        return loadPath(Texture.resolve(file), TextureSampler.DEFAULT);
+    }
+
+    ///Starts loading the image at path with the given sampler settings
+    @Override
+    public Texture loadPath(String path, TextureSampler sampler)
+    {
+        Pending pending = new Pending(new Texture(sampler), path);
+
+        decoding.incrementAndGet();
+        pool.execute(() -> {
+            try(Profiler.Zone z = Profiler.zone("decode"))
+            {
+                pending.image = TextureDecoder.decode(pending.path);
+            }
+            catch(RuntimeException e)
+            {
+                pending.error = e;
+            }
+            decoded.add(pending);
+            decoding.decrementAndGet();
+        });
+
+        return pending.texture;
+    }
+
+    ///Uploads decoded images up to the frame budget, once per frame on the GL thread
+    public void update()
+    {
+        long start = System.nanoTime();
+        uploadBytes = 0;
+
+        Pending p;
+        while((p = decoded.poll()) != null)
+        {
+            if(p.error != null)
+            {
+                System.err.println("Texture load failed, keeping the placeholder: " + p.error.getMessage());
+                p.texture.markFailed();
+            }
+            else
+                uploads.add(p);
+        }
+
+        if(uploads.isEmpty())
+        {
+            uploadNanos = System.nanoTime() - start;
+            return;
+        }
+
+        //Decoded rows are tightly packed, RGB rows aren't 4 byte aligned
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        long budget = frameBudget;
+        while(budget > 0 && (p = uploads.peek()) != null)
+        {
+            TextureDecoder.Image image = p.image;
+            if(p.texture.isDeleted())
+            {
+                image.free();
+                uploads.poll();
+                continue;
+            }
+
+            int format = Texture.formatOf(image.channels);
+            int rowBytes = image.getRowBytes();
+
+            GLState.bindTexture(GL_TEXTURE_2D, p.texture.getId());
+            if(p.rowsDone == 0)
+            {
+                //The ring slot of the previous image may still be bound, a null
+                //pointer would then read as offset 0 into it, copying its stale
+                //rows or failing outright when this image is larger than the PBO
+                GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+                glTexImage2D(GL_TEXTURE_2D, 0, Texture.internalFormatOf(image.channels), image.width, image.height, 0, format, GL_UNSIGNED_BYTE, (ByteBuffer)null);
+            }
+
+            int rows = (int)Math.min(image.height - p.rowsDone, Math.max(1, budget / rowBytes));
+            long size = (long)rows * rowBytes;
+
+            //Cycling through the ring gives the driver time to finish with a
+            //buffer before it is written again
+            int slot = nextPbo;
+            nextPbo = (nextPbo + 1) % PBO_COUNT;
+            GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, pbos[slot]);
+            if(size > pboSizes[slot])
+            {
+                glBufferData(GL_PIXEL_UNPACK_BUFFER, size, GL_STREAM_DRAW);
+                pboSizes[slot] = size;
+            }
+
+            ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+            if(mapped == null)
+                throw new IllegalStateException("Unable to map pixel unpack buffer");
+            memCopy(memAddress(image.getPixels()) + (long)p.rowsDone * rowBytes, memAddress(mapped), size);
+            glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+
+            //Offset 0 into the bound PBO
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, p.rowsDone, image.width, rows, format, GL_UNSIGNED_BYTE, 0L);
+
+            p.rowsDone += rows;
+            budget -= size;
+            uploadBytes += size;
+
+            if(p.rowsDone == image.height)
+            {
+                TextureSampler sampler = p.texture.getSampler();
+                if(sampler.usesMipmaps())
+                {
+                    glGenerateMipmap(GL_TEXTURE_2D);
+                    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, sampler.minFilter());
+                }
+
+                p.texture.markResident(image.width, image.height, image.channels, sampler.usesMipmaps());
+                image.free();
+                uploads.poll();
+            }
+        }
+
+        //Client memory pixel transfers elsewhere would read from the PBO otherwise
+        GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+
+        uploadNanos = System.nanoTime() - start;
+    }
+
+    ///Textures not resident yet, decoding or waiting for upload
+    public int getQueueDepth()
+    {
+        return decoding.get() + decoded.size() + uploads.size();
+    }
+
+    //From the last update
+    public long getUploadNanos() { return uploadNanos; }
+    public long getUploadBytes() { return uploadBytes; }
+
+    public void cleanup()
+    {
+        pool.shutdownNow();
+
+        for(Pending p : uploads)
+            p.image.free();
+        uploads.clear();
+
+        Pending p;
+        while((p = decoded.poll()) != null)
+        {
+            if(p.image != null)
+                p.image.free();
+        }
+
+        glDeleteBuffers(pbos);
+        for(int pbo : pbos)
+            GLState.bufferDeleted(pbo);
+    }
+}
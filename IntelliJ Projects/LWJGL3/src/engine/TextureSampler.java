@@ -0,0 +1,24 @@
+package engine;
+
+import static org.lwjgl.opengl.GL11.*;
+
+///Wrap and filter settings of a texture, part of the TextureCache key since
+///the same image sampled differently is a different texture object
+public record TextureSampler(int wrapS, int wrapT, int minFilter, int magFilter)
+{
+    public static final TextureSampler DEFAULT = new TextureSampler(GL_REPEAT, GL_REPEAT, GL_LINEAR_MIPMAP_LINEAR, GL_LINEAR);
+
+    public boolean usesMipmaps()
+    {
+        return minFilter != GL_NEAREST && minFilter != GL_LINEAR;
+    }
+
+    ///Applies the settings to the texture bound to target
+    public void apply(int target)
+    {
+        glTexParameteri(target, GL_TEXTURE_WRAP_S, wrapS);
+        glTexParameteri(target, GL_TEXTURE_WRAP_T, wrapT);
+        glTexParameteri(target, GL_TEXTURE_MIN_FILTER, minFilter);
+        glTexParameteri(target, GL_TEXTURE_MAG_FILTER, magFilter);
+    }
+}
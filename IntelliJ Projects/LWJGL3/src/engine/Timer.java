@@ -0,0 +1,213 @@
+package engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+///Frame timer that also keeps frame time statistics. Each call to
+///getElapsedTime() counts as one frame and lands in a log bucketed
+///histogram, so percentiles cost a fixed amount of memory no matter how
+///many frames are recorded. Statistics cover rolling windows of a fixed
+///length, the last finished window is what the getters report and a
+///history of finished windows can be written out as CSV.
+public class Timer
+{
+    private static final long SNS = 1000000000; //Conversion factor to get to/from nanoseconds
+
+    //Each power of two is split into 2^SUB_BITS buckets, about 4% wide
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private static final double[] PERCENTILES = { 50.0, 95.0, 99.0, 99.9 };
+
+    private long lastTime;
+
+    private final long windowLength;
+    private final long hitchThreshold;
+    private final long firstStart;
+    private long windowStart;
+
+    //Window in progress
+    private final int[] histogram = new int[BUCKETS];
+    private long frames, sum, min, max, hitches;
+
+    //Last finished window, durations in nanoseconds
+    private long doneFrames, doneMin, doneMax, doneHitches;
+    private double doneMean, doneSeconds;
+    private final long[] donePercentiles = new long[PERCENTILES.length];
+    private boolean windowDone;
+
+    //History of finished windows for CSV export, a ring of HISTORY rows
+    private static final int HISTORY = 600;
+    private static final int COLUMNS = 7 + PERCENTILES.length;
+    private final double[] history = new double[HISTORY * COLUMNS];
+    private int historyCount, historyNext;
+
+    public Timer()
+    {
+        this(1.0, 1000.0 / 30.0);
+    }
+
+    ///windowSeconds is the length of each statistics window, frames longer
+    ///than hitchMillis count as hitches
+    public Timer(double windowSeconds, double hitchMillis)
+    {
+        this.windowLength = (long)(windowSeconds * SNS);
+        this.hitchThreshold = (long)(hitchMillis * 1.0e6);
+        this.lastTime = System.nanoTime();
+        this.windowStart = lastTime;
+        this.firstStart = lastTime;
+        resetWindow();
+    }
+
+    ///Returns elapsed time in seconds and resets the timer,
+    ///the elapsed time is recorded as one frame
+    public double getElapsedTime()
+    {
+        long curTime = System.nanoTime();
+        long dt = curTime - lastTime;
+        lastTime = curTime;
+
+        record(dt);
+        if(curTime - windowStart >= windowLength)
+            finishWindow(curTime);
+
+        return (double)dt / (double)SNS;
+    }
+
+    private void record(long nanos)
+    {
+        histogram[bucketOf(nanos)]++;
+        frames++;
+        sum += nanos;
+        min = Math.min(min, nanos);
+        max = Math.max(max, nanos);
+        if(nanos > hitchThreshold)
+            hitches++;
+    }
+
+    //Top SUB_BITS bits below the leading one pick the sub bucket
+    private static int bucketOf(long nanos)
+    {
+        if(nanos < SUB_BUCKETS)
+            return (int)Math.max(nanos, 0);
+
+        int octave = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int)(nanos >>> (octave - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (octave - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    //Middle of the range covered by a bucket
+    private static long bucketValue(int bucket)
+    {
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+
+        int octave = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long low = (SUB_BUCKETS + sub) << (octave - SUB_BITS);
+        long width = 1L << (octave - SUB_BITS);
+        return low + width / 2;
+    }
+
+    private void finishWindow(long now)
+    {
+        doneFrames = frames;
+        doneMin = min;
+        doneMax = max;
+        doneHitches = hitches;
+        doneMean = (double)sum / frames;
+        doneSeconds = (double)(now - windowStart) / SNS;
+
+        for(int p = 0; p < PERCENTILES.length; p++)
+            donePercentiles[p] = percentile(PERCENTILES[p]);
+        windowDone = true;
+
+        int row = historyNext * COLUMNS;
+        history[row]     = (double)(windowStart - firstStart) / SNS;
+        history[row + 1] = doneSeconds;
+        history[row + 2] = doneFrames;
+        history[row + 3] = doneMin / 1.0e6;
+        history[row + 4] = doneMean / 1.0e6;
+        history[row + 5] = doneMax / 1.0e6;
+        history[row + 6] = doneHitches;
+        for(int p = 0; p < PERCENTILES.length; p++)
+            history[row + 7 + p] = donePercentiles[p] / 1.0e6;
+        historyNext = (historyNext + 1) % HISTORY;
+        historyCount = Math.min(historyCount + 1, HISTORY);
+
+        windowStart = now;
+        resetWindow();
+    }
+
+    private void resetWindow()
+    {
+        Arrays.fill(histogram, 0);
+        frames = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        hitches = 0;
+    }
+
+    private long percentile(double p)
+    {
+        long rank = (long)Math.ceil(p / 100.0 * frames);
+        long seen = 0;
+        for(int b = 0; b < BUCKETS; b++)
+        {
+            seen += histogram[b];
+            if(seen >= rank && seen > 0)
+                return Math.min(Math.max(bucketValue(b), min), max);
+        }
+        return max;
+    }
+
+    ///True once each time a statistics window finishes
+    public boolean windowCompleted()
+    {
+        boolean done = windowDone;
+        windowDone = false;
+        return done;
+    }
+
+    //Statistics of the last finished window, times in milliseconds
+
+    public long getFrames()    { return doneFrames; }
+    public double getFps()     { return doneSeconds > 0 ? doneFrames / doneSeconds : 0.0; }
+    public double getMin()     { return doneMin / 1.0e6; }
+    public double getMean()    { return doneMean / 1.0e6; }
+    public double getP50()     { return donePercentiles[0] / 1.0e6; }
+    public double getP95()     { return donePercentiles[1] / 1.0e6; }
+    public double getP99()     { return donePercentiles[2] / 1.0e6; }
+    public double getP999()    { return donePercentiles[3] / 1.0e6; }
+    public double getMax()     { return doneMax / 1.0e6; }
+    public long getHitches()   { return doneHitches; }
+
+    ///Writes every finished window still in the history to file, oldest first
+    public void exportCsv(Path file) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(file)))
+        {
+            out.println("start_s,length_s,frames,min_ms,mean_ms,max_ms,hitches,p50_ms,p95_ms,p99_ms,p999_ms");
+            int first = (historyNext - historyCount + HISTORY) % HISTORY;
+            for(int i = 0; i < historyCount; i++)
+            {
+                int row = ((first + i) % HISTORY) * COLUMNS;
+                StringBuilder line = new StringBuilder();
+                for(int c = 0; c < COLUMNS; c++)
+                {
+                    if(c > 0) line.append(',');
+                    double v = history[row + c];
+                    if(c == 2 || c == 6) line.append((long)v);
+                    else                 line.append(String.format(Locale.ROOT, "%.4f", v));
+                }
+                out.println(line);
+            }
+        }
+    }
+}
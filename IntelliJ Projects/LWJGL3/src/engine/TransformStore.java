@@ -0,0 +1,422 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+///Local transforms of entities and the world matrices built from them,
+///stored as a struct of arrays indexed by entity id. Positions, rotations,
+///scales and world matrices live off-heap, each in one contiguous block,
+///so walking them never chases object pointers and nothing here is seen
+///by the garbage collector. Ids of destroyed entities are reused.
+///
+///An entity may hang off a parent, its world matrix is then the parent's
+///times its own local transform. Changing a local transform only marks
+///the entity dirty, update() rebuilds the world matrix of every dirty
+///entity and of everything below one and nothing else. Entities are kept
+///in one list per depth in the hierarchy so update() can do a whole level
+///at a time, in parallel, knowing every parent is already done.
+///
+///World matrices are 16 column major floats each, back to back in id
+///order, the layout of an instanced mat4 attribute. getWorldAddress() is
+///ready to be copied from straight into an instance buffer.
+///
+///Setters and update() are for one thread at a time, update() itself
+///spreads out over the pool it is given.
+public class TransformStore
+{
+    public static final int NONE = -1;
+
+    //Levels smaller than this aren't worth splitting up, larger ones are
+    //updated in chunks of this many entities
+    private static final int SPLIT = 2048;
+    private static final Matrix4fc IDENTITY = new Matrix4f();
+
+    private int capacity;
+    private FloatBuffer positions;  //x, y, z
+    private FloatBuffer rotations;  //Quaternion x, y, z, w
+    private FloatBuffer scales;     //x, y, z
+    private FloatBuffer worlds;     //16 floats per entity
+
+    private int[] parents;
+    private int[] depths;           //-1 while the id is free
+    private int[] childCounts;
+    private int[] slots;            //Index in the entity's level list
+    private boolean[] dirty;
+    private long[] builtIn;         //Update the world matrix was last rebuilt in
+
+    private final ArrayList<IntList> levels = new ArrayList<IntList>();
+
+    private int[] freeIds;
+    private int freeCount = 0;
+    private int highWater = 0;      //Ids below this have been handed out at least once
+    private int count = 0;
+
+    private int dirtyCount = 0;
+    private int dirtyDepth = Integer.MAX_VALUE;    //Shallowest dirty entity
+    private long updates = 0;
+
+    //Ids rebuilt by the last update(), gathered per chunk of a level and
+    //merged in chunk order
+    private final IntList changed = new IntList();
+    private final ArrayList<Worker> workers = new ArrayList<Worker>();
+
+    //Scratch of the task updating one chunk
+    private static final class Worker
+    {
+        final Matrix4f local = new Matrix4f();
+        final Matrix4f parent = new Matrix4f();
+        final IntList changed = new IntList(256);
+    }
+
+    public TransformStore(int capacity)
+    {
+        this.capacity = Math.max(capacity, 1);
+        positions = memAllocFloat(this.capacity * 3);
+        rotations = memAllocFloat(this.capacity * 4);
+        scales = memAllocFloat(this.capacity * 3);
+        worlds = memAllocFloat(this.capacity * 16);
+
+        parents = new int[this.capacity];
+        depths = new int[this.capacity];
+        childCounts = new int[this.capacity];
+        slots = new int[this.capacity];
+        dirty = new boolean[this.capacity];
+        builtIn = new long[this.capacity];
+        freeIds = new int[this.capacity];
+        Arrays.fill(depths, -1);
+    }
+
+    private void grow()
+    {
+        int old = capacity;
+        capacity *= 2;
+        positions = memRealloc(positions, capacity * 3);
+        rotations = memRealloc(rotations, capacity * 4);
+        scales = memRealloc(scales, capacity * 3);
+        worlds = memRealloc(worlds, capacity * 16);
+
+        parents = Arrays.copyOf(parents, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        builtIn = Arrays.copyOf(builtIn, capacity);
+        freeIds = Arrays.copyOf(freeIds, capacity);
+        Arrays.fill(depths, old, capacity, -1);
+    }
+
+    ///Creates an entity with an identity local transform under parent, or
+    ///at the top when parent is NONE, and returns its id
+    public int create(int parent)
+    {
+        if(parent != NONE)
+            checkId(parent);
+
+        int id;
+        if(freeCount > 0)
+            id = freeIds[--freeCount];
+        else
+        {
+            if(highWater == capacity)
+                grow();
+            id = highWater++;
+        }
+
+        int depth = parent == NONE ? 0 : depths[parent] + 1;
+        parents[id] = parent;
+        depths[id] = depth;
+        childCounts[id] = 0;
+        if(parent != NONE)
+            childCounts[parent]++;
+
+        while(levels.size() <= depth)
+            levels.add(new IntList());
+        IntList level = levels.get(depth);
+        slots[id] = level.size();
+        level.add(id);
+
+        positions.put(id * 3, 0.0f).put(id * 3 + 1, 0.0f).put(id * 3 + 2, 0.0f);
+        rotations.put(id * 4, 0.0f).put(id * 4 + 1, 0.0f).put(id * 4 + 2, 0.0f).put(id * 4 + 3, 1.0f);
+        scales.put(id * 3, 1.0f).put(id * 3 + 1, 1.0f).put(id * 3 + 2, 1.0f);
+        //Something sane to read before the first update
+        IDENTITY.get(id * 16, worlds);
+        dirty[id] = false;
+        markDirty(id);
+
+        count++;
+        return id;
+    }
+
+    ///Frees id for reuse, entities with children have to lose them first
+    public void destroy(int id)
+    {
+        checkId(id);
+        if(childCounts[id] > 0)
+            throw new IllegalStateException("Entity " + id + " still has " + childCounts[id] + " children");
+
+        if(parents[id] != NONE)
+            childCounts[parents[id]]--;
+
+        //Swap the last of the level into the hole
+        IntList level = levels.get(depths[id]);
+        int last = level.removeLast();
+        if(last != id)
+        {
+            level.set(slots[id], last);
+            slots[last] = slots[id];
+        }
+
+        if(dirty[id])
+        {
+            dirty[id] = false;
+            dirtyCount--;
+        }
+        depths[id] = -1;
+        freeIds[freeCount++] = id;
+        count--;
+    }
+
+    public boolean contains(int id)
+    {
+        return id >= 0 && id < highWater && depths[id] >= 0;
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    ///Highest id handed out plus one, handy for sizing per entity buffers
+    public int getIdLimit()
+    {
+        return highWater;
+    }
+
+    public int getParent(int id)
+    {
+        return parents[id];
+    }
+
+    ///0 for entities without a parent
+    public int getDepth(int id)
+    {
+        return depths[id];
+    }
+
+    public void setPosition(int id, float x, float y, float z)
+    {
+        checkId(id);
+        positions.put(id * 3, x).put(id * 3 + 1, y).put(id * 3 + 2, z);
+        markDirty(id);
+    }
+
+    public void setRotation(int id, Quaternionfc q)
+    {
+        checkId(id);
+        rotations.put(id * 4, q.x()).put(id * 4 + 1, q.y()).put(id * 4 + 2, q.z()).put(id * 4 + 3, q.w());
+        markDirty(id);
+    }
+
+    ///Rotation of angle radians about axis x, y, z, which has to be unit length
+    public void setRotation(int id, float angle, float x, float y, float z)
+    {
+        checkId(id);
+        float s = (float)Math.sin(angle * 0.5f);
+        float c = (float)Math.cos(angle * 0.5f);
+        rotations.put(id * 4, x * s).put(id * 4 + 1, y * s).put(id * 4 + 2, z * s).put(id * 4 + 3, c);
+        markDirty(id);
+    }
+
+    public void setScale(int id, float x, float y, float z)
+    {
+        checkId(id);
+        scales.put(id * 3, x).put(id * 3 + 1, y).put(id * 3 + 2, z);
+        markDirty(id);
+    }
+
+    ///Local position, relative to the parent
+    public Vector3f getPosition(int id, Vector3f dest)
+    {
+        return dest.set(positions.get(id * 3), positions.get(id * 3 + 1), positions.get(id * 3 + 2));
+    }
+
+    public Quaternionf getRotation(int id, Quaternionf dest)
+    {
+        return dest.set(rotations.get(id * 4), rotations.get(id * 4 + 1), rotations.get(id * 4 + 2), rotations.get(id * 4 + 3));
+    }
+
+    public Vector3f getScale(int id, Vector3f dest)
+    {
+        return dest.set(scales.get(id * 3), scales.get(id * 3 + 1), scales.get(id * 3 + 2));
+    }
+
+    //World getters report the state as of the last update()
+
+    public Matrix4f getWorld(int id, Matrix4f dest)
+    {
+        return dest.set(id * 16, worlds);
+    }
+
+    ///Copies the world matrix of id into dest at offset
+    public void getWorld(int id, float[] dest, int offset)
+    {
+        worlds.get(id * 16, dest, offset, 16);
+    }
+
+    public Vector3f getWorldPosition(int id, Vector3f dest)
+    {
+        return dest.set(worlds.get(id * 16 + 12), worlds.get(id * 16 + 13), worlds.get(id * 16 + 14));
+    }
+
+    ///Address of the world matrix of id, the next id's follows 64 bytes on.
+    ///Moves when the store grows.
+    public long getWorldAddress(int id)
+    {
+        return memAddress(worlds) + (long)id * 16 * Float.BYTES;
+    }
+
+    ///True when update() has world matrices to rebuild
+    public boolean isDirty()
+    {
+        return dirtyCount > 0;
+    }
+
+    ///Rebuilds the world matrix of every dirty entity and every entity
+    ///below one, a level of the hierarchy at a time. Levels are split over
+    ///pool when they are large enough, a null pool runs everything on the
+    ///calling thread. Returns the number of matrices rebuilt, their ids are
+    ///in getChanged() until the next update.
+    public int update(ForkJoinPool pool)
+    {
+        changed.clear();
+        if(dirtyCount == 0)
+            return 0;
+
+        updates++;
+        if(workers.isEmpty())
+            workers.add(new Worker());
+
+        //Nothing above the shallowest dirty entity can have changed
+        for(int depth = dirtyDepth; depth < levels.size(); depth++)
+        {
+            IntList level = levels.get(depth);
+            int chunks = pool != null ? (level.size() + SPLIT - 1) / SPLIT : 1;
+            while(workers.size() < chunks)
+                workers.add(new Worker());
+
+            if(chunks > 1)
+                pool.invoke(new LevelTask(level, 0, chunks));
+            else
+                updateRange(level, 0, level.size(), workers.get(0));
+
+            //Chunk order is slot order, the same whoever ran which chunk
+            for(int c = 0; c < chunks; c++)
+            {
+                IntList list = workers.get(c).changed;
+                for(int i = 0; i < list.size(); i++)
+                    changed.add(list.get(i));
+                list.clear();
+            }
+        }
+
+        dirtyCount = 0;
+        dirtyDepth = Integer.MAX_VALUE;
+        return changed.size();
+    }
+
+    ///Ids whose world matrix the last update() rebuilt, parents before
+    ///their children and in the same order every time for the same changes
+    public IntList getChanged()
+    {
+        return changed;
+    }
+
+    public void cleanup()
+    {
+        memFree(positions);
+        memFree(rotations);
+        memFree(scales);
+        memFree(worlds);
+    }
+
+    private void markDirty(int id)
+    {
+        if(dirty[id])
+            return;
+        dirty[id] = true;
+        dirtyCount++;
+        dirtyDepth = Math.min(dirtyDepth, depths[id]);
+    }
+
+    //Each entity of the range is written by this thread alone, the parents
+    //it reads were finished by the previous level
+    private void updateRange(IntList level, int from, int to, Worker worker)
+    {
+        Matrix4f m = worker.local;
+        int[] ids = level.array();
+        for(int i = from; i < to; i++)
+        {
+            int id = ids[i];
+            int parent = parents[id];
+            boolean parentChanged = parent != NONE && builtIn[parent] == updates;
+            if(!dirty[id] && !parentChanged)
+                continue;
+
+            int p = id * 3, r = id * 4;
+            m.translationRotateScale(
+                    positions.get(p), positions.get(p + 1), positions.get(p + 2),
+                    rotations.get(r), rotations.get(r + 1), rotations.get(r + 2), rotations.get(r + 3),
+                    scales.get(p), scales.get(p + 1), scales.get(p + 2));
+            if(parent != NONE)
+                worker.parent.set(parent * 16, worlds).mulAffine(m, m);
+            m.get(id * 16, worlds);
+
+            dirty[id] = false;
+            builtIn[id] = updates;
+            worker.changed.add(id);
+        }
+    }
+
+    //Chunks from to to of a level, each writes to the worker of its index
+    private class LevelTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final IntList level;
+        private final int from, to;
+
+        LevelTask(IntList level, int from, int to)
+        {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from == 1)
+            {
+                updateRange(level, from * SPLIT, Math.min((from + 1) * SPLIT, level.size()), workers.get(from));
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new LevelTask(level, from, mid), new LevelTask(level, mid, to));
+        }
+    }
+
+    private void checkId(int id)
+    {
+        if(!contains(id))
+            throw new IllegalArgumentException("No entity with id: " + id);
+    }
+}
@@ -0,0 +1,61 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+///Lock free hand off of the latest value from one writer thread to one
+///reader thread. The writer fills its back slot and publishes it, the
+///reader picks up whatever was published last. Neither side ever waits
+///and a slot is never touched by both threads at once, so the slots can
+///be reused mutable objects instead of fresh allocations.
+public class TripleBuffer<T>
+{
+    private static final int INDEX = 0b011;
+    private static final int FRESH = 0b100;
+
+    private final Object[] slots = new Object[3];
+
+    //Index of the slot between the two threads, plus FRESH when the
+    //writer has published it and the reader hasn't taken it yet
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    private int back = 0;   //Owned by the writer
+    private int front = 2;  //Owned by the reader
+
+    public TripleBuffer(Supplier<T> factory)
+    {
+        for(int i = 0; i < slots.length; i++)
+            slots[i] = factory.get();
+    }
+
+    ///The slot the writer may fill, valid until the next publish
+    @SuppressWarnings("unchecked")
+    public T getWriteSlot()
+    {
+        return (T)slots[back];
+    }
+
+    ///Makes the write slot visible to the reader and hands the writer a new one
+    public void publish()
+    {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    ///Swaps in the most recently published slot, returns false if nothing
+    ///new was published since the last call
+    public boolean update()
+    {
+        if((middle.get() & FRESH) == 0)
+            return false;
+
+        front = middle.getAndSet(front) & INDEX;
+        return true;
+    }
+
+    ///The slot the reader may read, valid until the next update
+    @SuppressWarnings("unchecked")
+    public T getReadSlot()
+    {
+        return (T)slots[front];
+    }
+}
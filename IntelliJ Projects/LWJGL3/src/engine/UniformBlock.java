@@ -0,0 +1,170 @@
+package engine;
+
+import org.joml.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+///A uniform buffer holding one std140 block, shared by every program that
+///declares a block of the same name. The contents are staged off-heap and
+///sent with one upload however many programs read them. Each block owns a
+///fixed binding point, programs get pointed at it when they are created,
+///so create blocks before the shaders that use them. Uploads go to a
+///StreamBuffer, each one to a fresh range that gets bound to the binding
+///point, so a block can be uploaded many times a frame without waiting.
+///
+///std140 in short: scalars take 4 bytes, vec3 and vec4 take 16, a mat4 is
+///four vec4 columns, and array elements are padded to 16 bytes each.
+public class UniformBlock
+{
+    //Block name to binding point of every live block
+    private static final HashMap<String, Integer> bindings = new HashMap<String, Integer>();
+
+    private final String name;
+    private final int binding;
+    private final int size;
+    private final int alignment;
+    private final StreamBuffer stream;
+    private final ByteBuffer data;
+    //Stands in for the stream of a detached block, uploads are copied here
+    private final ByteBuffer sink;
+
+    public UniformBlock(String name, int binding, int size)
+    {
+        int maxSize = glGetInteger(GL_MAX_UNIFORM_BLOCK_SIZE);
+        if(size > maxSize)
+            throw new IllegalArgumentException("Uniform block " + name + " is " + size + " bytes, the limit here is " + maxSize);
+        if(bindings.containsValue(binding))
+            throw new IllegalArgumentException("Uniform binding point " + binding + " already taken");
+
+        this.name = name;
+        this.binding = binding;
+        this.size = size;
+
+        data = memCalloc(size);
+        sink = null;
+        alignment = glGetInteger(GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
+        //Room for a few uploads a frame to begin with, the stream grows if that's short
+        long slot = (size + alignment - 1) / alignment * alignment;
+        stream = new StreamBuffer(GL_UNIFORM_BUFFER, slot * 4);
+
+        bindings.put(name, binding);
+    }
+
+    private UniformBlock(String name, int size)
+    {
+        this.name = name;
+        this.binding = -1;
+        this.size = size;
+
+        data = memCalloc(size);
+        sink = memAlloc(size);
+        alignment = 1;
+        stream = null;
+    }
+
+    ///Block with no buffer or binding point behind it, for measuring the
+    ///staging without a GL context. Uploads are copied into plain memory
+    ///and counted in GLState, programs never see the block.
+    static UniformBlock detached(String name, int size)
+    {
+        return new UniformBlock(name, size);
+    }
+
+    ///Points every block program declares at the binding point of the
+    ///block with the same name, called by Shader
+    static void bindBlocks(int program)
+    {
+        for(Map.Entry<String, Integer> block : bindings.entrySet())
+        {
+            int index = glGetUniformBlockIndex(program, block.getKey());
+            if(index != GL_INVALID_INDEX)
+                glUniformBlockBinding(program, index, block.getValue());
+        }
+    }
+
+    public void putMatrix(int offset, Matrix4fc m)
+    {
+        m.get(offset, data);
+    }
+
+    public void putVec4(int offset, float x, float y, float z, float w)
+    {
+        data.putFloat(offset, x).putFloat(offset + 4, y).putFloat(offset + 8, z).putFloat(offset + 12, w);
+    }
+
+    public void putFloat(int offset, float f)
+    {
+        data.putFloat(offset, f);
+    }
+
+    public void putInt(int offset, int i)
+    {
+        data.putInt(offset, i);
+    }
+
+    ///The staging copy, for bulk writes
+    public ByteBuffer getData()
+    {
+        return data;
+    }
+
+    public void upload()
+    {
+        upload(size);
+    }
+
+    ///Sends the first bytes of the staging copy into a range of its own,
+    ///draws issued before still read the previous one. The range bound
+    ///is always the whole block, GL wants that much behind the binding.
+    public void upload(int bytes)
+    {
+        if(stream == null)
+        {
+            memCopy(memAddress(data), memAddress(sink), bytes);
+            GLState.uniformBlockUploaded();
+            return;
+        }
+
+        memCopy(memAddress(data), stream.reserve(size, alignment), bytes);
+        long offset = stream.commit();
+
+        //Binding a range binds the buffer to the generic binding as well
+        GLState.bindBuffer(GL_UNIFORM_BUFFER, stream.getBuffer());
+        glBindBufferRange(GL_UNIFORM_BUFFER, binding, stream.getBuffer(), offset, size);
+        GLState.uniformBlockUploaded();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getBinding()
+    {
+        return binding;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public void cleanup()
+    {
+        if(stream != null)
+        {
+            bindings.remove(name);
+            stream.cleanup();
+        }
+        else
+            memFree(sink);
+        memFree(data);
+    }
+}
@@ -0,0 +1,70 @@
+package engine;
+
+import static org.lwjgl.opengl.GL20.glGetUniformLocation;
+
+public class UniformInfo
+{
+    private final int location;
+    private final String name;
+    private final int params;
+    private final int slot;
+
+    //Raw bits of the last uploaded value, floats are stored via floatToRawIntBits
+    private final int[] shadow;
+    private boolean uploaded;
+
+    public UniformInfo(Shader shader, String name, int params, int slot)
+    {
+        this(name, glGetUniformLocation(shader.getID(), name), params, slot);
+    }
+
+    UniformInfo(String name, int location, int params, int slot)
+    {
+        this.name = name;
+        this.location = location;
+        this.params = params;
+        this.slot = slot;
+        shadow = new int[params];
+        uploaded = false;
+    }
+
+    ///Stores bits as component i of the shadow copy, returns true if
+    ///the value differs from what the GL last received. A uniform that
+    ///was never uploaded always reports a change.
+    public boolean update(int i, int bits)
+    {
+        boolean changed = !uploaded || shadow[i] != bits;
+        shadow[i] = bits;
+        if(i == params - 1)
+            uploaded = true;
+        return changed;
+    }
+
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    public int getLocation()
+    {
+        return location;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getParamCount()
+    {
+        return params;
+    }
+
+    public boolean equals(Object o)
+    {
+        if(!(o instanceof UniformInfo other)) return false;
+        return this.location == other.location &&
+                this.name.equals(other.name) &&
+                this.params == other.params;
+    }
+}
@@ -0,0 +1,311 @@
+package engine;
+
+import org.joml.*;
+
+import java.lang.Math;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL33.*;
+
+///Describes how the vertex streams of a MeshData are encoded in a vertex
+///buffer. Each stream picks one of a few formats, the layout works out the
+///offsets, encodes vertices into that form and points the attributes of a
+///VAO at them. Streams go to fixed locations, 2 to 6 belong to the instance
+///attributes:
+///
+///  0 position, 1 texture coordinates, 7 normal
+///
+///Every attribute starts 4 byte aligned, three 16 bit position components
+///are padded to eight bytes.
+public class VertexLayout
+{
+    public enum Position
+    {
+        ///32 bit floats, 12 bytes
+        FLOAT,
+        ///16 bit floats, 8 bytes. About three significant digits which is
+        ///plenty for vertices within a few hundred units of the origin.
+        HALF,
+        ///Signed normalized shorts, 8 bytes. Positions are stored relative to
+        ///the mesh bounds, the shader undoes that with the mesh's positionScale
+        ///and positionOffset, precision is 1/65535 of the mesh size.
+        SNORM16,
+    }
+
+    public enum TexCoord
+    {
+        NONE,
+        ///32 bit floats, 8 bytes
+        FLOAT,
+        ///Unsigned normalized shorts, 4 bytes. Coordinates outside 0 to 1,
+        ///from textures that tile, are stored relative to the mesh's range
+        ///and the shader undoes that with texCoordScale and texCoordOffset,
+        ///precision is then 1/65535 of that range.
+        UNORM16,
+    }
+
+    public enum Normal
+    {
+        NONE,
+        ///32 bit floats, 12 bytes
+        FLOAT,
+        ///10 bits per component in a single int, GL_INT_2_10_10_10_REV, 4 bytes
+        PACKED,
+    }
+
+    public static final int POSITION_LOCATION = 0;
+    public static final int TEXCOORD_LOCATION = 1;
+    public static final int NORMAL_LOCATION   = 7;
+
+    ///One attribute pointer, offset is from the start of the vertex
+    public record Attribute(int location, int size, int type, boolean normalized, int offset) {}
+
+    ///Plain floats for every stream, what the savings are measured against
+    public static final VertexLayout FULL = new VertexLayout(Position.FLOAT, TexCoord.FLOAT, Normal.FLOAT);
+    ///Smallest encoding, 16 bytes a vertex with all three streams
+    public static final VertexLayout COMPACT = new VertexLayout(Position.SNORM16, TexCoord.UNORM16, Normal.PACKED);
+
+    public final Position position;
+    public final TexCoord texCoord;
+    public final Normal normal;
+
+    private final List<Attribute> attributes;
+    private final int stride;
+
+    public VertexLayout(Position position, TexCoord texCoord, Normal normal)
+    {
+        this.position = position;
+        this.texCoord = texCoord;
+        this.normal = normal;
+
+        ArrayList<Attribute> list = new ArrayList<Attribute>();
+        int offset = 0;
+
+        switch(position) {
+            case FLOAT   -> list.add(new Attribute(POSITION_LOCATION, 3, GL_FLOAT, false, offset));
+            case HALF    -> list.add(new Attribute(POSITION_LOCATION, 3, GL_HALF_FLOAT, false, offset));
+            case SNORM16 -> list.add(new Attribute(POSITION_LOCATION, 3, GL_SHORT, true, offset));
+        }
+        offset += position == Position.FLOAT ? 12 : 8;
+
+        switch(texCoord) {
+            case FLOAT   -> { list.add(new Attribute(TEXCOORD_LOCATION, 2, GL_FLOAT, false, offset)); offset += 8; }
+            case UNORM16 -> { list.add(new Attribute(TEXCOORD_LOCATION, 2, GL_UNSIGNED_SHORT, true, offset)); offset += 4; }
+            case NONE    -> {}
+        }
+
+        switch(normal) {
+            case FLOAT  -> { list.add(new Attribute(NORMAL_LOCATION, 3, GL_FLOAT, false, offset)); offset += 12; }
+            case PACKED -> { list.add(new Attribute(NORMAL_LOCATION, 4, GL_INT_2_10_10_10_REV, true, offset)); offset += 4; }
+            case NONE   -> {}
+        }
+
+        attributes = List.copyOf(list);
+        stride = offset;
+    }
+
+    ///The same layout minus the streams data doesn't have
+    public VertexLayout fitTo(MeshData data)
+    {
+        TexCoord t = data.texCoords == null ? TexCoord.NONE : texCoord;
+        Normal n = data.normals == null ? Normal.NONE : normal;
+        return t == texCoord && n == normal ? this : new VertexLayout(position, t, n);
+    }
+
+    ///The same streams stored as plain floats
+    public VertexLayout asFloats()
+    {
+        return new VertexLayout(Position.FLOAT,
+                texCoord == TexCoord.NONE ? TexCoord.NONE : TexCoord.FLOAT,
+                normal == Normal.NONE ? Normal.NONE : Normal.FLOAT);
+    }
+
+    public int getStride()
+    {
+        return stride;
+    }
+
+    public List<Attribute> getAttributes()
+    {
+        return attributes;
+    }
+
+    ///Points the attributes of the bound VAO at the vertex buffer bound to
+    ///GL_ARRAY_BUFFER, with the first vertex at byte offset base
+    public void apply(long base)
+    {
+        for(Attribute a : attributes)
+        {
+            glVertexAttribPointer(a.location(), a.size(), a.type(), a.normalized(), stride, base + a.offset());
+            glEnableVertexAttribArray(a.location());
+        }
+    }
+
+    ///What the shader has to do to get object space positions back, pos *
+    ///scale + offset. Identity unless positions are SNORM16.
+    public void getDequantization(MeshData data, Vector3f scale, Vector3f offset)
+    {
+        if(position != Position.SNORM16)
+        {
+            scale.set(1.0f);
+            offset.set(0.0f);
+            return;
+        }
+
+        Vector3f min = new Vector3f(), max = new Vector3f();
+        data.getBounds(min, max);
+        max.add(min, offset).mul(0.5f);
+        max.sub(min, scale).mul(0.5f);
+
+        //A flat mesh still needs something to divide by
+        scale.set(Math.max(scale.x, 1e-6f), Math.max(scale.y, 1e-6f), Math.max(scale.z, 1e-6f));
+    }
+
+    ///What the shader has to do to get the texture coordinates back, tex *
+    ///scale + offset. Identity unless they are UNORM16 and leave 0 to 1.
+    public void getTexCoordDequantization(MeshData data, Vector2f scale, Vector2f offset)
+    {
+        scale.set(1.0f);
+        offset.set(0.0f);
+        if(texCoord != TexCoord.UNORM16 || data.texCoords == null)
+            return;
+
+        float minU = Float.POSITIVE_INFINITY, minV = Float.POSITIVE_INFINITY;
+        float maxU = Float.NEGATIVE_INFINITY, maxV = Float.NEGATIVE_INFINITY;
+        for(int i = 0; i < data.texCoords.length; i += 2)
+        {
+            minU = Math.min(minU, data.texCoords[i]);
+            maxU = Math.max(maxU, data.texCoords[i]);
+            minV = Math.min(minV, data.texCoords[i + 1]);
+            maxV = Math.max(maxV, data.texCoords[i + 1]);
+        }
+
+        //Meshes within 0 to 1 keep the plain encoding
+        if(minU >= 0.0f && minV >= 0.0f && maxU <= 1.0f && maxV <= 1.0f)
+            return;
+
+        offset.set(minU, minV);
+        scale.set(Math.max(maxU - minU, 1e-6f), Math.max(maxV - minV, 1e-6f));
+    }
+
+    ///Writes every vertex of data at the position of dst, the scales and
+    ///offsets come from getDequantization and getTexCoordDequantization.
+    ///Leaves dst positioned after the last vertex.
+    public void encode(MeshData data, Vector3fc scale, Vector3fc offset, Vector2fc texScale, Vector2fc texOffset, ByteBuffer dst)
+    {
+        if(data.texCoords == null && texCoord != TexCoord.NONE)
+            throw new IllegalArgumentException(data.name + " has no texture coordinates, the layout needs some");
+        if(data.normals == null && normal != Normal.NONE)
+            throw new IllegalArgumentException(data.name + " has no normals, the layout needs some");
+
+        int base = dst.position();
+        int count = data.getVertexCount();
+        for(int v = 0; v < count; v++)
+        {
+            int p = base + v * stride;
+            float x = data.positions[v * 3], y = data.positions[v * 3 + 1], z = data.positions[v * 3 + 2];
+            switch(position) {
+                case FLOAT -> dst.putFloat(p, x).putFloat(p + 4, y).putFloat(p + 8, z);
+                case HALF  -> dst.putShort(p, toHalf(x)).putShort(p + 2, toHalf(y)).putShort(p + 4, toHalf(z)).putShort(p + 6, (short)0);
+                case SNORM16 -> dst
+                        .putShort(p,     toSnorm16((x - offset.x()) / scale.x()))
+                        .putShort(p + 2, toSnorm16((y - offset.y()) / scale.y()))
+                        .putShort(p + 4, toSnorm16((z - offset.z()) / scale.z()))
+                        .putShort(p + 6, (short)0);
+            }
+            p += position == Position.FLOAT ? 12 : 8;
+
+            if(texCoord != TexCoord.NONE)
+            {
+                float u = data.texCoords[v * 2], t = data.texCoords[v * 2 + 1];
+                if(texCoord == TexCoord.FLOAT)
+                {
+                    dst.putFloat(p, u).putFloat(p + 4, t);
+                    p += 8;
+                }
+                else
+                {
+                    dst.putShort(p,     toUnorm16((u - texOffset.x()) / texScale.x()))
+                       .putShort(p + 2, toUnorm16((t - texOffset.y()) / texScale.y()));
+                    p += 4;
+                }
+            }
+
+            if(normal != Normal.NONE)
+            {
+                float nx = data.normals[v * 3], ny = data.normals[v * 3 + 1], nz = data.normals[v * 3 + 2];
+                if(normal == Normal.FLOAT)
+                    dst.putFloat(p, nx).putFloat(p + 4, ny).putFloat(p + 8, nz);
+                else
+                    dst.putInt(p, packNormal(nx, ny, nz));
+            }
+        }
+        dst.position(base + count * stride);
+    }
+
+    //IEEE half precision, rounded to nearest. Float.floatToFloat16 does the
+    //same but needs Java 20.
+    static short toHalf(float f)
+    {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if(exponent >= 0x1F)
+        {
+            //Overflow turns into infinity, NaN stays NaN
+            boolean nan = ((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0;
+            return (short)(sign | 0x7C00 | (nan ? 0x200 : 0));
+        }
+        if(exponent <= 0)
+        {
+            //Subnormal or zero
+            if(exponent < -10)
+                return (short)sign;
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            if(((mantissa >> (shift - 1)) & 1) != 0)
+                half++;
+            return (short)(sign | half);
+        }
+
+        int half = sign | (exponent << 10) | (mantissa >> 13);
+        //Round to nearest, a carry into the exponent is still correct
+        if((mantissa & 0x1000) != 0)
+            half++;
+        return (short)half;
+    }
+
+    static short toUnorm16(float f)
+    {
+        return (short)Math.round(Math.min(Math.max(f, 0.0f), 1.0f) * 65535.0f);
+    }
+
+    static short toSnorm16(float f)
+    {
+        return (short)Math.round(Math.min(Math.max(f, -1.0f), 1.0f) * 32767.0f);
+    }
+
+    //x in the low 10 bits, w left at 0
+    static int packNormal(float x, float y, float z)
+    {
+        return toSnorm10(x) | (toSnorm10(y) << 10) | (toSnorm10(z) << 20);
+    }
+
+    private static int toSnorm10(float f)
+    {
+        return Math.round(Math.min(Math.max(f, -1.0f), 1.0f) * 511.0f) & 0x3FF;
+    }
+
+    public String toString()
+    {
+        return String.format("%s/%s/%s, %d bytes", position, texCoord, normal, stride);
+    }
+}
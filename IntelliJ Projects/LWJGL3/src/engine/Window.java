@@ -0,0 +1,162 @@
+package engine;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.glfw.GLFWErrorCallback;
+import org.lwjgl.system.MemoryStack;
+
+import static org.lwjgl.glfw.Callbacks.*;
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.system.MemoryStack.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+public class Window
+{
+    //Core versions to ask for, newest first, 3.3 is the least we run on
+    private static final int[][] GL_VERSIONS = {
+            {4, 6}, {4, 5}, {4, 4}, {4, 3}, {4, 2}, {4, 1}, {4, 0}, {3, 3},
+    };
+
+    private final long handle;
+    private final boolean headless;
+    private final int glMajor, glMinor;
+    private int width, height;
+
+    public Window() { this(800, 600, ""); }
+
+    public Window(int width, int height, String title)
+    {
+        this(width, height, title, 4, 6, false);
+    }
+
+    ///Creates a context of the newest core version up to maxMajor.maxMinor
+    ///the driver hands out, a lower cap tries the fallback paths on new hardware.
+    ///A headless window is never shown and doesn't wait for vsync, draw into
+    ///a RenderTarget instead. Under GLFW's null platform, for machines without
+    ///a display, the context comes from EGL.
+    public Window(int width, int height, String title, int maxMajor, int maxMinor, boolean headless)
+    {
+        this.width = width;
+        this.height = height;
+        this.headless = headless;
+
+        //Configure GLFW
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_RESIZABLE, GLFW_TRUE);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        if(glfwGetPlatform() == GLFW_PLATFORM_NULL)
+            glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_EGL_CONTEXT_API);
+
+        //Failed attempts are expected, keep them out of the error log but
+        //hold on to the last one in case none succeeds
+        GLFWErrorCallback errors = glfwSetErrorCallback(null);
+        long created = NULL;
+        String lastError = null;
+        try(MemoryStack stack = stackPush())
+        {
+            PointerBuffer description = stack.mallocPointer(1);
+            for(int[] version : GL_VERSIONS)
+            {
+                if(version[0] > maxMajor || (version[0] == maxMajor && version[1] > maxMinor))
+                    continue;
+
+                glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, version[0]);
+                glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, version[1]);
+                created = glfwCreateWindow(width, height, title, NULL, NULL);
+                if(created != NULL)
+                    break;
+
+                int code = glfwGetError(description);
+                lastError = String.format("GL %d.%d: %s (0x%X)", version[0], version[1],
+                        code != GLFW_NO_ERROR ? memUTF8Safe(description.get(0)) : "no error reported", code);
+            }
+        }
+        glfwSetErrorCallback(errors);
+
+        handle = created;
+        if(handle == NULL)
+            throw new RuntimeException("Failed to create the window, " + (lastError != null ? "last attempt " + lastError
+                    : "no GL version up to " + maxMajor + "." + maxMinor + " to try"));
+
+        glMajor = glfwGetWindowAttrib(handle, GLFW_CONTEXT_VERSION_MAJOR);
+        glMinor = glfwGetWindowAttrib(handle, GLFW_CONTEXT_VERSION_MINOR);
+
+        //Set the keyCallback
+        glfwSetKeyCallback(handle, Engine::keyCallback);
+
+        glfwMakeContextCurrent(handle);
+
+        //0 is uncapped, 1 is vsync
+        glfwSwapInterval(headless ? 0 : 1);
+        if(!headless)
+            glfwShowWindow(handle);
+
+        //Set the framebuffer callback
+        glfwSetFramebufferSizeCallback(handle, this::framebufferCallback);
+    }
+
+    public boolean shouldClose()
+    {
+        return glfwWindowShouldClose(handle);
+    }
+
+    ///Headless windows have nothing to present, frames end with a flush
+    public void swapBuffers()
+    {
+        if(headless)
+            glFlush();
+        else
+            glfwSwapBuffers(handle);
+    }
+
+    public boolean isHeadless()
+    {
+        return headless;
+    }
+
+    public void cleanup()
+    {
+        //Free and destroy window and its callbacks
+        glfwFreeCallbacks(handle);
+        glfwDestroyWindow(handle);
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public float getAspectRatio()
+    {
+        return (float)width/(float)height;
+    }
+
+    ///Version of the context that was created
+    public int getGLMajor()
+    {
+        return glMajor;
+    }
+
+    public int getGLMinor()
+    {
+        return glMinor;
+    }
+
+    public long getHandle() {
+        return handle;
+    }
+
+    private void framebufferCallback(long window, int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        glViewport(0, 0, width, height);
+    }
+}
@@ -0,0 +1,145 @@
+package engine;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AABBTreeTest
+{
+    //Looks down -z from the origin, nothing behind the camera is visible
+    private static final FrustumIntersection FRUSTUM = new FrustumIntersection(
+            new Matrix4f().perspective((float)Math.toRadians(60.0), 1.0f, 0.1f, 100.0f), false);
+
+    private static int[] query(AABBTree tree)
+    {
+        IntList out = new IntList();
+        tree.query(FRUSTUM, out);
+        int[] ids = Arrays.copyOf(out.array(), out.size());
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static int insertAt(AABBTree tree, int id, float x, float y, float z)
+    {
+        return tree.insert(id, x - 1.0f, y - 1.0f, z - 1.0f, x + 1.0f, y + 1.0f, z + 1.0f);
+    }
+
+    @Test
+    void insertedBoxesAreFound()
+    {
+        AABBTree tree = new AABBTree();
+        insertAt(tree, 0, 0.0f, 0.0f, -10.0f);
+        insertAt(tree, 1, 0.0f, 0.0f, 10.0f);
+        insertAt(tree, 2, 5.0f, 0.0f, -20.0f);
+
+        assertEquals(3, tree.size());
+        assertArrayEquals(new int[]{ 0, 2 }, query(tree));
+    }
+
+    @Test
+    void removedBoxesAreGone()
+    {
+        AABBTree tree = new AABBTree();
+        int a = insertAt(tree, 0, 0.0f, 0.0f, -10.0f);
+        insertAt(tree, 1, 0.0f, 0.0f, -20.0f);
+        tree.remove(a);
+
+        assertEquals(1, tree.size());
+        assertArrayEquals(new int[]{ 1 }, query(tree));
+    }
+
+    @Test
+    void removingTheLastBoxEmptiesTheTree()
+    {
+        AABBTree tree = new AABBTree();
+        tree.remove(insertAt(tree, 0, 0.0f, 0.0f, -10.0f));
+
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.getHeight());
+        assertArrayEquals(new int[0], query(tree));
+    }
+
+    @Test
+    void movedBoxesAreFoundAtTheirNewPlace()
+    {
+        AABBTree tree = new AABBTree();
+        int a = insertAt(tree, 0, 0.0f, 0.0f, -10.0f);
+        insertAt(tree, 1, 0.0f, 0.0f, -20.0f);
+
+        assertTrue(tree.move(a, -1.0f, -1.0f, 9.0f, 1.0f, 1.0f, 11.0f));
+        assertArrayEquals(new int[]{ 1 }, query(tree));
+
+        tree.move(a, -1.0f, -1.0f, -31.0f, 1.0f, 1.0f, -29.0f);
+        assertArrayEquals(new int[]{ 0, 1 }, query(tree));
+        assertEquals(0, tree.getItem(a));
+    }
+
+    @Test
+    void smallMovesStayInsideTheFattenedBox()
+    {
+        AABBTree tree = new AABBTree(0.5f);
+        int a = insertAt(tree, 0, 0.0f, 0.0f, -10.0f);
+
+        assertFalse(tree.move(a, -0.8f, -1.0f, -11.0f, 1.2f, 1.0f, -9.0f));
+        assertTrue(tree.move(a, 0.0f, -1.0f, -11.0f, 2.0f, 1.0f, -9.0f));
+    }
+
+    @Test
+    void removedProxiesAreReused()
+    {
+        AABBTree tree = new AABBTree();
+        int[] proxies = new int[8];
+        for(int i = 0; i < proxies.length; i++)
+            proxies[i] = insertAt(tree, i, i * 3.0f, 0.0f, -10.0f);
+
+        tree.remove(proxies[3]);
+        int proxy = insertAt(tree, 42, 0.0f, 0.0f, -50.0f);
+
+        assertEquals(proxies[3], proxy);
+        assertEquals(42, tree.getItem(proxy));
+        assertEquals(proxies.length, tree.size());
+
+        int[] found = query(tree);
+        assertTrue(Arrays.binarySearch(found, 3) < 0);
+        assertTrue(Arrays.binarySearch(found, 42) >= 0);
+    }
+
+    @Test
+    void staysBalancedUnderManyInsertsAndRemoves()
+    {
+        AABBTree tree = new AABBTree();
+        int[] proxies = new int[4096];
+        for(int i = 0; i < proxies.length; i++)
+            proxies[i] = insertAt(tree, i, i, 0.0f, 0.0f);
+        for(int i = 0; i < proxies.length; i += 2)
+            tree.remove(proxies[i]);
+
+        assertEquals(proxies.length / 2, tree.size());
+        //A balanced tree over 2048 leaves is about 11 deep
+        assertTrue(tree.getHeight() < 24, "Height " + tree.getHeight());
+    }
+
+    @Test
+    void subtreesCoverEveryLeafOnce()
+    {
+        AABBTree tree = new AABBTree();
+        for(int i = 0; i < 1000; i++)
+            insertAt(tree, i, (i % 10) * 3.0f - 15.0f, (i / 10 % 10) * 3.0f - 15.0f, -(i / 100) * 3.0f - 5.0f);
+
+        IntList roots = new IntList(), scratch = new IntList();
+        tree.getSubtrees(8, roots, scratch);
+        assertTrue(roots.size() >= 8);
+
+        IntList out = new IntList(), stack = new IntList(), collect = new IntList();
+        for(int i = 0; i < roots.size(); i++)
+            tree.query(FRUSTUM, roots.get(i), out, stack, collect);
+        int[] split = Arrays.copyOf(out.array(), out.size());
+        Arrays.sort(split);
+
+        assertArrayEquals(query(tree), split);
+    }
+}
@@ -0,0 +1,88 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+class FramePrepTest
+{
+    private static final Vector3f Y_AXIS = new Vector3f(0.0f, 1.0f, 0.0f);
+
+    private static Scene scene(int count)
+    {
+        Scene scene = new Scene(count);
+        Random rng = new Random(6);
+        Vector3f pos = new Vector3f();
+        for(int i = 0; i < count; i++)
+        {
+            pos.set(rng.nextFloat() * 200.0f - 100.0f, rng.nextFloat() * 200.0f - 100.0f, -rng.nextFloat() * 200.0f);
+            scene.add(pos, rng.nextFloat() * 360.0f, Y_AXIS, 1.0f);
+        }
+        return scene;
+    }
+
+    private static int[] prepare(FramePrep prep, Scene scene, FloatBuffer dest)
+    {
+        Matrix4f viewProj = new Matrix4f().perspective((float)Math.toRadians(60.0), 1.0f, 0.1f, 300.0f);
+        int written = prep.prepare(scene, viewProj, new Vector3f(), dest, 0);
+        assertEquals(written, prep.getVisibleIds().size());
+        return Arrays.copyOf(prep.getVisibleIds().array(), written);
+    }
+
+    @Test
+    void workersMergeInTheSameOrderEveryFrame()
+    {
+        Scene scene = scene(50_000);
+        FramePrep serial = new FramePrep(1), parallel = new FramePrep(4);
+        FloatBuffer dest = memAllocFloat(scene.getIdLimit() * 16);
+        try
+        {
+            int[] first = prepare(parallel, scene, dest);
+            assertTrue(first.length > 1000, first.length + " visible");
+            for(int frame = 0; frame < 20; frame++)
+                assertArrayEquals(first, prepare(parallel, scene, dest));
+
+            //The serial run walks the whole tree at once, only the set has to match
+            int[] all = prepare(serial, scene, dest);
+            int[] sorted = first.clone();
+            Arrays.sort(all);
+            Arrays.sort(sorted);
+            assertArrayEquals(all, sorted);
+        }
+        finally
+        {
+            memFree(dest);
+            serial.cleanup();
+            parallel.cleanup();
+            scene.cleanup();
+        }
+    }
+
+    @Test
+    void matricesLineUpWithTheirIds()
+    {
+        Scene scene = scene(20_000);
+        FramePrep prep = new FramePrep(4);
+        FloatBuffer dest = memAllocFloat(scene.getIdLimit() * 16);
+        try
+        {
+            int[] ids = prepare(prep, scene, dest);
+            Matrix4f expected = new Matrix4f(), written = new Matrix4f();
+            for(int i = 0; i < ids.length; i++)
+                assertEquals(scene.getModel(ids[i], expected), written.set(i * 16, dest), "Matrix " + i);
+        }
+        finally
+        {
+            memFree(dest);
+            prep.cleanup();
+            scene.cleanup();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.Math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LodBuilderTest
+{
+    private static final float[] TARGETS = { 0.005f, 0.02f, 0.08f };
+
+    //Unit sphere of rings x segments quads, vertices shared except along the seam
+    private static MeshData sphere(int rings, int segments)
+    {
+        float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+        for(int r = 0, v = 0; r <= rings; r++)
+        {
+            double theta = Math.PI * r / rings;
+            for(int s = 0; s <= segments; s++, v += 3)
+            {
+                double phi = 2.0 * Math.PI * s / segments;
+                positions[v]     = (float)(Math.sin(theta) * Math.cos(phi));
+                positions[v + 1] = (float)Math.cos(theta);
+                positions[v + 2] = (float)(Math.sin(theta) * Math.sin(phi));
+            }
+        }
+
+        int[] indices = new int[rings * segments * 6];
+        for(int r = 0, i = 0; r < rings; r++)
+        {
+            for(int s = 0; s < segments; s++, i += 6)
+            {
+                int a = r * (segments + 1) + s, b = a + segments + 1;
+                indices[i]     = a;
+                indices[i + 1] = b;
+                indices[i + 2] = a + 1;
+                indices[i + 3] = a + 1;
+                indices[i + 4] = b;
+                indices[i + 5] = b + 1;
+            }
+        }
+        return new MeshData("sphere", positions, null, null, indices);
+    }
+
+    @Test
+    void everyLevelHasFewerTrianglesThanTheOneBefore()
+    {
+        MeshData data = sphere(64, 128);
+        LodBuilder.Level[] levels = LodBuilder.build(data, TARGETS);
+
+        assertEquals(TARGETS.length + 1, levels.length);
+        assertSame(data.indices, levels[0].indices());
+        assertEquals(0.0f, levels[0].error());
+        for(int i = 1; i < levels.length; i++)
+        {
+            int before = levels[i - 1].indices().length / 3, after = levels[i].indices().length / 3;
+            assertTrue(after < before, "Level " + i + " has " + after + " triangles, level " + (i - 1) + " " + before);
+            assertTrue(levels[i].error() >= levels[i - 1].error(), "Level " + i + " has a smaller error than the one before");
+        }
+
+        //A sphere allowed to move by 8% of its size needs a small fraction of 16384 triangles
+        int coarsest = levels[levels.length - 1].indices().length / 3;
+        assertTrue(coarsest < data.getTriangleCount() / 10, coarsest + " triangles at the coarsest level");
+    }
+
+    @Test
+    void levelsOnlyUseTheMeshVertices()
+    {
+        MeshData data = sphere(32, 64);
+        for(LodBuilder.Level level : LodBuilder.build(data, TARGETS))
+        {
+            assertEquals(0, level.indices().length % 3);
+            for(int index : level.indices())
+                assertTrue(index >= 0 && index < data.getVertexCount(), "Index " + index + " out of range");
+        }
+    }
+
+    @Test
+    void errorsStayWithinTheirTargets()
+    {
+        MeshData data = sphere(64, 128);
+        LodBuilder.Level[] levels = LodBuilder.build(data, TARGETS);
+        //Errors are in object space, the sphere is 2 units across
+        for(int i = 1; i < levels.length; i++)
+            assertTrue(levels[i].error() <= TARGETS[i - 1] * 2.0f * 1.01f, "Level " + i + " error " + levels[i].error());
+    }
+
+    @Test
+    void levelsThatCantShrinkShareTheFinerOne()
+    {
+        //A single triangle can't be simplified any further
+        MeshData data = new MeshData("triangle", new float[]{ 0.0f, 0.0f, 0.0f,  1.0f, 0.0f, 0.0f,  0.0f, 1.0f, 0.0f }, null, null, new int[]{ 0, 1, 2 });
+        LodBuilder.Level[] levels = LodBuilder.build(data, TARGETS);
+
+        for(LodBuilder.Level level : levels)
+            assertSame(levels[0], level);
+    }
+
+    @Test
+    void noTargetsIsFullDetailOnly()
+    {
+        MeshData data = sphere(8, 16);
+        LodBuilder.Level[] levels = LodBuilder.build(data, new float[0]);
+
+        assertEquals(1, levels.length);
+        assertSame(data.indices, levels[0].indices());
+    }
+}
@@ -0,0 +1,125 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LodSelectorTest
+{
+    //Errors of 0, 1 and 4 units, with a 90 degree view 2 pixels high a unit
+    //at distance d covers 1 / d pixels, so level 1 is good enough from a
+    //distance of 1 and level 2 from 4
+    private static final float[] ERRORS = { 0.0f, 1.0f, 4.0f };
+
+    private static LodSelector selector(float hysteresis)
+    {
+        LodSelector lod = new LodSelector(1.0f, hysteresis);
+        lod.setView(90.0f, 2);
+        lod.setLevels(0, ERRORS);
+        lod.ensureCapacity(1);
+        return lod;
+    }
+
+    @Test
+    void levelsRiseWithDistance()
+    {
+        LodSelector lod = selector(LodSelector.DEFAULT_HYSTERESIS);
+        int previous = 0;
+        for(float d = 0.1f; d < 100.0f; d *= 1.01f)
+        {
+            int level = lod.select(0, 0, d);
+            assertTrue(level >= previous, "Level fell from " + previous + " to " + level + " moving away at " + d);
+            previous = level;
+        }
+        assertEquals(ERRORS.length - 1, previous);
+
+        for(float d = 100.0f; d > 0.1f; d /= 1.01f)
+        {
+            int level = lod.select(0, 0, d);
+            assertTrue(level <= previous, "Level rose from " + previous + " to " + level + " coming closer at " + d);
+            previous = level;
+        }
+        assertEquals(0, previous);
+    }
+
+    @Test
+    void coarserLevelsWaitForTheHysteresis()
+    {
+        LodSelector lod = selector(0.25f);
+
+        //Level 1 would do from 1, it is only taken once its error is a
+        //quarter under budget, at 1 / 0.75
+        assertEquals(0, lod.select(0, 0, 1.2f));
+        assertEquals(1, lod.select(0, 0, 1.34f));
+        //Coming back it is kept until it really is too coarse
+        assertEquals(1, lod.select(0, 0, 1.01f));
+        assertEquals(0, lod.select(0, 0, 0.99f));
+    }
+
+    @Test
+    void noFlappingAtAThreshold()
+    {
+        Random rng = new Random(19);
+        LodSelector lod = selector(LodSelector.DEFAULT_HYSTERESIS);
+        //Right at each threshold, wobbling by less than the hysteresis band
+        for(float threshold : new float[]{ 1.0f, 4.0f, 1.0f / 0.75f, 4.0f / 0.75f })
+        {
+            lod.select(0, 0, threshold);
+            int changes = 0, previous = lod.select(0, 0, threshold);
+            for(int frame = 0; frame < 1000; frame++)
+            {
+                int level = lod.select(0, 0, threshold * (1.0f + (rng.nextFloat() * 2.0f - 1.0f) * 0.1f));
+                if(level != previous)
+                    changes++;
+                previous = level;
+            }
+            assertTrue(changes <= 1, changes + " level changes around " + threshold);
+        }
+    }
+
+    @Test
+    void withoutHysteresisTheThresholdFlaps()
+    {
+        LodSelector lod = selector(0.0f);
+        int changes = 0, previous = lod.select(0, 0, 1.0f);
+        for(int frame = 0; frame < 100; frame++)
+        {
+            int level = lod.select(0, 0, frame % 2 == 0 ? 0.99f : 1.01f);
+            if(level != previous)
+                changes++;
+            previous = level;
+        }
+        assertTrue(changes > 50, "Only " + changes + " changes");
+    }
+
+    @Test
+    void objectsKeepTheirOwnLevels()
+    {
+        LodSelector lod = selector(LodSelector.DEFAULT_HYSTERESIS);
+        lod.ensureCapacity(2);
+
+        //The same distance inside the band leaves each at the level it came with
+        lod.select(0, 0, 0.5f);
+        lod.select(1, 0, 2.0f);
+        assertEquals(0, lod.select(0, 0, 1.2f));
+        assertEquals(1, lod.select(1, 0, 1.2f));
+    }
+
+    @Test
+    void shapesWithoutLevelsStayAtFullDetail()
+    {
+        LodSelector lod = selector(LodSelector.DEFAULT_HYSTERESIS);
+        assertEquals(1, lod.getLevelCount(3));
+        assertEquals(0, lod.select(0, 3, 1000.0f));
+    }
+
+    @Test
+    void rejectsBadSettings()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new LodSelector(0.0f, 0.25f));
+        assertThrows(IllegalArgumentException.class, () -> new LodSelector(1.0f, 1.0f));
+        assertThrows(IllegalArgumentException.class, () -> new LodSelector(1.0f, -0.1f));
+    }
+}
@@ -0,0 +1,183 @@
+package engine;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneTest
+{
+    private static final Vector3f Y_AXIS = new Vector3f(0.0f, 1.0f, 0.0f);
+    //How far AABBTree grows leaf boxes by default
+    private static final float MARGIN = 0.1f;
+
+    private final Scene scene = new Scene();
+
+    @AfterEach
+    void cleanup()
+    {
+        scene.cleanup();
+    }
+
+    private static Matrix4f randomCamera(Random rng)
+    {
+        return new Matrix4f()
+                .perspective((float)Math.toRadians(20.0 + rng.nextFloat() * 70.0), 0.5f + rng.nextFloat() * 1.5f, 0.1f, 20.0f + rng.nextFloat() * 80.0f)
+                .lookAt(rng.nextFloat() * 20.0f - 10.0f, rng.nextFloat() * 20.0f - 10.0f, rng.nextFloat() * 20.0f - 10.0f,
+                        rng.nextFloat() * 100.0f - 50.0f, rng.nextFloat() * 100.0f - 50.0f, rng.nextFloat() * 100.0f - 50.0f,
+                        0.0f, 1.0f, 0.0f);
+    }
+
+    private static int[] sorted(IntList list)
+    {
+        int[] ids = Arrays.copyOf(list.array(), list.size());
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    //Everything cull() returns must be near the frustum, everything whose
+    //bounding sphere touches it must be returned
+    private void assertCullMatchesBruteForce(Matrix4f viewProj, boolean moved)
+    {
+        IntList visible = new IntList();
+        scene.cull(viewProj, visible);
+        int[] culled = sorted(visible);
+        for(int i = 1; i < culled.length; i++)
+            assertNotEquals(culled[i - 1], culled[i], "Object " + culled[i] + " returned twice");
+
+        //Sphere tests need normalized planes
+        FrustumIntersection frustum = new FrustumIntersection(viewProj, true);
+        Vector3f pos = new Vector3f();
+        for(int id = 0; id < scene.getIdLimit(); id++)
+        {
+            if(!scene.contains(id))
+            {
+                assertTrue(Arrays.binarySearch(culled, id) < 0, "Removed object " + id + " was returned");
+                continue;
+            }
+
+            scene.getPosition(id, pos);
+            float r = scene.getRadius(id);
+            boolean found = Arrays.binarySearch(culled, id) >= 0;
+            if(frustum.testSphere(pos, r))
+                assertTrue(found, "Object " + id + " at " + pos + " touches the frustum but was culled");
+
+            //Leaf boxes are fattened, a moved one may still hold a box from
+            //before so only unmoved objects can be held to the margin
+            float slack = r + MARGIN;
+            if(found && !moved)
+                assertTrue(frustum.testAab(pos.x - slack, pos.y - slack, pos.z - slack, pos.x + slack, pos.y + slack, pos.z + slack),
+                        "Object " + id + " at " + pos + " is outside the frustum but was returned");
+        }
+    }
+
+    private void populate(Random rng, int count)
+    {
+        Vector3f pos = new Vector3f();
+        for(int i = 0; i < count; i++)
+        {
+            pos.set(rng.nextFloat() * 100.0f - 50.0f, rng.nextFloat() * 100.0f - 50.0f, rng.nextFloat() * 100.0f - 50.0f);
+            scene.add(pos, rng.nextFloat() * 360.0f, Y_AXIS, 0.2f + rng.nextFloat() * 2.0f);
+        }
+    }
+
+    @Test
+    void cullMatchesBruteForceOnRandomScenes()
+    {
+        Random rng = new Random(5);
+        populate(rng, 5000);
+        for(int i = 0; i < 50; i++)
+            assertCullMatchesBruteForce(randomCamera(rng), false);
+    }
+
+    @Test
+    void cullMatchesBruteForceAfterMovesAndRemoves()
+    {
+        Random rng = new Random(11);
+        populate(rng, 3000);
+        for(int round = 0; round < 10; round++)
+        {
+            for(int i = 0; i < 300; i++)
+            {
+                int id = rng.nextInt(scene.getIdLimit());
+                if(!scene.contains(id))
+                    continue;
+
+                if(rng.nextInt(4) == 0)
+                    scene.remove(id);
+                else
+                    scene.move(id, rng.nextFloat() * 100.0f - 50.0f, rng.nextFloat() * 100.0f - 50.0f, rng.nextFloat() * 100.0f - 50.0f);
+            }
+            populate(rng, 50);
+            assertCullMatchesBruteForce(randomCamera(rng), true);
+        }
+    }
+
+    @Test
+    void removedIdsAreReused()
+    {
+        Vector3f pos = new Vector3f(0.0f, 0.0f, -10.0f);
+        int a = scene.add(pos, 0.0f, Y_AXIS, 1.0f);
+        int b = scene.add(pos, 0.0f, Y_AXIS, 1.0f);
+        scene.remove(a);
+
+        assertFalse(scene.contains(a));
+        assertEquals(1, scene.size());
+        assertEquals(a, scene.add(pos, 0.0f, Y_AXIS, 1.0f));
+        assertEquals(2, scene.size());
+        assertEquals(2, scene.getIdLimit());
+        assertTrue(scene.contains(b));
+    }
+
+    @Test
+    void unknownIdsAreRejected()
+    {
+        int id = scene.add(new Vector3f(), 0.0f, Y_AXIS, 1.0f);
+        scene.remove(id);
+
+        assertThrows(IllegalArgumentException.class, () -> scene.remove(id));
+        assertThrows(IllegalArgumentException.class, () -> scene.move(id, 0.0f, 0.0f, 0.0f));
+        assertThrows(IllegalArgumentException.class, () -> scene.move(7, 0.0f, 0.0f, 0.0f));
+    }
+
+    @Test
+    void movedObjectsAreCulledAtTheirNewPlace()
+    {
+        Matrix4f viewProj = new Matrix4f().perspective((float)Math.toRadians(45.0), 1.0f, 0.1f, 100.0f);
+        int id = scene.add(new Vector3f(0.0f, 0.0f, -10.0f), 0.0f, Y_AXIS, 1.0f);
+        IntList visible = new IntList();
+
+        scene.cull(viewProj, visible);
+        assertArrayEquals(new int[]{ id }, sorted(visible));
+
+        scene.move(id, 0.0f, 0.0f, 10.0f);
+        scene.cull(viewProj, visible);
+        assertEquals(0, visible.size());
+    }
+
+    @Test
+    void childrenFollowTheirParent()
+    {
+        int parent = scene.add(new Vector3f(0.0f, 0.0f, 10.0f), 0.0f, Y_AXIS, 1.0f);
+        int child = scene.add(parent, new Vector3f(0.0f, 0.0f, 0.0f), 0.0f, Y_AXIS, 1.0f);
+        Matrix4f viewProj = new Matrix4f().perspective((float)Math.toRadians(45.0), 1.0f, 0.1f, 100.0f);
+        IntList visible = new IntList();
+
+        scene.cull(viewProj, visible);
+        assertEquals(0, visible.size());
+
+        //Moving the parent in front of the camera brings the child along
+        scene.move(parent, 0.0f, 0.0f, -10.0f);
+        scene.cull(viewProj, visible);
+        assertArrayEquals(new int[]{ parent, child }, sorted(visible));
+        assertEquals(-10.0f, scene.getPosition(child, new Vector3f()).z, 1.0e-5f);
+
+        assertThrows(IllegalStateException.class, () -> scene.remove(parent));
+    }
+}
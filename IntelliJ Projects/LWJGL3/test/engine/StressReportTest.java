@@ -0,0 +1,65 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StressReportTest
+{
+    private static String[] row(Path file, int n) throws IOException
+    {
+        List<String> lines = Files.readAllLines(file);
+        return lines.get(n).split(",", -1);
+    }
+
+    private static String column(Path file, String[] row, String name) throws IOException
+    {
+        List<String> header = List.of(row(file, 0));
+        return row[header.indexOf(name)];
+    }
+
+    @Test
+    void unmeasuredColumnsAreLeftEmpty(@TempDir Path dir) throws IOException
+    {
+        Path file = dir.resolve("report.csv");
+        StressReport report = new StressReport();
+        for(int i = 0; i < 10; i++)
+            report.add(16_000_000L, StressReport.NOT_MEASURED, 0, StressReport.NOT_MEASURED, 2, StressReport.NOT_MEASURED, StressReport.NOT_MEASURED);
+        report.write(file, "grid", 1000, 42, "gpu-driven", "cube", false, StressReport.NOT_MEASURED);
+
+        String[] row = row(file, 1);
+        assertEquals(row(file, 0).length, row.length);
+        for(String name : new String[]{ "workers", "prep_mean_ms", "prep_p99_ms", "gpu_mean_ms", "gpu_p99_ms", "triangles_mean", "visible_mean" })
+            assertEquals("", column(file, row, name), name);
+        assertEquals("16.0000", column(file, row, "frame_p50_ms"));
+        assertEquals("2.0", column(file, row, "draw_calls_mean"));
+    }
+
+    @Test
+    void measuredColumnsAverageOverTheirOwnFrames(@TempDir Path dir) throws IOException
+    {
+        Path file = dir.resolve("report.csv");
+        StressReport report = new StressReport();
+        report.add(10_000_000L, 1_000_000L, 0, 4_000_000L, 5, 1200, 100);
+        report.add(10_000_000L, 3_000_000L, 0, StressReport.NOT_MEASURED, 5, 1200, 300);
+        report.write(file, "city", 1000, 7, "instanced", "bunny.obj", true, 4);
+        report.write(file, "city", 1000, 7, "instanced", "bunny.obj", true, 4);
+
+        //Appended under a single header
+        assertEquals(3, Files.readAllLines(file).size());
+        String[] row = row(file, 1);
+        assertEquals("bunny.obj", column(file, row, "shape"));
+        assertEquals("on", column(file, row, "lod"));
+        assertEquals("4", column(file, row, "workers"));
+        assertEquals("2.0000", column(file, row, "prep_mean_ms"));
+        assertEquals("4.0000", column(file, row, "gpu_mean_ms"));
+        assertEquals("1", column(file, row, "gpu_frames"));
+        assertEquals("200.0", column(file, row, "visible_mean"));
+    }
+}
@@ -0,0 +1,103 @@
+package engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureCacheTest
+{
+    //Hands out placeholders without GL, the test plays the loader's part
+    private final ArrayList<Texture> loaded = new ArrayList<Texture>();
+    private final TextureCache.Source source = (path, sampler) -> {
+        Texture texture = Texture.detached(sampler);
+        loaded.add(texture);
+        return texture;
+    };
+
+    @BeforeEach
+    void textureDirectory(@TempDir Path dir)
+    {
+        Texture.setTextureDirectory(dir.toString());
+    }
+
+    @Test
+    void failedLoadsAreRetried()
+    {
+        TextureCache cache = new TextureCache(source, 1L << 20);
+        Texture first = cache.acquire("missing.png");
+        first.markFailed();
+        cache.update();
+
+        Texture second = cache.acquire("missing.png");
+        assertNotSame(first, second);
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        //The failed placeholder lives until its holder lets go
+        assertFalse(first.isDeleted());
+        cache.release(first);
+        assertTrue(first.isDeleted());
+        assertEquals(1, cache.size());
+
+        cache.release(second);
+        assertFalse(second.isDeleted());
+    }
+
+    @Test
+    void unheldFailedTexturesAreDeleted()
+    {
+        TextureCache cache = new TextureCache(source, 1L << 20);
+        Texture texture = cache.acquire("missing.png");
+        cache.release(texture);
+        texture.markFailed();
+        cache.update();
+
+        assertTrue(texture.isDeleted());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getResidentBytes());
+    }
+
+    @Test
+    void residentBytesFollowUploadsAndEvictions()
+    {
+        TextureCache cache = new TextureCache(source, 2048);
+        Texture a = cache.acquire("a.png"), b = cache.acquire("b.png");
+        //Two 1x1 RGBA placeholders
+        assertEquals(8, cache.getResidentBytes());
+
+        a.markResident(16, 16, 4, false);
+        b.markResident(16, 16, 4, false);
+        cache.update();
+        assertEquals(2048, cache.getResidentBytes());
+
+        //Held textures count but stay
+        cache.setBudget(1024);
+        assertEquals(0, cache.getEvictions());
+
+        cache.release(a);
+        assertTrue(a.isDeleted());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1024, cache.getResidentBytes());
+        assertFalse(b.isDeleted());
+    }
+
+    @Test
+    void unheldTexturesAreSharedUntilEvicted()
+    {
+        TextureCache cache = new TextureCache(source, 1L << 20);
+        Texture texture = cache.acquire("a.png");
+        texture.markResident(4, 4, 4, false);
+        cache.update();
+        cache.release(texture);
+
+        assertSame(texture, cache.acquire("a.png"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, loaded.size());
+        assertThrows(IllegalArgumentException.class, () -> cache.release(Texture.detached(TextureSampler.DEFAULT)));
+    }
+}
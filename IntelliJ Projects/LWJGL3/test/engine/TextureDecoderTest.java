@@ -0,0 +1,126 @@
+package engine;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.stb.STBImageWrite.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+class TextureDecoderTest
+{
+    //Decoding runs on the loader's worker threads, so do it on one here too
+    private static ExecutorService worker;
+
+    @BeforeAll
+    static void startWorker()
+    {
+        worker = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterAll
+    static void stopWorker()
+    {
+        worker.shutdown();
+    }
+
+    private static TextureDecoder.Image decode(String path) throws InterruptedException
+    {
+        try
+        {
+            return worker.submit(() -> TextureDecoder.decode(path)).get();
+        }
+        catch(ExecutionException e)
+        {
+            throw (RuntimeException)e.getCause();
+        }
+    }
+
+    @Test
+    void decodesPng() throws InterruptedException
+    {
+        TextureDecoder.Image image = decode("resources/textures/awesomeface.png");
+        try
+        {
+            assertEquals(512, image.width);
+            assertEquals(512, image.height);
+            assertEquals(4, image.channels);
+            assertEquals(512 * 4, image.getRowBytes());
+            assertEquals(image.getByteSize(), image.getPixels().remaining());
+        }
+        finally
+        {
+            image.free();
+        }
+    }
+
+    @Test
+    void decodesJpg() throws InterruptedException
+    {
+        TextureDecoder.Image image = decode("resources/textures/container.jpg");
+        try
+        {
+            assertEquals(512, image.width);
+            assertEquals(512, image.height);
+            assertEquals(3, image.channels);
+            assertEquals(image.getByteSize(), image.getPixels().remaining());
+        }
+        finally
+        {
+            image.free();
+        }
+    }
+
+    @Test
+    void rowsComeOutBottomUp(@TempDir Path dir) throws InterruptedException
+    {
+        //A 3x2 RGB image, the top row red and the bottom one blue
+        int width = 3, height = 2;
+        ByteBuffer pixels = memAlloc(width * height * 3);
+        for(int x = 0; x < width; x++)
+            pixels.put(x * 3, (byte)255);
+        for(int x = 0; x < width; x++)
+            pixels.put((width + x) * 3 + 2, (byte)255);
+        String path = dir.resolve("rows.png").toString();
+        try
+        {
+            assertTrue(stbi_write_png(path, width, height, 3, pixels, width * 3));
+        }
+        finally
+        {
+            memFree(pixels);
+        }
+
+        TextureDecoder.Image image = decode(path);
+        try
+        {
+            assertEquals(width, image.width);
+            assertEquals(height, image.height);
+            assertEquals(3, image.channels);
+
+            ByteBuffer decoded = image.getPixels();
+            assertEquals((byte)255, decoded.get(2), "First row should be the bottom, blue one");
+            assertEquals(0, decoded.get(0));
+            assertEquals((byte)255, decoded.get(image.getRowBytes()), "Last row should be the top, red one");
+        }
+        finally
+        {
+            image.free();
+        }
+    }
+
+    @Test
+    void missingFilesFail(@TempDir Path dir)
+    {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> decode(dir.resolve("missing.png").toString()));
+        assertTrue(e.getMessage().contains("missing.png"), e.getMessage());
+    }
+}
@@ -0,0 +1,124 @@
+package engine;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformStoreTest
+{
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void cleanup()
+    {
+        pool.shutdown();
+    }
+
+    //Chains of length depth, enough of them for every level to split up
+    private static TransformStore chains(int chains, int depth)
+    {
+        TransformStore store = new TransformStore(chains * depth);
+        for(int chain = 0; chain < chains; chain++)
+        {
+            int parent = TransformStore.NONE;
+            for(int link = 0; link < depth; link++)
+            {
+                parent = store.create(parent);
+                store.setPosition(parent, link == 0 ? chain : 0.0f, 2.5f, 0.0f);
+            }
+        }
+        return store;
+    }
+
+    private static void turn(TransformStore store, float angle)
+    {
+        for(int id = 0; id < store.getIdLimit(); id++)
+        {
+            if(store.getDepth(id) == 0)
+                store.setRotation(id, angle, 0.0f, 0.0f, 1.0f);
+        }
+    }
+
+    private static int[] changed(TransformStore store)
+    {
+        IntList list = store.getChanged();
+        return Arrays.copyOf(list.array(), list.size());
+    }
+
+    @Test
+    void parallelUpdatesMatchTheSerialOne()
+    {
+        TransformStore serial = chains(10_000, 3), parallel = chains(10_000, 3);
+        try
+        {
+            for(int frame = 1; frame <= 3; frame++)
+            {
+                turn(serial, frame * 0.1f);
+                turn(parallel, frame * 0.1f);
+                assertEquals(serial.update(null), parallel.update(pool));
+
+                //Same ids in the same order, not just the same set
+                assertArrayEquals(changed(serial), changed(parallel));
+                Matrix4f a = new Matrix4f(), b = new Matrix4f();
+                for(int id = 0; id < serial.getIdLimit(); id++)
+                    assertEquals(serial.getWorld(id, a), parallel.getWorld(id, b), "World matrix of " + id);
+            }
+        }
+        finally
+        {
+            serial.cleanup();
+            parallel.cleanup();
+        }
+    }
+
+    @Test
+    void changedListsParentsBeforeChildren()
+    {
+        TransformStore store = chains(5_000, 4);
+        try
+        {
+            store.update(pool);
+            turn(store, 0.5f);
+            assertEquals(store.getIdLimit(), store.update(pool));
+
+            int[] ids = changed(store);
+            for(int i = 1; i < ids.length; i++)
+                assertTrue(store.getDepth(ids[i - 1]) <= store.getDepth(ids[i]), "Entity " + ids[i] + " came before its level");
+        }
+        finally
+        {
+            store.cleanup();
+        }
+    }
+
+    @Test
+    void childrenFollowTheirParents()
+    {
+        TransformStore store = new TransformStore(4);
+        try
+        {
+            int root = store.create(TransformStore.NONE);
+            int child = store.create(root);
+            store.setPosition(root, 1.0f, 0.0f, 0.0f);
+            store.setPosition(child, 0.0f, 2.0f, 0.0f);
+            store.setRotation(root, (float)Math.toRadians(90.0), 0.0f, 0.0f, 1.0f);
+            assertEquals(2, store.update(null));
+
+            Matrix4f expected = new Matrix4f().translate(1.0f, 0.0f, 0.0f).rotateZ((float)Math.toRadians(90.0)).translate(0.0f, 2.0f, 0.0f);
+            assertTrue(expected.equals(store.getWorld(child, new Matrix4f()), 1.0e-5f));
+
+            //Nothing dirty, nothing rebuilt
+            assertEquals(0, store.update(null));
+            assertEquals(0, store.getChanged().size());
+        }
+        finally
+        {
+            store.cleanup();
+        }
+    }
+}
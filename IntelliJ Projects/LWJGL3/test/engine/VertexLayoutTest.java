@@ -0,0 +1,76 @@
+package engine;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexLayoutTest
+{
+    private static MeshData quad(float[] texCoords)
+    {
+        float[] positions = { -1.0f, -1.0f, 0.0f,  1.0f, -1.0f, 0.0f,  1.0f, 1.0f, 0.0f,  -1.0f, 1.0f, 0.0f };
+        float[] normals = { 0.0f, 0.0f, 1.0f,  0.0f, 0.0f, 1.0f,  0.0f, 0.0f, 1.0f,  0.0f, 0.0f, 1.0f };
+        return new MeshData("quad", positions, texCoords, normals, new int[]{ 0, 1, 2, 0, 2, 3 });
+    }
+
+    //Encodes data with COMPACT and decodes the texture coordinates the way the shader does
+    private static float[] roundTrip(MeshData data)
+    {
+        VertexLayout layout = VertexLayout.COMPACT;
+        Vector3f scale = new Vector3f(), offset = new Vector3f();
+        Vector2f texScale = new Vector2f(), texOffset = new Vector2f();
+        layout.getDequantization(data, scale, offset);
+        layout.getTexCoordDequantization(data, texScale, texOffset);
+
+        ByteBuffer buffer = ByteBuffer.allocate(data.getVertexCount() * layout.getStride()).order(ByteOrder.nativeOrder());
+        layout.encode(data, scale, offset, texScale, texOffset, buffer);
+
+        float[] decoded = new float[data.getVertexCount() * 2];
+        for(int v = 0; v < data.getVertexCount(); v++)
+        {
+            //Texture coordinates follow the 8 bytes of SNORM16 position
+            int p = v * layout.getStride() + 8;
+            decoded[v * 2]     = (buffer.getShort(p) & 0xFFFF) / 65535.0f * texScale.x + texOffset.x;
+            decoded[v * 2 + 1] = (buffer.getShort(p + 2) & 0xFFFF) / 65535.0f * texScale.y + texOffset.y;
+        }
+        return decoded;
+    }
+
+    @Test
+    void texCoordsWithinZeroToOneKeepThePlainEncoding()
+    {
+        MeshData data = quad(new float[]{ 0.0f, 0.0f,  1.0f, 0.0f,  1.0f, 1.0f,  0.0f, 0.25f });
+        Vector2f scale = new Vector2f(), offset = new Vector2f();
+        VertexLayout.COMPACT.getTexCoordDequantization(data, scale, offset);
+
+        assertEquals(new Vector2f(1.0f, 1.0f), scale);
+        assertEquals(new Vector2f(0.0f, 0.0f), offset);
+        assertArrayEquals(data.texCoords, roundTrip(data), 1.0e-4f);
+    }
+
+    @Test
+    void tilingTexCoordsSurviveUnorm16()
+    {
+        float[] tiling = { -2.0f, -0.5f,  8.0f, -0.5f,  8.0f, 12.75f,  -2.0f, 3.3f };
+        MeshData data = quad(tiling);
+
+        //1/65535 of a range of about 13
+        assertArrayEquals(tiling, roundTrip(data), 13.25f / 65535.0f);
+    }
+
+    @Test
+    void floatLayoutsLeaveTexCoordsAlone()
+    {
+        MeshData data = quad(new float[]{ -2.0f, -0.5f,  8.0f, -0.5f,  8.0f, 12.75f,  -2.0f, 3.3f });
+        Vector2f scale = new Vector2f(), offset = new Vector2f();
+        VertexLayout.FULL.getTexCoordDequantization(data, scale, offset);
+
+        assertEquals(new Vector2f(1.0f, 1.0f), scale);
+        assertEquals(new Vector2f(0.0f, 0.0f), offset);
+    }
+}